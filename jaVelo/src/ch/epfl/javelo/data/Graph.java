@@ -2,17 +2,20 @@ package ch.epfl.javelo.data;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
-import java.nio.LongBuffer;
-import java.nio.ShortBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntPredicate;
 import ch.epfl.javelo.Functions;
-import ch.epfl.javelo.data.GraphSectors.Sector;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
 
 /**
  * 
@@ -27,6 +30,8 @@ public final class Graph {
     private final GraphEdges edges;
     private final List<AttributeSet> attributeSets;
     private final GraphSectors sectors;
+    private final GraphInEdges inEdges;
+    private volatile GraphEdgeIndex edgeIndex; // calculé lors de la première recherche s'il n'a pas été donné au constructeur
     
     /**
      * 
@@ -40,13 +45,60 @@ public final class Graph {
      *           représente la liste de tous les attributs OSM qu'on utilise dans cette classe.
      *             
      * Ce constructeur publique retourne le graphe avec les nœuds, secteurs, arêtes et ensembles d'attributs donnés.
+     * L'index inverse des arêtes est calculé à partir des nœuds et des arêtes.
      */
     
     public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets) {
+        this(nodes, sectors, edges, attributeSets, GraphInEdges.of(nodes, edges));
+    }
+
+    /**
+     * 
+     * @param nodes
+     *           représente tous les nœuds du graph qu'on utilise dans cette classe.
+     * @param sectors
+     *           représente tous les secteurs du graph qu'on utilise dans cette classe.
+     * @param edges
+     *           représente tous les edges du graph qu'on utilise dans cette classe.
+     * @param attributeSets
+     *           représente la liste de tous les attributs OSM qu'on utilise dans cette classe.
+     * @param inEdges
+     *           représente l'index inverse des arêtes (arêtes entrantes de chaque nœud).
+     *             
+     * Ce constructeur publique retourne le graphe avec les nœuds, secteurs, arêtes, ensembles d'attributs et index inverse donnés.
+     * L'index spatial des arêtes est calculé lors de la première recherche qui l'utilise.
+     */
+    
+    public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets, GraphInEdges inEdges) {
+        this(nodes, sectors, edges, attributeSets, inEdges, null);
+    }
+
+    /**
+     * 
+     * @param nodes
+     *           représente tous les nœuds du graph qu'on utilise dans cette classe.
+     * @param sectors
+     *           représente tous les secteurs du graph qu'on utilise dans cette classe.
+     * @param edges
+     *           représente tous les edges du graph qu'on utilise dans cette classe.
+     * @param attributeSets
+     *           représente la liste de tous les attributs OSM qu'on utilise dans cette classe.
+     * @param inEdges
+     *           représente l'index inverse des arêtes (arêtes entrantes de chaque nœud).
+     * @param edgeIndex
+     *           représente l'index spatial des arêtes, ou null s'il doit être calculé lors de la première recherche qui l'utilise.
+     *             
+     * Ce constructeur publique retourne le graphe avec les nœuds, secteurs, arêtes, ensembles d'attributs et index donnés.
+     */
+    
+    public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets, GraphInEdges inEdges,
+                 GraphEdgeIndex edgeIndex) {
         
         this.nodes = nodes;
         this.edges = edges;
         this.sectors = sectors;
+        this.inEdges = inEdges;
+        this.edgeIndex = edgeIndex;
         
         this.attributeSets = List.copyOf(attributeSets);
     }
@@ -62,54 +114,126 @@ public final class Graph {
      *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si l'un des fichiers attendu n'existe pas.
      *         
      *  La méthode loadFrom doit déterminer les chemins des différents fichiers (sectors, edges, edlevations, nodes, profile_ids et attributes)
-     *  à charger à partir du chemin de base (Path), afin de les passer à la méthode open de FileChannel en utilisant la méthode resolve.
+     *  à charger à partir du chemin de base (Path), afin de les projeter en mémoire (voir GraphContainer.mapFiles).
+     *  Le fichier facultatif in_edges.bin contient l'index inverse des arêtes ; s'il n'existe pas, cet index est calculé au chargement.
+     *  Le fichier facultatif edge_index.bin contient l'index spatial des arêtes ; s'il n'existe pas, cet index est calculé
+     *  lors de la première recherche qui l'utilise (voir edgeClosestTo), ou à l'avance par prepareEdgeIndex.
+     *  Si le répertoire contient un conteneur graph.bin (voir GraphContainer), toutes ces sections y sont lues, en une seule
+     *  projection en mémoire et après vérification de la somme de contrôle de sa table des sections, et les fichiers séparés
+     *  sont ignorés (les sommes de contrôle des sections ne sont vérifiées que par GraphContainer.main).
+     *  Chaque chargement émet un événement Java Flight Recorder (GraphLoadEvent).
+     *  Les fichiers sont lus chacun dans une unique mémoire tampon, sauf si l'un d'entre eux dépasse 2 Go : ils sont alors
+     *  projetés en mémoire par tranches (voir loadFrom(Path, boolean)).
+     *  Les fichiers peuvent être dans l'une ou l'autre des versions du format (voir GraphContainer.VERSION et versionOf).
      */
     
     public static Graph loadFrom(Path basePath) throws IOException {
+        boolean chunked = false;
+        if (!Files.exists(basePath.resolve(GraphContainer.FILE_NAME))) {
+            for (String name : GraphContainer.REQUIRED_SECTIONS) {
+                chunked |= Files.size(basePath.resolve(name)) > Integer.MAX_VALUE;
+            }
+        }
+        return loadFrom(basePath, chunked);
+    }
+
+    /**
+     * Cette méthode retourne les nœuds stockés dans le fichier nodes.bin du répertoire donné, dans la version du format
+     * de ce répertoire (voir GraphContainer.versionOf). Avec loadEdgesWithoutProfiles, elle est utilisée par les points
+     * d'entrée qui pré-calculent un index à partir des seuls nœuds et arêtes (voir GraphInEdges et GraphEdgeIndex).
+     */
+
+    static GraphNodes loadNodes(Path basePath) throws IOException {
+        return new GraphNodes(GraphMemory.map(basePath.resolve("nodes.bin")), GraphContainer.versionOf(basePath));
+    }
+
+    /**
+     * Cette méthode retourne les arêtes stockées dans le fichier edges.bin du répertoire donné, dans la version du format
+     * de ce répertoire, sans leurs profils ni leurs altitudes, que les méthodes de GraphEdges correspondantes ne peuvent donc pas lire.
+     */
+
+    static GraphEdges loadEdgesWithoutProfiles(Path basePath) throws IOException {
+        GraphMemory none = GraphMemory.of(ByteBuffer.allocate(0));
+        return new GraphEdges(GraphMemory.map(basePath.resolve("edges.bin")), none, none, GraphContainer.versionOf(basePath));
+    }
+
+    /**
+     * 
+     * @param basePath
+     *         représente le chemin d'accès au répertoire ou il y a les fichiers utilisés par la méthode LoadFrom.
+     * @param chunked
+     *         vrai ssi les fichiers séparés doivent être projetés en mémoire par tranches (GraphMemory.OfChunks),
+     *         ce qui permet de charger des fichiers de plus de 2 Go, au prix d'une indirection supplémentaire à chaque lecture.
+     * @return
+     *         retourne le graphe JaVelo obtenu à partir des fichiers 
+     *         se trouvant dans le répertoire dont le chemin d'accès est basePath.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si l'un des fichiers attendu n'existe pas.
+     *         
+     *  Le conteneur graph.bin étant limité à 2 Go, il est toujours lu dans une unique mémoire tampon, quelle que soit la valeur de chunked.
+     */
+    
+    public static Graph loadFrom(Path basePath, boolean chunked) throws IOException {
+
+        GraphLoadEvent event = new GraphLoadEvent();
+        event.begin();
                 
-        Path sectorsPath = basePath.resolve("sectors.bin");
-        ByteBuffer sectorsBuffer;
-        try (FileChannel ChannelS = FileChannel.open(sectorsPath)) {
-            sectorsBuffer = ChannelS.map(FileChannel.MapMode.READ_ONLY, 0, ChannelS.size());
-          }
-        
-        Path edgesPath = basePath.resolve("edges.bin");
-        ByteBuffer edgesBuffer;
-        try (FileChannel ChannelED = FileChannel.open(edgesPath)) {
-            edgesBuffer = ChannelED.map(FileChannel.MapMode.READ_ONLY, 0, ChannelED.size());
-          }
-        
-        Path elevationsPath = basePath.resolve("elevations.bin");
-        ShortBuffer elevationsBuffer;
-        try (FileChannel ChannelEL = FileChannel.open(elevationsPath)) {
-            elevationsBuffer = ChannelEL.map(FileChannel.MapMode.READ_ONLY, 0, ChannelEL.size()).asShortBuffer();
-          }
-        
-        Path nodesPath = basePath.resolve("nodes.bin");
-        IntBuffer nodesBuffer;
-        try (FileChannel ChannelN = FileChannel.open(nodesPath)) {
-            nodesBuffer = ChannelN.map(FileChannel.MapMode.READ_ONLY, 0, ChannelN.size()).asIntBuffer();
-          }
-        
-        Path profile_idsPath = basePath.resolve("profile_ids.bin");
-        IntBuffer profile_idsBuffer;
-        try (FileChannel ChannelP = FileChannel.open(profile_idsPath)) {
-            profile_idsBuffer = ChannelP.map(FileChannel.MapMode.READ_ONLY, 0, ChannelP.size()).asIntBuffer();
-          }
+        // Les sections sont lues dans le conteneur graph.bin s'il existe, et sinon dans les fichiers séparés.
+        Path containerPath = basePath.resolve(GraphContainer.FILE_NAME);
+        boolean singleFile = Files.exists(containerPath);
+        chunked &= !singleFile;
+        Map<String, ByteBuffer> files;
+        Map<String, GraphMemory> memories = new HashMap<>();
+        int version;
+        if (singleFile) {
+            GraphContainer container = GraphContainer.loadFrom(containerPath);
+            files = container.sections();
+            version = container.version();
+        } else {
+            files = chunked ? GraphContainer.mapOptionalFiles(basePath) : GraphContainer.mapFiles(basePath);
+            version = GraphContainer.versionOf(basePath);
+        }
+        for (String name : GraphContainer.REQUIRED_SECTIONS) {
+            memories.put(name, chunked ? GraphMemory.map(basePath.resolve(name)) : GraphMemory.of(files.get(name)));
+        }
+
+        GraphMemory attributesMemory = memories.get("attributes.bin");
+        int attributesCount = (int) (attributesMemory.byteSize() / Long.BYTES);
+        List <AttributeSet> attributes = new ArrayList <>(attributesCount);
         
-        Path attributesPath = basePath.resolve("attributes.bin");
-        LongBuffer attributesBuffer;
-        try (FileChannel ChannelA = FileChannel.open(attributesPath)) {
-            attributesBuffer = ChannelA.map(FileChannel.MapMode.READ_ONLY, 0, ChannelA.size()).asLongBuffer();
-          }
-              
-        List <AttributeSet> attributes = new ArrayList <>(attributesBuffer.capacity());
+        for (int i=0; i<attributesCount; i++) {
+            attributes.add(new AttributeSet(attributesMemory.getLong((long) i * Long.BYTES)));
+        }
         
-        for (int i=0; i<attributesBuffer.capacity(); i++) {
-            attributes.add(new AttributeSet(attributesBuffer.get(i)));
+        GraphNodes nodes = new GraphNodes(memories.get("nodes.bin"), version);
+        GraphEdges edges = new GraphEdges(memories.get("edges.bin"), memories.get("profile_ids.bin"), memories.get("elevations.bin"), version);
+
+        GraphInEdges inEdges;
+        boolean inEdgesComputed = !files.containsKey("in_edges.bin");
+        if (!inEdgesComputed) {
+            inEdges = GraphInEdges.ofBuffer(files.get("in_edges.bin").asIntBuffer(), nodes.count(), edges.count());
+        } else {
+            inEdges = GraphInEdges.of(nodes, edges);
+        }
+
+        // Sans le fichier edge_index.bin, l'index spatial n'est calculé que s'il est utilisé (voir edgeIndex et prepareEdgeIndex).
+        boolean edgeIndexComputed = !files.containsKey("edge_index.bin");
+        GraphEdgeIndex edgeIndex = edgeIndexComputed ? null : GraphEdgeIndex.ofBuffer(files.get("edge_index.bin").asIntBuffer());
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.basePath = basePath.toString();
+            event.nodeCount = nodes.count();
+            event.edgeCount = edges.count();
+            event.inEdgesComputed = inEdgesComputed;
+            event.edgeIndexComputed = edgeIndexComputed;
+            event.singleFile = singleFile;
+            event.chunked = chunked;
+            event.version = version;
+            event.commit();
         }
         
-        return new Graph(new GraphNodes(nodesBuffer), new GraphSectors(sectorsBuffer), new GraphEdges(edgesBuffer, profile_idsBuffer, elevationsBuffer), attributes);
+        return new Graph(nodes, new GraphSectors(memories.get("sectors.bin")), edges, attributes, inEdges, edgeIndex);
     }
     
     /**
@@ -122,6 +246,16 @@ public final class Graph {
         return nodes.count();
     }
     
+    /**
+     * 
+     * @return
+     *         retourne le nombre total d'arêtes dans le graphe.
+     */
+    
+    public int edgeCount() {
+        return edges.count();
+    }
+    
     /**
      * 
      * @param nodeId
@@ -160,6 +294,32 @@ public final class Graph {
         return nodes.edgeId(nodeId, edgeIndex);
     }
     
+    /**
+     * 
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne le nombre d'arêtes entrant dans le nœud d'identité donnée.
+     */
+    
+    public int nodeInDegree(int nodeId) {
+        return inEdges.inDegree(nodeId);
+    }
+    
+    /**
+     * 
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param edgeIndex
+     *         représente l'index de l'edge.
+     * @return 
+     *         retourne l'identité de la edgeIndex-ième arête entrant dans le nœud d'identité nodeId.
+     */
+    
+    public int nodeInEdgeId(int nodeId, int edgeIndex) {
+        return inEdges.edgeId(nodeId, edgeIndex);
+    }
+    
     /**
      * 
      * @param point
@@ -170,27 +330,327 @@ public final class Graph {
      *         retourne l'identité du nœud se trouvant le plus proche du point donné, 
      *         à la distance maximale donnée en mètres, ou -1 si aucun nœud ne correspond à ces critères.
      *         
-     * Cette méthode trouve le point le plus proche en comparant les carrés des distances ien utilisant la méthode squaredDistanceTo de PointCh.
+     * Cette méthode trouve le point le plus proche en comparant les carrés des distances en utilisant la méthode squaredDistanceTo de GraphNodes.
      */
     
     public int nodeClosestTo(PointCh point, double searchDistance) {
+        return nodeClosestTo(point, searchDistance, nodeId -> true);
+    }
+    
+    /**
+     * 
+     * @param point
+     *         représente le point donné.
+     * @param searchDistance
+     *         représente la distance donnée.
+     * @param accepted
+     *         représente le prédicat que doivent satisfaire les nœuds candidats.
+     * @return
+     *         retourne l'identité du nœud satisfaisant le prédicat donné se trouvant le plus proche du point donné, 
+     *         à la distance maximale donnée en mètres, ou -1 si aucun nœud ne correspond à ces critères.
+     */
+    
+    public int nodeClosestTo(PointCh point, double searchDistance, IntPredicate accepted) {
         
         int nodeId = -1;
         double minDistance = searchDistance*searchDistance;
+        double e = point.e(), n = point.n();
+        int area = GraphSectors.area(e, n, searchDistance);
         
-        for (Sector s : sectors.sectorsInArea(point, searchDistance)) {
-            for (int i = s.startNodeId(); i<s.endNodeId(); i++) {
-                
-                double distance = point.squaredDistanceTo(nodePoint(i));
-                
-                if (distance <= minDistance) {
-                    nodeId = i;
-                    minDistance = distance;
+        // Les secteurs et les coordonnées des nœuds sont lus directement dans leurs mémoires tampons : aucun objet n'est créé.
+        for (int y = GraphSectors.areaYMin(area); y <= GraphSectors.areaYMax(area); y++) {
+            for (int x = GraphSectors.areaXMin(area); x <= GraphSectors.areaXMax(area); x++) {
+                int sectorId = GraphSectors.sectorId(x, y);
+                int end = sectors.endNodeId(sectorId);
+                for (int i = sectors.startNodeId(sectorId); i < end; i++) {
+                    
+                    double distance = nodes.squaredDistanceTo(i, e, n);
+                    
+                    if (distance <= minDistance && accepted.test(i)) {
+                        nodeId = i;
+                        minDistance = distance;
+                    }
                 }
             }
         }
         return nodeId;
     }
+
+    /**
+     * 
+     * @param point
+     *         représente le point de référence.
+     * @param k
+     *         représente le nombre maximal de nœuds à retourner.
+     * @param searchDistance
+     *         représente la distance maximale, en mètres (éventuellement infinie).
+     * @param accepted
+     *         représente le prédicat que doivent satisfaire les nœuds candidats.
+     * @return
+     *         retourne les identités des k nœuds satisfaisant le prédicat donné les plus proches du point donné, à la distance
+     *         maximale donnée, triées par distance croissante (puis par identité). Le tableau est plus court si moins de k nœuds
+     *         correspondent à ces critères.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si k est négatif.
+     *
+     * Cette méthode parcourt les secteurs par anneaux concentriques autour de celui du point, en conservant les k meilleurs
+     * candidats dans un tas. Elle s'arrête dès que le k-ième candidat est plus proche que la distance couverte par les anneaux
+     * parcourus, ou que celle-ci dépasse la distance maximale.
+     */
+
+    public int[] nodesClosestTo(PointCh point, int k, double searchDistance, IntPredicate accepted) {
+
+        Preconditions.checkArgument(k >= 0);
+        if (k == 0) return new int[0];
+
+        double e = point.e(), n = point.n();
+        double maxDistance = searchDistance * searchDistance;
+        int area = GraphSectors.area(e, n, 0);
+        int centerX = GraphSectors.areaXMin(area), centerY = GraphSectors.areaYMin(area);
+
+        // Le tas (dont la racine est le candidat le plus éloigné) contient des clés, voir key.
+        long[] heap = new long[k];
+        int size = 0;
+
+        for (int ring = 0; ; ring++) {
+            for (int y = Math.max(0, centerY - ring); y <= Math.min(127, centerY + ring); y++) {
+                // Sur les lignes intérieures de l'anneau, seuls ses deux secteurs extrêmes en font partie.
+                int step = (y == centerY - ring || y == centerY + ring) ? 1 : 2 * ring;
+                for (int x = centerX - ring; x <= centerX + ring; x += step) {
+                    if (x < 0 || x > 127) continue;
+                    int sectorId = GraphSectors.sectorId(x, y);
+                    int end = sectors.endNodeId(sectorId);
+                    for (int i = sectors.startNodeId(sectorId); i < end; i++) {
+                        double distance = nodes.squaredDistanceTo(i, e, n);
+                        if (distance > maxDistance) continue;
+                        long key = key(distance, i);
+                        if (size < k) {
+                            if (accepted.test(i)) siftUp(heap, size++, key);
+                        } else if (key < heap[0] && accepted.test(i)) {
+                            siftDown(heap, size, key);
+                        }
+                    }
+                }
+            }
+
+            double covered = coveredDistance(e, n, centerX, centerY, ring);
+            if (covered * covered >= maxDistance) break;
+            if (size == k && covered * covered >= Float.intBitsToFloat((int) (heap[0] >>> Integer.SIZE))) break;
+        }
+
+        Arrays.sort(heap, 0, size);
+        int[] nodeIds = new int[size];
+        for (int i = 0; i < size; i++) nodeIds[i] = (int) heap[i];
+        return nodeIds;
+    }
+
+    /**
+     * 
+     * @param point
+     *         représente le point de référence.
+     * @param k
+     *         représente le nombre maximal de nœuds à retourner.
+     * @param searchDistance
+     *         représente la distance maximale, en mètres (éventuellement infinie).
+     * @return
+     *         retourne les identités des k nœuds les plus proches du point donné, à la distance maximale donnée,
+     *         triées par distance croissante (voir la méthode précédente).
+     */
+
+    public int[] nodesClosestTo(PointCh point, int k, double searchDistance) {
+        return nodesClosestTo(point, k, searchDistance, nodeId -> true);
+    }
+
+    /**
+     * 
+     * @param point
+     *         représente le point de référence.
+     * @param radius
+     *         représente le rayon, en mètres.
+     * @param accepted
+     *         représente le prédicat que doivent satisfaire les nœuds candidats.
+     * @return
+     *         retourne les identités de tous les nœuds satisfaisant le prédicat donné à la distance maximale donnée
+     *         du point donné, triées par distance croissante (puis par identité).
+     */
+
+    public int[] nodesWithin(PointCh point, double radius, IntPredicate accepted) {
+
+        double e = point.e(), n = point.n();
+        double maxDistance = radius * radius;
+        int area = GraphSectors.area(e, n, radius);
+
+        long[] keys = new long[16];
+        int size = 0;
+        for (int y = GraphSectors.areaYMin(area); y <= GraphSectors.areaYMax(area); y++) {
+            for (int x = GraphSectors.areaXMin(area); x <= GraphSectors.areaXMax(area); x++) {
+                int sectorId = GraphSectors.sectorId(x, y);
+                int end = sectors.endNodeId(sectorId);
+                for (int i = sectors.startNodeId(sectorId); i < end; i++) {
+                    double distance = nodes.squaredDistanceTo(i, e, n);
+                    if (distance > maxDistance || !accepted.test(i)) continue;
+                    if (size == keys.length) keys = Arrays.copyOf(keys, 2 * size);
+                    keys[size++] = key(distance, i);
+                }
+            }
+        }
+
+        Arrays.sort(keys, 0, size);
+        int[] nodeIds = new int[size];
+        for (int i = 0; i < size; i++) nodeIds[i] = (int) keys[i];
+        return nodeIds;
+    }
+
+    /**
+     * 
+     * @param point
+     *         représente le point de référence.
+     * @param radius
+     *         représente le rayon, en mètres.
+     * @return
+     *         retourne les identités de tous les nœuds à la distance maximale donnée du point donné, triées par distance croissante.
+     */
+
+    public int[] nodesWithin(PointCh point, double radius) {
+        return nodesWithin(point, radius, nodeId -> true);
+    }
+
+    /**
+     * Cette méthode retourne la clé de tri d'un nœud candidat : le carré de sa distance, arrondi en float, dans les 32 bits
+     * de poids fort, et son identité dans les 32 bits de poids faible. Les bits d'un float positif étant ordonnés comme
+     * sa valeur, les clés sont ordonnées par distance puis par identité.
+     */
+
+    private static long key(double squaredDistance, int nodeId) {
+        return (long) Float.floatToIntBits((float) squaredDistance) << Integer.SIZE | nodeId;
+    }
+
+    private static void siftUp(long[] heap, int i, long key) {
+        while (i > 0 && heap[(i - 1) / 2] < key) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = key;
+    }
+
+    /**
+     * Cette méthode remplace la racine du tas par la clé donnée.
+     */
+
+    private static void siftDown(long[] heap, int size, long key) {
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] > heap[child]) child++;
+            if (heap[child] <= key) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    /**
+     * Cette méthode retourne la distance entre le point donné et le bord du carré de secteurs formé par les anneaux 0 à ring
+     * autour du secteur (x, y), c'est-à-dire la distance en deçà de laquelle tous les nœuds ont été examinés. Les côtés
+     * qui atteignent le bord de la grille ne la limitent pas, et elle est infinie lorsque toute la grille a été parcourue.
+     */
+
+    private static double coveredDistance(double e, double n, int x, int y, int ring) {
+        double covered = Double.POSITIVE_INFINITY;
+        if (x - ring > 0) covered = Math.min(covered, e - (SwissBounds.MIN_E + (x - ring) * GraphSectors.SECTOR_WIDTH));
+        if (x + ring < 127) covered = Math.min(covered, SwissBounds.MIN_E + (x + ring + 1) * GraphSectors.SECTOR_WIDTH - e);
+        if (y - ring > 0) covered = Math.min(covered, n - (SwissBounds.MIN_N + (y - ring) * GraphSectors.SECTOR_HEIGHT));
+        if (y + ring < 127) covered = Math.min(covered, SwissBounds.MIN_N + (y + ring + 1) * GraphSectors.SECTOR_HEIGHT - n);
+        return covered;
+    }
+
+    /**
+     * 
+     * @param point
+     *         représente le point de référence.
+     * @param searchDistance
+     *         représente la distance maximale, en mètres.
+     * @param accepted
+     *         représente le prédicat que doivent satisfaire les identités des arêtes candidates.
+     * @return
+     *         retourne le point le plus proche du point de référence sur une arête satisfaisant le prédicat donné,
+     *         à la distance maximale donnée, ou EdgePoint.NONE si aucune arête ne correspond à ces critères.
+     *         Sa position le long de l'arête est proportionnelle à la longueur de celle-ci, comme pour Edge.pointAt.
+     *
+     * Cette méthode parcourt les cellules de l'index spatial des arêtes par anneaux concentriques autour de celle du point,
+     * et s'arrête dès que les anneaux parcourus couvrent un disque plus grand que la meilleure distance trouvée.
+     */
+
+    public GraphEdgeIndex.EdgePoint edgeClosestTo(PointCh point, double searchDistance, IntPredicate accepted) {
+
+        GraphEdgeIndex index = edgeIndex();
+        int columns = index.columns(), rows = index.rows();
+        int centerX = index.column(point.e()), centerY = index.row(point.n());
+        double ringWidth = Math.min(index.cellWidth(), index.cellHeight());
+
+        int bestEdgeId = -1;
+        double bestDistance = searchDistance * searchDistance, bestT = 0;
+
+        for (int ring = 0; ring <= Math.max(columns, rows); ring++) {
+            for (int y = Math.max(0, centerY - ring); y <= Math.min(rows - 1, centerY + ring); y++) {
+                // Sur les lignes intérieures de l'anneau, seules ses deux cellules extrêmes en font partie.
+                int step = (y == centerY - ring || y == centerY + ring) ? 1 : 2 * ring;
+                for (int x = centerX - ring; x <= centerX + ring; x += step) {
+                    if (x < 0 || x >= columns) continue;
+                    int cell = y * columns + x;
+                    for (int i = index.cellStart(cell); i < index.cellEnd(cell); i++) {
+
+                        int edgeId = index.edgeIds().get(i);
+                        int fromNodeId = inEdges.sourceNodeId(edgeId), toNodeId = edges.targetNodeId(edgeId);
+                        double fromE = nodes.nodeE(fromNodeId), fromN = nodes.nodeN(fromNodeId);
+                        double dE = nodes.nodeE(toNodeId) - fromE, dN = nodes.nodeN(toNodeId) - fromN;
+
+                        double squaredLength = dE * dE + dN * dN;
+                        double t = squaredLength == 0 ? 0 : Math2.clamp(0, ((point.e() - fromE) * dE + (point.n() - fromN) * dN) / squaredLength, 1);
+                        double offsetE = fromE + t * dE - point.e(), offsetN = fromN + t * dN - point.n();
+                        double distance = offsetE * offsetE + offsetN * offsetN;
+
+                        if (distance < bestDistance && accepted.test(edgeId)) {
+                            bestEdgeId = edgeId;
+                            bestDistance = distance;
+                            bestT = t;
+                        }
+                    }
+                }
+            }
+            // Tout point à moins de ring * ringWidth du point de référence se trouve dans les anneaux déjà parcourus.
+            double covered = ring * ringWidth;
+            if (covered * covered >= bestDistance) break;
+        }
+
+        if (bestEdgeId == -1) return GraphEdgeIndex.EdgePoint.NONE;
+
+        int fromNodeId = inEdges.sourceNodeId(bestEdgeId), toNodeId = edges.targetNodeId(bestEdgeId);
+        PointCh closest = new PointCh(Math2.interpolate(nodes.nodeE(fromNodeId), nodes.nodeE(toNodeId), bestT),
+                Math2.interpolate(nodes.nodeN(fromNodeId), nodes.nodeN(toNodeId), bestT));
+        return new GraphEdgeIndex.EdgePoint(bestEdgeId, closest, bestT * edgeLength(bestEdgeId), Math.sqrt(bestDistance));
+    }
+
+    /**
+     * Cette méthode calcule l'index spatial des arêtes s'il ne l'a pas encore été, afin que la première recherche d'arête
+     * (voir edgeClosestTo) ne le calcule pas elle-même. Une application interactive l'appelle au démarrage dans un fil
+     * d'arrière-plan, afin que le fil de l'interface graphique n'ait jamais à le calculer.
+     */
+
+    public void prepareEdgeIndex() {
+        edgeIndex();
+    }
+
+    /**
+     * Cette méthode retourne l'index spatial des arêtes, en le calculant s'il ne l'a pas encore été. Deux fils peuvent
+     * le calculer simultanément, mais obtiennent alors des index identiques : il n'est donc pas nécessaire de synchroniser.
+     */
+
+    private GraphEdgeIndex edgeIndex() {
+        GraphEdgeIndex index = edgeIndex;
+        if (index == null) edgeIndex = index = GraphEdgeIndex.of(nodes, edges, GraphEdgeIndex.DEFAULT_CELL_SIZE);
+        return index;
+    }
     
     /**
      * 
@@ -204,6 +664,18 @@ public final class Graph {
         return edges.targetNodeId(edgeId);
     }
     
+    /**
+     * 
+     * @param edgeId
+     *         représente l'identité (index) de l'edge utilisé.
+     * @return
+     *         retourne l'identité du nœud de départ de l'arête d'identité donnée.
+     */
+    
+    public int edgeSourceNodeId(int edgeId) {
+        return inEdges.sourceNodeId(edgeId);
+    }
+    
     /**
      * 
      * @param edgeId
@@ -0,0 +1,345 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import ch.epfl.javelo.Preconditions;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente un conteneur regroupant dans un seul fichier (graph.bin) toutes les sections d'un graphe JaVelo,
+ * qui sont sinon stockées dans des fichiers séparés (nodes.bin, sectors.bin, etc.). Le fichier est projeté en mémoire en une
+ * seule fois, son format est versionné, et l'en-tête comme chaque section sont protégés par une somme de contrôle.
+ * Au chargement, l'en-tête et la table des sections sont toujours vérifiés, ce qui détecte un fichier tronqué ou d'un autre
+ * format ; les sommes de contrôle des sections, qui obligent à lire tout le fichier, ne le sont que sur demande (voir loadFrom).
+ *
+ * Le fichier commence par un en-tête (nombre magique, version, nombre de sections, somme de contrôle de l'en-tête),
+ * suivi de la table des sections, dont chaque entrée contient le nom de la section, sa position, sa taille et sa somme
+ * de contrôle (CRC-32C). Chaque section commence à une position multiple de 64, afin que ses vues (IntBuffer, LongBuffer...)
+ * soient alignées. Toutes les valeurs sont écrites dans l'ordre des octets par défaut (big-endian), comme les fichiers séparés.
+ *
+ * Il possède les attributs suivants :
+ * @param version qui représente la version du format du fichier.
+ * @param sections qui associe à chaque nom de section (celui du fichier séparé correspondant) son contenu.
+ */
+
+public record GraphContainer(int version, Map<String, ByteBuffer> sections) {
+
+    /**
+     * Le nom du fichier conteneur dans le répertoire du graphe.
+     */
+
+    public static final String FILE_NAME = "graph.bin";
+
+    /**
+     * La version la plus récente du format du graphe, que loadFrom et Graph.loadFrom savent lire, comme toutes les précédentes.
+     * La version 1 est celle des fichiers d'origine ; la version 2 élargit les champs de nodes.bin, edges.bin et profile_ids.bin
+     * (voir GraphNodes, GraphEdges et GraphConverter). La version d'un conteneur est celle des sections qu'il contient.
+     */
+
+    public static final int VERSION = 2;
+
+    /**
+     * Le nom du fichier indiquant la version du format des fichiers séparés d'un répertoire, qui vaut 1 s'il n'existe pas.
+     */
+
+    public static final String VERSION_FILE_NAME = "version.txt";
+
+    /**
+     * Les sections obligatoires, qui correspondent aux six fichiers séparés d'un graphe.
+     */
+
+    public static final List<String> REQUIRED_SECTIONS =
+            List.of("nodes.bin", "sectors.bin", "edges.bin", "profile_ids.bin", "elevations.bin", "attributes.bin");
+
+    /**
+     * Les sections facultatives, pré-calculées à partir des sections obligatoires.
+     */
+
+    public static final List<String> OPTIONAL_SECTIONS = List.of("in_edges.bin", "edge_index.bin");
+
+    private static final int MAGIC = 0x4A56474C; // "JVGL"
+    private static final int OFFSET_VERSION = Integer.BYTES;
+    private static final int OFFSET_SECTION_COUNT = OFFSET_VERSION + Integer.BYTES;
+    private static final int OFFSET_HEADER_CRC = OFFSET_SECTION_COUNT + Integer.BYTES;
+    private static final int HEADER_BYTES = OFFSET_HEADER_CRC + Integer.BYTES;
+
+    private static final int NAME_BYTES = 24;
+    private static final int OFFSET_ENTRY_POSITION = NAME_BYTES;
+    private static final int OFFSET_ENTRY_LENGTH = OFFSET_ENTRY_POSITION + Long.BYTES;
+    private static final int OFFSET_ENTRY_CRC = OFFSET_ENTRY_LENGTH + Long.BYTES;
+    private static final int ENTRY_BYTES = OFFSET_ENTRY_CRC + 2 * Integer.BYTES; // suivi d'un entier réservé
+
+    private static final int ALIGNMENT = 64;
+
+    /**
+     * Le constructeur compact copie la table des sections, dont l'ordre est conservé.
+     *
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la version n'est pas strictement positive ou si un nom de section est trop long.
+     */
+
+    public GraphContainer {
+        Preconditions.checkArgument(version > 0);
+        for (String name : sections.keySet()) Preconditions.checkArgument(name.getBytes(StandardCharsets.US_ASCII).length <= NAME_BYTES);
+        sections = Collections.unmodifiableMap(new LinkedHashMap<>(sections));
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers séparés du graphe.
+     * @return
+     *         retourne les sections stockées dans les fichiers séparés du répertoire donné, chacun projeté en mémoire.
+     *         Les sections facultatives dont le fichier n'existe pas sont absentes.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si l'un des fichiers obligatoires n'existe pas.
+     */
+
+    public static Map<String, ByteBuffer> mapFiles(Path basePath) throws IOException {
+
+        Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+        for (String name : REQUIRED_SECTIONS) sections.put(name, map(basePath.resolve(name)));
+        sections.putAll(mapOptionalFiles(basePath));
+        return sections;
+    }
+
+    /**
+     * Cette méthode retourne les seules sections facultatives stockées dans les fichiers séparés du répertoire donné.
+     * Elle est utilisée par Graph.loadFrom lorsque les sections obligatoires sont projetées par tranches (voir GraphMemory).
+     */
+
+    static Map<String, ByteBuffer> mapOptionalFiles(Path basePath) throws IOException {
+
+        Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+        for (String name : OPTIONAL_SECTIONS) {
+            if (Files.exists(basePath.resolve(name))) sections.put(name, map(basePath.resolve(name)));
+        }
+        return sections;
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers séparés du graphe.
+     * @return
+     *         retourne la version du format des fichiers séparés du répertoire donné, lue dans son fichier version.txt,
+     *         ou 1 si ce fichier n'existe pas.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, ou si la version n'est pas prise en charge.
+     */
+
+    public static int versionOf(Path basePath) throws IOException {
+
+        Path versionPath = basePath.resolve(VERSION_FILE_NAME);
+        if (!Files.exists(versionPath)) return 1;
+        String text = Files.readString(versionPath).strip();
+        try {
+            int version = Integer.parseInt(text);
+            if (1 <= version && version <= VERSION) return version;
+        } catch (NumberFormatException e) {
+            // traitée ci-dessous, comme une version inconnue
+        }
+        throw new IOException(versionPath + " : version " + text + " non prise en charge");
+    }
+
+    /**
+     *
+     * @param path
+     *         représente le chemin d'accès au fichier conteneur.
+     * @return
+     *         retourne le conteneur stocké dans le fichier donné, projeté en mémoire en une seule fois, comme
+     *         loadFrom(path, false) : seule la somme de contrôle de l'en-tête et de la table des sections est vérifiée,
+     *         afin que le chargement ne lise pas chaque page du fichier.
+     * @throws IOException
+     *         lève IOException dans les cas décrits par loadFrom(path, false).
+     */
+
+    public static GraphContainer loadFrom(Path path) throws IOException {
+        return loadFrom(path, false);
+    }
+
+    /**
+     *
+     * @param path
+     *         représente le chemin d'accès au fichier conteneur.
+     * @param verifySections
+     *         vrai ssi les sommes de contrôle de toutes les sections doivent aussi être vérifiées, ce qui lit le fichier en entier.
+     *         C'est le cas lorsque le conteneur vient d'être écrit (voir main), ou pour vérifier un fichier dont on doute.
+     * @return
+     *         retourne le conteneur stocké dans le fichier donné, projeté en mémoire en une seule fois.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, si le fichier n'est pas un conteneur de graphe,
+     *         si sa version est plus récente que VERSION, s'il lui manque une section obligatoire, si une section
+     *         dépasse de la fin du fichier, ou si une somme de contrôle vérifiée ne correspond pas à son contenu.
+     */
+
+    public static GraphContainer loadFrom(Path path, boolean verifySections) throws IOException {
+
+        ByteBuffer buffer = map(path);
+
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException(path + " n'est pas un conteneur de graphe");
+        int version = buffer.getInt(OFFSET_VERSION);
+        if (version < 1 || version > VERSION) throw new IOException(path + " : version " + version + " non prise en charge");
+        int sectionCount = buffer.getInt(OFFSET_SECTION_COUNT);
+        if (sectionCount < 0 || HEADER_BYTES + (long) sectionCount * ENTRY_BYTES > buffer.capacity()) throw new IOException(path + " : en-tête corrompu");
+
+        int tableEnd = HEADER_BYTES + sectionCount * ENTRY_BYTES;
+        if (headerChecksum(buffer, tableEnd) != buffer.getInt(OFFSET_HEADER_CRC)) throw new IOException(path + " : en-tête corrompu");
+
+        Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+        for (int i = 0; i < sectionCount; i++) {
+            int entry = HEADER_BYTES + i * ENTRY_BYTES;
+            String name = readName(buffer, entry);
+            long position = buffer.getLong(entry + OFFSET_ENTRY_POSITION);
+            long length = buffer.getLong(entry + OFFSET_ENTRY_LENGTH);
+            if (position < tableEnd || position % ALIGNMENT != 0 || length < 0 || position + length > buffer.capacity())
+                throw new IOException(path + " : section " + name + " hors du fichier");
+
+            ByteBuffer section = buffer.slice((int) position, (int) length);
+            if (verifySections && checksum(section) != buffer.getInt(entry + OFFSET_ENTRY_CRC)) throw new IOException(path + " : section " + name + " corrompue");
+            sections.put(name, section);
+        }
+
+        for (String name : REQUIRED_SECTIONS) {
+            if (!sections.containsKey(name)) throw new IOException(path + " : section " + name + " manquante");
+        }
+        return new GraphContainer(version, sections);
+    }
+
+    /**
+     *
+     * @param path
+     *         représente le chemin d'accès au fichier conteneur à écrire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, ou si le conteneur dépasse la taille maximale d'une projection (2 Go).
+     *
+     * Cette méthode écrit le conteneur dans un fichier temporaire, forcé sur le disque, qui remplace ensuite le fichier donné
+     * en une seule opération : un graphe en cours de chargement ne voit donc jamais un conteneur à moitié écrit, même après une panne.
+     */
+
+    public void writeTo(Path path) throws IOException {
+
+        // La position de chaque section est celle qui suit la précédente, arrondie au multiple de ALIGNMENT suivant.
+        int tableEnd = HEADER_BYTES + sections.size() * ENTRY_BYTES;
+        long[] positions = new long[sections.size()];
+        long end = tableEnd;
+        int i = 0;
+        for (ByteBuffer section : sections.values()) {
+            positions[i++] = (end + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+            end = positions[i - 1] + section.capacity();
+        }
+        if (end > Integer.MAX_VALUE) throw new IOException("conteneur de " + end + " octets trop grand");
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, end);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(OFFSET_VERSION, version);
+            buffer.putInt(OFFSET_SECTION_COUNT, sections.size());
+
+            i = 0;
+            for (Map.Entry<String, ByteBuffer> e : sections.entrySet()) {
+                int entry = HEADER_BYTES + i * ENTRY_BYTES;
+                byte[] name = e.getKey().getBytes(StandardCharsets.US_ASCII);
+                buffer.put(entry, name);
+                ByteBuffer section = e.getValue();
+                buffer.putLong(entry + OFFSET_ENTRY_POSITION, positions[i]);
+                buffer.putLong(entry + OFFSET_ENTRY_LENGTH, section.capacity());
+                buffer.putInt(entry + OFFSET_ENTRY_CRC, checksum(section));
+                buffer.put((int) positions[i], section, 0, section.capacity());
+                i++;
+            }
+            buffer.putInt(OFFSET_HEADER_CRC, headerChecksum(buffer, tableEnd));
+
+            // Le contenu (et la taille) du fichier temporaire doivent atteindre le disque avant qu'il ne remplace le conteneur :
+            // sinon, après une panne, le renommage pourrait avoir été enregistré sans les données.
+            buffer.force();
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut,
+     *         et le second (facultatif) vaut « crc » pour vérifier le conteneur existant plutôt que l'écrire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, ou si le conteneur vérifié est corrompu.
+     *
+     * Ce point d'entrée regroupe les fichiers séparés du graphe (y compris les fichiers facultatifs existants) dans le fichier
+     * graph.bin de son répertoire, que Graph.loadFrom utilise dès qu'il existe. Les fichiers séparés ne sont pas supprimés.
+     * La version du conteneur est celle des fichiers séparés (voir versionOf). Avec le second argument « crc », il se contente
+     * de vérifier toutes les sommes de contrôle du fichier graph.bin existant.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+
+        long start = System.nanoTime();
+        if (args.length > 1 && args[1].equals("crc")) {
+            GraphContainer container = loadFrom(basePath.resolve(FILE_NAME), true);
+            System.out.printf("%d sections vérifiées en %.1f s%n", container.sections().size(), (System.nanoTime() - start) / 1e9);
+            return;
+        }
+
+        GraphContainer container = new GraphContainer(versionOf(basePath), mapFiles(basePath));
+        container.writeTo(basePath.resolve(FILE_NAME));
+        // Le conteneur est relu, afin de vérifier les sommes de contrôle écrites.
+        loadFrom(basePath.resolve(FILE_NAME), true);
+
+        System.out.printf("%d sections, %.1f Mo écrits en %.1f s%n", container.sections().size(),
+                Files.size(basePath.resolve(FILE_NAME)) / 1e6, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static String readName(ByteBuffer buffer, int entry) {
+        byte[] name = new byte[NAME_BYTES];
+        buffer.get(entry, name);
+        int length = 0;
+        while (length < NAME_BYTES && name[length] != 0) length++;
+        return new String(name, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private static int checksum(ByteBuffer section) {
+        CRC32C crc = new CRC32C();
+        crc.update(section.duplicate().clear());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Cette méthode retourne la somme de contrôle de l'en-tête et de la table des sections, dont le champ contenant
+     * cette somme est considéré comme nul.
+     */
+
+    private static int headerChecksum(ByteBuffer buffer, int tableEnd) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, OFFSET_HEADER_CRC));
+        crc.update(new byte[Integer.BYTES]);
+        crc.update(buffer.slice(HEADER_BYTES, tableEnd - HEADER_BYTES));
+        return (int) crc.getValue();
+    }
+}
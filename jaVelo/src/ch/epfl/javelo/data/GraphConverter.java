@@ -0,0 +1,147 @@
+package ch.epfl.javelo.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import ch.epfl.javelo.Bits;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe non instanciable convertit les fichiers séparés d'un graphe JaVelo de la version 1 du format à la version 2
+ * (voir GraphContainer.VERSION), qui lève les limites de la version 1 : 2^28 arêtes et 15 arêtes sortantes par nœud dans
+ * nodes.bin, 4 km environ par arête dans edges.bin, et 2^30 échantillons de profils dans profile_ids.bin.
+ *
+ * Seuls ces trois fichiers changent de format, les autres sont copiés tels quels. Les identités des nœuds et des arêtes
+ * sont conservées, les fichiers pré-calculés à partir du graphe (in_edges.bin, edge_index.bin, ch.bin, etc.) restent donc
+ * valables. Les fichiers sont lus par tranches (voir GraphMemory) et écrits séquentiellement, quelle que soit leur taille.
+ */
+
+public final class GraphConverter {
+
+    private GraphConverter() {}
+
+    // Les fichiers dont le format ne dépend pas de la version, copiés tels quels s'ils existent.
+    private static final List<String> COPIED_FILES = List.of("sectors.bin", "elevations.bin", "attributes.bin",
+            "in_edges.bin", "edge_index.bin", "landmarks.bin", "ch.bin", "cch.bin", "edge_costs.bin", "components.bin",
+            "arc_flags.bin", "hub_labels.bin");
+
+    /**
+     *
+     * @param source
+     *         représente le répertoire contenant les fichiers séparés d'un graphe, au format de la version 1.
+     * @param target
+     *         représente le répertoire, créé s'il n'existe pas, dans lequel écrire le graphe au format de la version 2.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, si le graphe source n'est pas au format de la version 1,
+     *         ou si les arêtes sortantes des nœuds ne sont pas rangées dans l'ordre des nœuds, comme l'exige la version 2.
+     */
+
+    public static void toVersion2(Path source, Path target) throws IOException {
+
+        if (GraphContainer.versionOf(source) != 1) throw new IOException(source + " n'est pas au format de la version 1");
+        Files.createDirectories(target);
+
+        GraphMemory nodesMemory = GraphMemory.map(source.resolve("nodes.bin"));
+        GraphMemory edgesMemory = GraphMemory.map(source.resolve("edges.bin"));
+        GraphMemory profileIdsMemory = GraphMemory.map(source.resolve("profile_ids.bin"));
+        GraphNodes nodes = new GraphNodes(nodesMemory);
+        GraphEdges edges = new GraphEdges(edgesMemory, profileIdsMemory, GraphMemory.of(ByteBuffer.allocate(0)));
+
+        // Les nœuds : les coordonnées sont recopiées, et la première arête sortante occupe tout le troisième entier.
+        try (DataOutputStream out = open(target.resolve("nodes.bin"))) {
+            int nextEdgeId = 0;
+            for (int nodeId = 0; nodeId < nodes.count(); nodeId++) {
+                int outDegree = nodes.outDegree(nodeId);
+                if (outDegree > 0 && nodes.edgeId(nodeId, 0) != nextEdgeId) {
+                    throw new IOException(source + " : les arêtes sortantes du nœud " + nodeId + " ne suivent pas celles du nœud précédent");
+                }
+                out.writeInt(nodesMemory.getInt(3L * Integer.BYTES * nodeId));
+                out.writeInt(nodesMemory.getInt(3L * Integer.BYTES * nodeId + Integer.BYTES));
+                out.writeInt(nextEdgeId);
+                nextEdgeId += outDegree;
+            }
+            if (nextEdgeId != edges.count()) throw new IOException(source + " : " + nextEdgeId + " arêtes sortantes pour " + edges.count() + " arêtes");
+            // Le nœud sentinelle, qui termine les arêtes sortantes du dernier nœud.
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(nextEdgeId);
+        }
+
+        // Les arêtes : la longueur passe de 16 à 30 bits, et partage son entier avec le type du profil.
+        try (DataOutputStream edgesOut = open(target.resolve("edges.bin"));
+             DataOutputStream profileIdsOut = open(target.resolve("profile_ids.bin"))) {
+            for (int edgeId = 0; edgeId < edges.count(); edgeId++) {
+                long offset = 10L * edgeId; // la disposition de la version 1, voir GraphEdges
+                int profileId = profileIdsMemory.getInt((long) Integer.BYTES * edgeId);
+                edgesOut.writeInt(edgesMemory.getInt(offset));
+                edgesOut.writeInt(Bits.extractUnsigned(profileId, 30, 2) << 30 | Short.toUnsignedInt(edgesMemory.getShort(offset + 4)));
+                edgesOut.writeShort(edgesMemory.getShort(offset + 6));
+                edgesOut.writeShort(edgesMemory.getShort(offset + 8));
+                profileIdsOut.writeInt(Bits.extractUnsigned(profileId, 0, 30));
+            }
+        }
+
+        for (String name : COPIED_FILES) {
+            if (Files.exists(source.resolve(name))) {
+                Files.copy(source.resolve(name), target.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.writeString(target.resolve(GraphContainer.VERSION_FILE_NAME), "2\n");
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe à convertir, javelo-data par défaut,
+     *         et le second (facultatif) le répertoire du graphe converti, javelo-data-v2 par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée convertit le graphe donné à la version 2 du format, puis charge les deux graphes et vérifie
+     * que leurs nœuds et leurs arêtes sont identiques.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path source = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        Path target = Path.of(args.length > 1 ? args[1] : "javelo-data-v2");
+
+        long start = System.nanoTime();
+        toVersion2(source, target);
+        long bytes = 0;
+        for (String name : List.of("nodes.bin", "edges.bin", "profile_ids.bin")) bytes += Files.size(target.resolve(name));
+        System.out.printf("graphe converti en %.1f s (%.1f Mo pour nodes.bin, edges.bin et profile_ids.bin)%n",
+                (System.nanoTime() - start) / 1e9, bytes / 1e6);
+
+        Graph v1 = Graph.loadFrom(source), v2 = Graph.loadFrom(target);
+        for (int nodeId = 0; nodeId < v1.nodeCount(); nodeId++) {
+            boolean same = v1.nodePoint(nodeId).equals(v2.nodePoint(nodeId)) && v1.nodeOutDegree(nodeId) == v2.nodeOutDegree(nodeId);
+            for (int i = 0; same && i < v1.nodeOutDegree(nodeId); i++) same = v1.nodeOutEdgeId(nodeId, i) == v2.nodeOutEdgeId(nodeId, i);
+            if (!same) throw new IOException("nœud " + nodeId + " différent après conversion");
+        }
+        for (int edgeId = 0; edgeId < v1.edgeCount(); edgeId++) {
+            boolean same = v1.edgeTargetNodeId(edgeId) == v2.edgeTargetNodeId(edgeId)
+                    && v1.edgeIsInverted(edgeId) == v2.edgeIsInverted(edgeId)
+                    && v1.edgeLength(edgeId) == v2.edgeLength(edgeId)
+                    && v1.edgeElevationGain(edgeId) == v2.edgeElevationGain(edgeId)
+                    && v1.edgeAttributes(edgeId).equals(v2.edgeAttributes(edgeId))
+                    && Double.compare(v1.edgeProfile(edgeId).applyAsDouble(0), v2.edgeProfile(edgeId).applyAsDouble(0)) == 0
+                    && Double.compare(v1.edgeProfile(edgeId).applyAsDouble(v1.edgeLength(edgeId)),
+                                      v2.edgeProfile(edgeId).applyAsDouble(v2.edgeLength(edgeId))) == 0;
+            if (!same) throw new IOException("arête " + edgeId + " différente après conversion");
+        }
+        System.out.printf("%d nœuds et %d arêtes vérifiés%n", v1.nodeCount(), v1.edgeCount());
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+    }
+}
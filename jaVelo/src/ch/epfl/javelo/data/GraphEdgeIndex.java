@@ -0,0 +1,294 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente un index spatial des arêtes du graphe JaVelo : la Suisse est découpée en une grille de cellules
+ * (de 250 m de côté par défaut, bien plus petites que les secteurs de GraphSectors), et chaque cellule contient les identités
+ * des arêtes dont le rectangle englobant la recouvre. Les arêtes étant des segments rectilignes entre leurs deux nœuds,
+ * il permet de trouver le point le plus proche d'un point donné sur l'ensemble du réseau (voir Graph.edgeClosestTo),
+ * en n'examinant que les arêtes des cellules voisines.
+ *
+ * Il possède les attributs suivants :
+ * @param columns qui représente le nombre de colonnes (selon la coordonnée E) de la grille.
+ * @param rows qui représente le nombre de lignes (selon la coordonnée N) de la grille.
+ * @param cellIndex qui contient, pour chaque cellule (ligne par ligne), l'index de sa première arête dans edgeIds (suivi du nombre total d'entrées).
+ * @param edgeIds qui contient les identités des arêtes, regroupées par cellule.
+ */
+
+public record GraphEdgeIndex(int columns, int rows, IntBuffer cellIndex, IntBuffer edgeIds) {
+
+    /**
+     * Le côté des cellules, en mètres, utilisé par défaut.
+     */
+
+    public static final double DEFAULT_CELL_SIZE = 250;
+
+    private static final String FILE_NAME = "edge_index.bin";
+    private static final int HEADER_INTS = 2;
+
+    /**
+     * GraphEdgeIndex possède un enregistrement imbriqué nommé EdgePoint, représentant le point d'une arête le plus proche
+     * d'un point de référence.
+     *
+     * @param edgeId qui représente l'identité de l'arête.
+     * @param point qui représente le point de l'arête le plus proche du point de référence.
+     * @param position qui représente la position de ce point le long de l'arête, en mètres depuis son nœud de départ.
+     * @param distanceToReference qui représente la distance, en mètres, entre ce point et le point de référence.
+     */
+
+    public record EdgePoint(int edgeId, PointCh point, double position, double distanceToReference) {
+
+        /**
+         * Une constante qui représente un point inexistant, lorsqu'aucune arête ne se trouve assez près du point de référence.
+         */
+
+        public static final EdgePoint NONE = new EdgePoint(-1, null, Double.NaN, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Le constructeur compact valide les dimensions de la grille.
+     *
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la grille est vide ou si l'index des cellules ne correspond pas à ses dimensions.
+     */
+
+    public GraphEdgeIndex {
+        Preconditions.checkArgument(columns > 0 && rows > 0 && cellIndex.capacity() == columns * rows + 1);
+    }
+
+    /**
+     *
+     * @param nodes
+     *         représente les nœuds du graphe.
+     * @param edges
+     *         représente les arêtes du graphe.
+     * @param cellSize
+     *         représente le côté maximal des cellules, en mètres.
+     * @return
+     *         retourne l'index spatial des arêtes données, calculé à partir des arêtes sortantes de chaque nœud.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si le côté des cellules n'est pas strictement positif.
+     */
+
+    public static GraphEdgeIndex of(GraphNodes nodes, GraphEdges edges, double cellSize) {
+
+        Preconditions.checkArgument(cellSize > 0);
+
+        int columns = (int) Math.ceil(SwissBounds.WIDTH / cellSize);
+        int rows = (int) Math.ceil(SwissBounds.HEIGHT / cellSize);
+        double cellWidth = SwissBounds.WIDTH / columns, cellHeight = SwissBounds.HEIGHT / rows;
+        int[] cellIndex = new int[columns * rows + 1];
+
+        // Deux passes : la première compte les arêtes de chaque cellule, la seconde les y range.
+        int[] edgeIds = null;
+        int[] position = null;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int nodeId = 0; nodeId < nodes.count(); nodeId++) {
+                double e1 = nodes.nodeE(nodeId), n1 = nodes.nodeN(nodeId);
+                for (int i = 0; i < nodes.outDegree(nodeId); i++) {
+                    int edgeId = nodes.edgeId(nodeId, i);
+                    int target = edges.targetNodeId(edgeId);
+                    double e2 = nodes.nodeE(target), n2 = nodes.nodeN(target);
+
+                    int xMin = column(Math.min(e1, e2), cellWidth, columns), xMax = column(Math.max(e1, e2), cellWidth, columns);
+                    int yMin = row(Math.min(n1, n2), cellHeight, rows), yMax = row(Math.max(n1, n2), cellHeight, rows);
+                    for (int y = yMin; y <= yMax; y++) {
+                        for (int x = xMin; x <= xMax; x++) {
+                            int cell = y * columns + x;
+                            if (pass == 0) cellIndex[cell + 1]++;
+                            else edgeIds[cellIndex[cell] + position[cell]++] = edgeId;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int cell = 0; cell < columns * rows; cell++) cellIndex[cell + 1] += cellIndex[cell];
+                edgeIds = new int[cellIndex[columns * rows]];
+                position = new int[columns * rows];
+            }
+        }
+
+        return new GraphEdgeIndex(columns, rows, IntBuffer.wrap(cellIndex), IntBuffer.wrap(edgeIds));
+    }
+
+    /**
+     *
+     * @param buffer
+     *         représente le contenu d'un fichier écrit par writeTo.
+     * @return
+     *         retourne l'index contenu dans la mémoire tampon donnée, sans la copier.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la taille de la mémoire tampon ne correspond pas aux dimensions de la grille.
+     */
+
+    public static GraphEdgeIndex ofBuffer(IntBuffer buffer) {
+
+        int columns = buffer.get(0), rows = buffer.get(1);
+        Preconditions.checkArgument(columns > 0 && rows > 0 && buffer.capacity() >= HEADER_INTS + columns * rows + 1);
+
+        int cellCount = columns * rows;
+        IntBuffer cellIndex = buffer.slice(HEADER_INTS, cellCount + 1);
+        Preconditions.checkArgument(buffer.capacity() == HEADER_INTS + cellCount + 1 + cellIndex.get(cellCount));
+
+        return new GraphEdgeIndex(columns, rows, cellIndex, buffer.slice(HEADER_INTS + cellCount + 1, cellIndex.get(cellCount)));
+    }
+
+    /**
+     *
+     * @return
+     *        retourne la largeur des cellules, en mètres.
+     */
+
+    public double cellWidth() {
+        return SwissBounds.WIDTH / columns;
+    }
+
+    /**
+     *
+     * @return
+     *        retourne la hauteur des cellules, en mètres.
+     */
+
+    public double cellHeight() {
+        return SwissBounds.HEIGHT / rows;
+    }
+
+    /**
+     *
+     * @param e
+     *        représente une coordonnée E.
+     * @return
+     *        retourne l'index de la colonne contenant la coordonnée donnée, ramené dans la grille si elle est hors de Suisse.
+     */
+
+    public int column(double e) {
+        return column(e, cellWidth(), columns);
+    }
+
+    /**
+     *
+     * @param n
+     *        représente une coordonnée N.
+     * @return
+     *        retourne l'index de la ligne contenant la coordonnée donnée, ramené dans la grille si elle est hors de Suisse.
+     */
+
+    public int row(double n) {
+        return row(n, cellHeight(), rows);
+    }
+
+    /**
+     *
+     * @param cell
+     *        représente l'index de la cellule (y * columns + x).
+     * @return
+     *        retourne l'index, dans edgeIds, de la première arête de la cellule donnée.
+     */
+
+    public int cellStart(int cell) {
+        return cellIndex.get(cell);
+    }
+
+    /**
+     *
+     * @param cell
+     *        représente l'index de la cellule (y * columns + x).
+     * @return
+     *        retourne l'index, dans edgeIds, qui suit la dernière arête de la cellule donnée.
+     */
+
+    public int cellEnd(int cell) {
+        return cellIndex.get(cell + 1);
+    }
+
+    /**
+     *
+     * @param basePath
+     *        représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @return
+     *        retourne l'index stocké dans le fichier edge_index.bin du répertoire donné, projeté en mémoire.
+     * @throws IOException
+     *        lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     */
+
+    public static GraphEdgeIndex loadFrom(Path basePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            return ofBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer());
+        }
+    }
+
+    /**
+     *
+     * @param basePath
+     *        représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @throws IOException
+     *        lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit l'index dans le fichier edge_index.bin du répertoire donné, afin que Graph.loadFrom
+     * puisse le projeter en mémoire au lieu de le recalculer.
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) Integer.BYTES * (HEADER_INTS + cellIndex.capacity() + edgeIds.capacity()));
+            buffer.putInt(columns);
+            buffer.putInt(rows);
+            for (IntBuffer section : new IntBuffer[] {cellIndex, edgeIds}) {
+                for (int i = 0; i < section.capacity(); i++) buffer.putInt(section.get(i));
+            }
+        }
+    }
+
+    /**
+     *
+     * @param args
+     *        le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut,
+     *        et le second (facultatif) le côté des cellules en mètres.
+     * @throws IOException
+     *        lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée calcule l'index spatial des arêtes du graphe et l'écrit dans le fichier edge_index.bin de son répertoire.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        double cellSize = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_CELL_SIZE;
+
+        // Seules les arêtes elles-mêmes sont nécessaires, les profils et les altitudes ne sont donc pas chargés.
+        GraphNodes nodes = Graph.loadNodes(basePath);
+        GraphEdges edges = Graph.loadEdgesWithoutProfiles(basePath);
+
+        long start = System.nanoTime();
+        GraphEdgeIndex index = of(nodes, edges, cellSize);
+        index.writeTo(basePath);
+        System.out.printf("%d×%d cellules, %d entrées en %.1f s%n", index.columns(), index.rows(), index.edgeIds().capacity(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private static int column(double e, double cellWidth, int columns) {
+        return Math2.clamp(0, (int) ((e - SwissBounds.MIN_E) / cellWidth), columns - 1);
+    }
+
+    private static int row(double n, double cellHeight, int rows) {
+        return Math2.clamp(0, (int) ((n - SwissBounds.MIN_N) / cellHeight), rows - 1);
+    }
+}
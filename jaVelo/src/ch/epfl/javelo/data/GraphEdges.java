@@ -3,8 +3,10 @@ package ch.epfl.javelo.data;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+
 import ch.epfl.javelo.Bits;
 import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.Q28_4;
 
 /**
@@ -13,10 +15,21 @@ import ch.epfl.javelo.Q28_4;
  * @author Youssef Neji (346960)
  *
  * Cet enregistrement représente le tableau de toutes les arêtes du graphe JaVelo. 
- * Il possède les attributs edgesBuffer de type ByteBuffer, profileIds de type IntBuffer et elevations de type ShortBuffer.
+ * Il possède les attributs edgesBuffer, profileIds et elevations de type GraphMemory, adressés par des positions de type long
+ * afin de dépasser 2 Go, ainsi qu'un attribut version qui représente la version du format des fichiers edges.bin et profile_ids.bin
+ * (voir GraphContainer.VERSION).
+ *
+ * En version 1, chaque arête occupe 10 octets (nœud destination, longueur sur 16 bits, dénivelé positif, ensemble d'attributs),
+ * et son identité de profil contient le type du profil (2 bits) et l'index de son premier échantillon (30 bits) : la longueur
+ * d'une arête est donc limitée à 4 km environ, et le nombre d'échantillons à 2^30. En version 2, chaque arête occupe 12 octets,
+ * sa longueur est stockée sur 30 bits, avec le type de son profil dans les 2 bits de poids fort du même entier, et son identité
+ * de profil ne contient plus que l'index (non signé, sur 32 bits) de son premier échantillon.
+ *
+ * Les constructeurs qui ne reçoivent pas de version, dont celui d'origine, lisent le format de la version 1 : seul le chargement
+ * d'un répertoire (voir Graph.loadFrom) doit préciser la version, qu'il lit dans ce répertoire.
  */
 
-public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuffer elevations) {
+public record GraphEdges(GraphMemory edgesBuffer, GraphMemory profileIds, GraphMemory elevations, int version) {
 
     /**
      * 
@@ -26,9 +39,45 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      *             représente la mémoire tampon contenant la valeur des attributs de la totalité des arêtes du graphe.
      * @param elevations
      *             représente la mémoire tampon contenant la totalité des échantillons des profils.
+     * @param version
+     *             représente la version du format des mémoires tampons edgesBuffer et profileIds, 1 ou 2.
+     * @throws IllegalArgumentException
+     *             lève IllegalArgumentException si la version n'est ni 1 ni 2.
+     */
+    
+    public GraphEdges{
+        Preconditions.checkArgument(version == 1 || version == 2);
+    }
+    
+    /**
+     * 
+     * @param edgesBuffer
+     *             représente la mémoire tampon, au format de la version 1, contenant la valeur des attributs de la totalité
+     *             des arêtes du graphe.
+     * @param profileIds
+     *             représente la mémoire tampon, au format de la version 1, contenant les identités des profils des arêtes.
+     * @param elevations
+     *             représente la mémoire tampon contenant la totalité des échantillons des profils.
      */
     
-    public GraphEdges{}
+    public GraphEdges(GraphMemory edgesBuffer, GraphMemory profileIds, GraphMemory elevations) {
+        this(edgesBuffer, profileIds, elevations, 1);
+    }
+    
+    /**
+     * 
+     * @param edgesBuffer
+     *             représente la mémoire tampon, au format de la version 1, contenant la valeur des attributs de la totalité
+     *             des arêtes du graphe, comme le constructeur d'origine.
+     * @param profileIds
+     *             représente la mémoire tampon d'entiers, au format de la version 1, contenant les identités des profils des arêtes.
+     * @param elevations
+     *             représente la mémoire tampon d'entiers de 16 bits contenant la totalité des échantillons des profils.
+     */
+    
+    public GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuffer elevations) {
+        this(GraphMemory.of(edgesBuffer), GraphMemory.of(profileIds), GraphMemory.of(elevations));
+    }
     
     private final static int OFFSET_DIR_AND_ID = 0;
     private final static int OFFSET_DIR_AND_ID_END= OFFSET_DIR_AND_ID+Integer.BYTES-1;
@@ -39,6 +88,22 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
     private final static int OFFSET_OSM_ID=OFFSET_DENIV_END+1;
     private final static int EDGES_INTS=OFFSET_OSM_ID+Short.BYTES;
 
+    // La disposition d'une arête en version 2, dont la longueur et le type de profil occupent un entier.
+    private final static int OFFSET_LENGTH_AND_PROFILE_V2 = OFFSET_DIR_AND_ID + Integer.BYTES;
+    private final static int OFFSET_DENIV_V2 = OFFSET_LENGTH_AND_PROFILE_V2 + Integer.BYTES;
+    private final static int OFFSET_OSM_ID_V2 = OFFSET_DENIV_V2 + Short.BYTES;
+    private final static int EDGE_BYTES_V2 = OFFSET_OSM_ID_V2 + Short.BYTES;
+
+    /**
+     * 
+     * @return
+     *        retourne le nombre total d'arêtes.
+     */
+    
+    public int count() {
+        return (int) (edgesBuffer.byteSize()/(version == 1 ? EDGES_INTS : EDGE_BYTES_V2));
+    }
+
     /**
      * 
      * @param edgeId
@@ -48,7 +113,7 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      */
     
     public boolean isInverted(int edgeId) {
-        return (edgesBuffer.getInt(edgeId*EDGES_INTS + OFFSET_DIR_AND_ID) < 0);
+        return (edgesBuffer.getInt(offset(edgeId) + OFFSET_DIR_AND_ID) < 0);
         }
     
     /**
@@ -60,7 +125,7 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      */
     
     public int targetNodeId(int edgeId) {
-        return isInverted(edgeId) ? ~edgesBuffer.getInt(edgeId*EDGES_INTS + OFFSET_DIR_AND_ID) : edgesBuffer.getInt(edgeId*EDGES_INTS + OFFSET_DIR_AND_ID);
+        return isInverted(edgeId) ? ~edgesBuffer.getInt(offset(edgeId) + OFFSET_DIR_AND_ID) : edgesBuffer.getInt(offset(edgeId) + OFFSET_DIR_AND_ID);
     }
     
     /**
@@ -72,7 +137,7 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      */
     
     public double length(int edgeId) { 
-        return Q28_4.asDouble(Short.toUnsignedInt(edgesBuffer.getShort(edgeId*EDGES_INTS + OFFSET_LENGTH)));
+        return Q28_4.asDouble(lengthQ28_4(edgeId));
         }
     
     /**
@@ -84,7 +149,7 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      */
     
     public double elevationGain(int edgeId) {
-        return Q28_4.asDouble(Short.toUnsignedInt(edgesBuffer.getShort(edgeId*EDGES_INTS + OFFSET_DENIV)));
+        return Q28_4.asDouble(Short.toUnsignedInt(edgesBuffer.getShort(offset(edgeId) + (version == 1 ? OFFSET_DENIV : OFFSET_DENIV_V2))));
         }
     
     /**
@@ -96,7 +161,7 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      */
     
     public boolean hasProfile(int edgeId) { 
-        return Bits.extractUnsigned(profileIds.get(edgeId), 30, 2)!=0;
+        return profileType(edgeId)!=0;
         }
     
     /**
@@ -115,31 +180,31 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
             }
         else {
             
-            int profilType = Bits.extractUnsigned(profileIds.get(edgeId), 30, 2);
-            int nb = 1 + Math2.ceilDiv(Short.toUnsignedInt(edgesBuffer.getShort(edgeId*EDGES_INTS + OFFSET_LENGTH)), Q28_4.ofInt(2));
-            int firstSample= Bits.extractUnsigned(profileIds.get(edgeId), 0, 30);
+            int profilType = profileType(edgeId);
+            int nb = 1 + Math2.ceilDiv(lengthQ28_4(edgeId), Q28_4.ofInt(2));
+            long firstSample= firstSample(edgeId);
             
             float [] Tab = new float[nb];
             
             if (profilType== 1) {
                 
                 for(int i=0;i<nb;i++) {
-                    Tab[i]=Q28_4.asFloat(Short.toUnsignedInt(elevations.get(i+firstSample)));
+                    Tab[i]=Q28_4.asFloat(Short.toUnsignedInt(elevations.getShort((long) Short.BYTES*(i+firstSample))));
                 }   
             }
             else {
                 
-                Tab[0]=Q28_4.asFloat(Short.toUnsignedInt(elevations.get(firstSample)));
+                Tab[0]=Q28_4.asFloat(Short.toUnsignedInt(elevations.getShort((long) Short.BYTES*(firstSample))));
                 
-                if(Bits.extractUnsigned(profileIds.get(edgeId), 30, 2) == 2) {
+                if(profilType == 2) {
                     
                     for (int i = 1; i < nb; i++) {
                         
                         if (i%2 == 1) {
-                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.get(firstSample + (i + 1)/2), 8, 8));
+                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.getShort((long) Short.BYTES*(firstSample + (i + 1)/2)), 8, 8));
                         } 
                         else {
-                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.get(firstSample + i /2), 0, 8));
+                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.getShort((long) Short.BYTES*(firstSample + i /2)), 0, 8));
                         }
                     }
                 } 
@@ -148,16 +213,16 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
                     for (int i = 1; i < nb; i++) {
                         
                         if (i%4 == 1) {
-                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.get(firstSample + (i + 3)/4), 12, 4));
+                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.getShort((long) Short.BYTES*(firstSample + (i + 3)/4)), 12, 4));
                         } 
                         else if (i%4 == 2){
-                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.get(firstSample + (i + 2)/4), 8, 4));
+                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.getShort((long) Short.BYTES*(firstSample + (i + 2)/4)), 8, 4));
                         } 
                         else if (i%4 == 3) {
-                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.get(firstSample + (i + 1)/4), 4, 4));
+                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.getShort((long) Short.BYTES*(firstSample + (i + 1)/4)), 4, 4));
                         } 
                         else {
-                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.get(firstSample + i /4), 0, 4));
+                            Tab[i] = Tab[i - 1] + Q28_4.asFloat(Bits.extractSigned(elevations.getShort((long) Short.BYTES*(firstSample + i /4)), 0, 4));
                         }
                     }
                 }
@@ -188,6 +253,25 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      */
     
     public int attributesIndex(int edgeId) { 
-        return Short.toUnsignedInt(edgesBuffer.getShort(edgeId*EDGES_INTS + OFFSET_OSM_ID));
+        return Short.toUnsignedInt(edgesBuffer.getShort(offset(edgeId) + (version == 1 ? OFFSET_OSM_ID : OFFSET_OSM_ID_V2)));
         }
+    
+    private long offset(int edgeId) {
+        return (long) edgeId * (version == 1 ? EDGES_INTS : EDGE_BYTES_V2);
+    }
+    
+    private int lengthQ28_4(int edgeId) {
+        if (version == 1) return Short.toUnsignedInt(edgesBuffer.getShort(offset(edgeId) + OFFSET_LENGTH));
+        return Bits.extractUnsigned(edgesBuffer.getInt(offset(edgeId) + OFFSET_LENGTH_AND_PROFILE_V2), 0, 30);
+    }
+    
+    private int profileType(int edgeId) {
+        if (version == 1) return Bits.extractUnsigned(profileIds.getInt((long) edgeId*Integer.BYTES), 30, 2);
+        return Bits.extractUnsigned(edgesBuffer.getInt(offset(edgeId) + OFFSET_LENGTH_AND_PROFILE_V2), 30, 2);
+    }
+    
+    private long firstSample(int edgeId) {
+        if (version == 1) return Bits.extractUnsigned(profileIds.getInt((long) edgeId*Integer.BYTES), 0, 30);
+        return Integer.toUnsignedLong(profileIds.getInt((long) edgeId*Integer.BYTES));
+    }
 }
\ No newline at end of file
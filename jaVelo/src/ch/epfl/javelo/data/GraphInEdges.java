@@ -0,0 +1,170 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import ch.epfl.javelo.Preconditions;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente l'index inverse des arêtes du graphe JaVelo, c'est-à-dire les arêtes entrant dans chaque nœud,
+ * ainsi que le nœud de départ de chaque arête, que GraphNodes et GraphEdges ne permettent pas d'obtenir directement.
+ *
+ * Il possède les attributs suivants :
+ * @param index qui contient, pour chaque nœud, l'index de sa première arête entrante dans edgeIds (suivi du nombre total d'arêtes).
+ * @param edgeIds qui contient les identités des arêtes entrantes, regroupées par nœud d'arrivée.
+ * @param sourceNodeIds qui contient, pour chaque arête, l'identité de son nœud de départ.
+ */
+
+public record GraphInEdges(IntBuffer index, IntBuffer edgeIds, IntBuffer sourceNodeIds) {
+
+    /**
+     *
+     * @param nodes
+     *         représente les nœuds du graphe.
+     * @param edges
+     *         représente les arêtes du graphe.
+     * @return
+     *         retourne l'index inverse des arêtes, calculé à partir des arêtes sortantes de chaque nœud.
+     */
+
+    public static GraphInEdges of(GraphNodes nodes, GraphEdges edges) {
+
+        int nodeCount = nodes.count();
+        int[] index = new int[nodeCount + 1];
+        int[] edgeIds = new int[edges.count()];
+        int[] sourceNodeIds = new int[edges.count()];
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < nodes.outDegree(nodeId); i++) {
+                int edgeId = nodes.edgeId(nodeId, i);
+                sourceNodeIds[edgeId] = nodeId;
+                index[edges.targetNodeId(edgeId) + 1]++;
+            }
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) index[nodeId + 1] += index[nodeId];
+
+        int[] position = new int[nodeCount];
+        for (int edgeId = 0; edgeId < edgeIds.length; edgeId++) {
+            int target = edges.targetNodeId(edgeId);
+            edgeIds[index[target] + position[target]++] = edgeId;
+        }
+
+        return new GraphInEdges(IntBuffer.wrap(index), IntBuffer.wrap(edgeIds), IntBuffer.wrap(sourceNodeIds));
+    }
+
+    /**
+     *
+     * @param buffer
+     *         représente le contenu d'un fichier écrit par writeTo.
+     * @param nodeCount
+     *         représente le nombre de nœuds du graphe.
+     * @param edgeCount
+     *         représente le nombre d'arêtes du graphe.
+     * @return
+     *         retourne l'index inverse contenu dans la mémoire tampon donnée, sans la copier.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la taille de la mémoire tampon ne correspond pas au graphe.
+     */
+
+    public static GraphInEdges ofBuffer(IntBuffer buffer, int nodeCount, int edgeCount) {
+
+        Preconditions.checkArgument(buffer.capacity() == nodeCount + 1 + 2 * edgeCount);
+
+        return new GraphInEdges(buffer.slice(0, nodeCount + 1),
+                buffer.slice(nodeCount + 1, edgeCount),
+                buffer.slice(nodeCount + 1 + edgeCount, edgeCount));
+    }
+
+    /**
+     *
+     * @param nodeId
+     *        représente l'identité du nœud.
+     * @return
+     *        retourne le nombre d'arêtes entrant dans le nœud d'identité donnée.
+     */
+
+    public int inDegree(int nodeId) {
+        return index.get(nodeId + 1) - index.get(nodeId);
+    }
+
+    /**
+     *
+     * @param nodeId
+     *        représente l'identité du nœud.
+     * @param edgeIndex
+     *        représente l'index de l'arête.
+     * @return
+     *        retourne l'identité de la edgeIndex-ième arête entrant dans le nœud d'identité nodeId.
+     */
+
+    public int edgeId(int nodeId, int edgeIndex) {
+
+        assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+
+        return edgeIds.get(index.get(nodeId) + edgeIndex);
+    }
+
+    /**
+     *
+     * @param edgeId
+     *        représente l'identité de l'arête.
+     * @return
+     *        retourne l'identité du nœud de départ de l'arête d'identité donnée.
+     */
+
+    public int sourceNodeId(int edgeId) {
+        return sourceNodeIds.get(edgeId);
+    }
+
+    /**
+     *
+     * @param path
+     *        représente le chemin du fichier à écrire (in_edges.bin dans le répertoire du graphe).
+     * @throws IOException
+     *        lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit l'index inverse afin que Graph.loadFrom puisse le projeter en mémoire au lieu de le recalculer.
+     */
+
+    public void writeTo(Path path) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * (index.capacity() + edgeIds.capacity() + sourceNodeIds.capacity()));
+        for (IntBuffer section : new IntBuffer[] {index, edgeIds, sourceNodeIds}) {
+            for (int i = 0; i < section.capacity(); i++) buffer.putInt(section.get(i));
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    /**
+     *
+     * @param args
+     *        le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut.
+     * @throws IOException
+     *        lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée calcule l'index inverse du graphe et l'écrit dans le fichier in_edges.bin de son répertoire.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+
+        // Seules les arêtes elles-mêmes sont nécessaires, les profils et les altitudes ne sont donc pas chargés.
+        GraphNodes nodes = Graph.loadNodes(basePath);
+        GraphEdges edges = Graph.loadEdgesWithoutProfiles(basePath);
+
+        of(nodes, edges).writeTo(basePath.resolve("in_edges.bin"));
+    }
+}
@@ -0,0 +1,49 @@
+package ch.epfl.javelo.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente l'événement Java Flight Recorder émis par chaque chargement de Graph.loadFrom.
+ */
+
+@Name("ch.epfl.javelo.GraphLoad")
+@Label("Chargement du graphe")
+@Category({"JaVelo", "Entrées-sorties"})
+@Description("Projection en mémoire des fichiers d'un graphe")
+final class GraphLoadEvent extends jdk.jfr.Event {
+
+    @Label("Répertoire")
+    String basePath;
+
+    @Label("Nombre de nœuds")
+    int nodeCount;
+
+    @Label("Nombre d'arêtes")
+    int edgeCount;
+
+    @Label("Index inverse calculé")
+    @Description("Vrai si le fichier in_edges.bin n'existait pas et que l'index inverse des arêtes a été calculé au chargement")
+    boolean inEdgesComputed;
+
+    @Label("Index spatial à calculer")
+    @Description("Vrai si le fichier edge_index.bin n'existait pas, l'index spatial des arêtes devant alors être calculé lors de sa première utilisation")
+    boolean edgeIndexComputed;
+
+    @Label("Conteneur unique")
+    @Description("Vrai si le graphe a été lu dans le conteneur graph.bin plutôt que dans les fichiers séparés")
+    boolean singleFile;
+
+    @Label("Projection par tranches")
+    @Description("Vrai si les fichiers du graphe ont été projetés en mémoire par tranches (GraphMemory.OfChunks)")
+    boolean chunked;
+
+    @Label("Version du format")
+    int version;
+}
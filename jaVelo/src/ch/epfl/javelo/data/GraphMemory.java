@@ -0,0 +1,280 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import ch.epfl.javelo.Preconditions;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette interface représente la mémoire contenant les valeurs d'un fichier du graphe (nœuds, arêtes, profils...),
+ * adressée par des positions en octets de type long. Les valeurs sont lues dans l'ordre des octets big-endian,
+ * comme elles sont écrites dans les fichiers.
+ *
+ * Elle possède deux implémentations, choisies au chargement du graphe (voir Graph.loadFrom) :
+ * OfBuffer, qui utilise une unique mémoire tampon (ByteBuffer) et est donc limitée à 2 Go,
+ * et OfChunks, qui projette un fichier de taille quelconque en mémoire par tranches, afin de charger des graphes
+ * couvrant une région plus grande que la Suisse. Deux autres, OfInts et OfShorts, adaptent les mémoires tampons d'entiers
+ * passées aux constructeurs d'origine de GraphNodes et GraphEdges.
+ */
+
+public interface GraphMemory {
+
+    /**
+     *
+     * @return
+     *         retourne la taille de la mémoire, en octets.
+     */
+
+    long byteSize();
+
+    /**
+     *
+     * @param offset
+     *         représente la position, en octets, de la valeur.
+     * @return
+     *         retourne l'entier de 16 bits (signé) se trouvant à la position donnée.
+     */
+
+    short getShort(long offset);
+
+    /**
+     *
+     * @param offset
+     *         représente la position, en octets, de la valeur.
+     * @return
+     *         retourne l'entier de 32 bits se trouvant à la position donnée.
+     */
+
+    int getInt(long offset);
+
+    /**
+     *
+     * @param offset
+     *         représente la position, en octets, de la valeur.
+     * @return
+     *         retourne l'entier de 64 bits se trouvant à la position donnée.
+     */
+
+    long getLong(long offset);
+
+    /**
+     *
+     * @param buffer
+     *         représente la mémoire tampon, par exemple un fichier projeté en mémoire.
+     * @return
+     *         retourne la mémoire dont le contenu est celui de la mémoire tampon donnée.
+     */
+
+    static GraphMemory of(ByteBuffer buffer) {
+        return new OfBuffer(buffer);
+    }
+
+    /**
+     *
+     * @param buffer
+     *         représente la mémoire tampon d'entiers de 32 bits, par exemple la vue d'un fichier projeté en mémoire.
+     * @return
+     *         retourne la mémoire dont le contenu est celui de la mémoire tampon donnée, dont les valeurs ne peuvent être lues
+     *         qu'à des positions alignées sur leur taille.
+     */
+
+    static GraphMemory of(IntBuffer buffer) {
+        return new OfInts(buffer);
+    }
+
+    /**
+     *
+     * @param buffer
+     *         représente la mémoire tampon d'entiers de 16 bits, par exemple la vue d'un fichier projeté en mémoire.
+     * @return
+     *         retourne la mémoire dont le contenu est celui de la mémoire tampon donnée, dont les valeurs ne peuvent être lues
+     *         qu'à des positions alignées sur leur taille.
+     */
+
+    static GraphMemory of(ShortBuffer buffer) {
+        return new OfShorts(buffer);
+    }
+
+    /**
+     *
+     * @param path
+     *         représente le chemin d'accès au fichier.
+     * @return
+     *         retourne la mémoire dont le contenu est celui du fichier donné, projeté en mémoire par tranches de 1 Go,
+     *         quelle que soit sa taille.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     */
+
+    static GraphMemory map(Path path) throws IOException {
+        return OfChunks.map(path);
+    }
+
+    /**
+     *
+     * Cet enregistrement représente une mémoire stockée dans une unique mémoire tampon, dont les positions
+     * sont donc inférieures à 2^31. C'est l'implémentation utilisée par défaut, pour le graphe de la Suisse.
+     *
+     * @param buffer
+     *         représente la mémoire tampon.
+     */
+
+    record OfBuffer(ByteBuffer buffer) implements GraphMemory {
+
+        @Override
+        public long byteSize() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public short getShort(long offset) {
+            return buffer.getShort((int) offset);
+        }
+
+        @Override
+        public int getInt(long offset) {
+            return buffer.getInt((int) offset);
+        }
+
+        @Override
+        public long getLong(long offset) {
+            return buffer.getLong((int) offset);
+        }
+    }
+
+    /**
+     *
+     * Cet enregistrement représente une mémoire stockée dans une mémoire tampon d'entiers de 32 bits, dont aucune vue en octets
+     * n'est disponible (IntBuffer.wrap, par exemple). Les valeurs de 16 et 64 bits sont reconstituées à partir des entiers
+     * qui les contiennent, dans l'ordre big-endian des fichiers.
+     *
+     * @param buffer
+     *         représente la mémoire tampon.
+     */
+
+    record OfInts(IntBuffer buffer) implements GraphMemory {
+
+        @Override
+        public long byteSize() {
+            return (long) buffer.capacity() * Integer.BYTES;
+        }
+
+        @Override
+        public short getShort(long offset) {
+            return (short) (buffer.get((int) (offset >>> 2)) >>> (Short.SIZE - Byte.SIZE * (int) (offset & 3)));
+        }
+
+        @Override
+        public int getInt(long offset) {
+            return buffer.get((int) (offset >>> 2));
+        }
+
+        @Override
+        public long getLong(long offset) {
+            return (long) getInt(offset) << Integer.SIZE | Integer.toUnsignedLong(getInt(offset + Integer.BYTES));
+        }
+    }
+
+    /**
+     *
+     * Cet enregistrement représente une mémoire stockée dans une mémoire tampon d'entiers de 16 bits, dont aucune vue en octets
+     * n'est disponible. Les valeurs de 32 et 64 bits sont reconstituées à partir des entiers qui les contiennent, dans l'ordre
+     * big-endian des fichiers.
+     *
+     * @param buffer
+     *         représente la mémoire tampon.
+     */
+
+    record OfShorts(ShortBuffer buffer) implements GraphMemory {
+
+        @Override
+        public long byteSize() {
+            return (long) buffer.capacity() * Short.BYTES;
+        }
+
+        @Override
+        public short getShort(long offset) {
+            return buffer.get((int) (offset >>> 1));
+        }
+
+        @Override
+        public int getInt(long offset) {
+            return getShort(offset) << Short.SIZE | Short.toUnsignedInt(getShort(offset + Short.BYTES));
+        }
+
+        @Override
+        public long getLong(long offset) {
+            return (long) getInt(offset) << Integer.SIZE | Integer.toUnsignedLong(getInt(offset + Integer.BYTES));
+        }
+    }
+
+    /**
+     *
+     * Cet enregistrement représente une mémoire stockée dans plusieurs mémoires tampons consécutives (les tranches),
+     * qui contiennent chacune 2^30 octets, à l'exception de la dernière. Chaque tranche déborde de 8 octets sur
+     * la suivante, afin qu'une valeur ne soit jamais à cheval sur deux tranches : une lecture se résume donc à un accès
+     * au tableau des tranches suivi d'une lecture dans la mémoire tampon, sans test supplémentaire. La taille des tranches
+     * est une constante, que le compilateur à la volée intègre donc aux calculs de positions.
+     *
+     * @param chunks
+     *         représente les tranches, dans l'ordre.
+     * @param byteSize
+     *         représente la taille totale de la mémoire, en octets.
+     */
+
+    record OfChunks(ByteBuffer[] chunks, long byteSize) implements GraphMemory {
+
+        private static final int CHUNK_BITS = 30; // des tranches de 1 Go, bien en dessous de la limite de 2 Go d'une projection
+        private static final int OVERLAP = Long.BYTES;
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+        /**
+         * Le constructeur compact vérifie la cohérence des tranches.
+         *
+         * @throws IllegalArgumentException
+         *         lève IllegalArgumentException si le nombre de tranches ne correspond pas à la taille de la mémoire.
+         */
+
+        public OfChunks {
+            Preconditions.checkArgument(chunks.length == chunkCount(byteSize));
+        }
+
+        static OfChunks map(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path)) {
+                long size = channel.size();
+                ByteBuffer[] chunks = new ByteBuffer[chunkCount(size)];
+                for (int i = 0; i < chunks.length; i++) {
+                    long position = (long) i << CHUNK_BITS;
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min((1L << CHUNK_BITS) + OVERLAP, size - position));
+                }
+                return new OfChunks(chunks, size);
+            }
+        }
+
+        private static int chunkCount(long byteSize) {
+            return (int) Math.max(1, (byteSize + CHUNK_MASK) >>> CHUNK_BITS);
+        }
+
+        @Override
+        public short getShort(long offset) {
+            return chunks[(int) (offset >>> CHUNK_BITS)].getShort((int) offset & CHUNK_MASK);
+        }
+
+        @Override
+        public int getInt(long offset) {
+            return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) offset & CHUNK_MASK);
+        }
+
+        @Override
+        public long getLong(long offset) {
+            return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) offset & CHUNK_MASK);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe non instanciable mesure les performances des deux implémentations principales de GraphMemory,
+ * OfBuffer et OfChunks, sur un graphe chargé par Graph.loadFrom.
+ */
+
+public final class GraphMemoryBenchmark {
+
+    private GraphMemoryBenchmark() {}
+
+    /**
+     *
+     * @param args
+     *        le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut, et le second (facultatif)
+     *        vaut « tranches » pour mesurer OfChunks plutôt que OfBuffer.
+     * @throws IOException
+     *        lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée mesure les performances de l'une des deux implémentations sur le graphe donné : la durée d'un
+     * parcours complet des nœuds et des arêtes, et celle d'une série de lectures aléatoires de nœuds, d'arêtes et de profils,
+     * comme celles d'une recherche d'itinéraire. Les mesures sont répétées afin que la machine virtuelle ait compilé le code
+     * mesuré, et seule la meilleure est affichée. Les deux implémentations doivent être mesurées dans des exécutions séparées :
+     * dans une même machine virtuelle, les appels de GraphNodes et GraphEdges ne seraient plus monomorphes et les deux
+     * mesures seraient pénalisées.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        boolean chunked = args.length > 1 && args[1].equals("tranches");
+        long start = System.nanoTime();
+        Graph graph = Graph.loadFrom(basePath, chunked);
+        System.out.printf(Locale.ROOT, "%s : graphe chargé en %.1f ms%n", chunked ? "OfChunks" : "OfBuffer", (System.nanoTime() - start) / 1e6);
+
+        long scan = Long.MAX_VALUE, random = Long.MAX_VALUE;
+        double checksum = 0;
+        for (int i = 0; i < 25; i++) {
+            start = System.nanoTime();
+            checksum += scan(graph);
+            scan = Math.min(scan, System.nanoTime() - start);
+            start = System.nanoTime();
+            checksum += randomAccesses(graph, 1_000_000);
+            random = Math.min(random, System.nanoTime() - start);
+        }
+        System.out.printf(Locale.ROOT, "parcours : %.2f ms, accès aléatoires : %.1f ms (somme de contrôle %.0f)%n",
+                scan / 1e6, random / 1e6, checksum);
+    }
+
+    private static double scan(Graph graph) {
+        double sum = 0;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            sum += graph.nodePoint(nodeId).e() + graph.nodeOutDegree(nodeId);
+        }
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId++) {
+            sum += graph.edgeLength(edgeId) + graph.edgeTargetNodeId(edgeId);
+        }
+        return sum;
+    }
+
+    private static double randomAccesses(Graph graph, int count) {
+        SplittableRandom random = new SplittableRandom(2022);
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            int nodeId = random.nextInt(graph.nodeCount());
+            for (int j = 0; j < graph.nodeOutDegree(nodeId); j++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, j);
+                sum += graph.edgeLength(edgeId) + graph.edgeElevationGain(edgeId) + graph.edgeTargetNodeId(edgeId);
+                if (i % 64 == 0 && graph.edgeProfile(edgeId).applyAsDouble(0) >= 0) sum += graph.edgeProfile(edgeId).applyAsDouble(0); // NaN sans profil
+            }
+        }
+        return sum;
+    }
+}
@@ -3,6 +3,7 @@ package ch.epfl.javelo.data;
 import java.nio.IntBuffer;
 
 import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.Q28_4;
 
 /**
@@ -11,23 +12,62 @@ import ch.epfl.javelo.Q28_4;
  * @author Youssef Neji (346960)
  *
  * Cet enregistrement représente le tableau de tous les nœuds du graphe JaVelo. 
- * Il possède un attribut buffer de type IntBuffer, 
+ * Il possède un attribut buffer de type GraphMemory, adressé par des positions de type long afin de dépasser 2 Go,
+ * et un attribut version qui représente la version du format du fichier nodes.bin (voir GraphContainer.VERSION).
+ *
+ * Dans les deux versions, chaque nœud occupe trois entiers : ses coordonnées E et N, puis ses arêtes sortantes.
+ * En version 1, ce dernier entier contient le nombre d'arêtes sortantes (4 bits) et l'identité de la première d'entre elles
+ * (28 bits). En version 2, il ne contient que l'identité de la première arête sortante (31 bits), les arêtes sortantes d'un
+ * nœud étant celles comprises entre la sienne et celle du nœud suivant : le fichier se termine donc par un nœud sentinelle,
+ * dont seule la première arête sortante (le nombre total d'arêtes) est utilisée.
+ *
+ * Les constructeurs qui ne reçoivent pas de version, dont celui d'origine, lisent le format de la version 1 : seul le chargement
+ * d'un répertoire (voir Graph.loadFrom) doit préciser la version, qu'il lit dans ce répertoire.
  */
 
-public record GraphNodes(IntBuffer buffer) {
+public record GraphNodes(GraphMemory buffer, int version) {
     
     private static final int OFFSET_E = 0;
     private static final int OFFSET_N = OFFSET_E + 1;
     private static final int OFFSET_OUT_EDGES = OFFSET_N + 1;
     private static final int NODE_INTS = OFFSET_OUT_EDGES + 1;
+    private static final long NODE_BYTES = (long) NODE_INTS * Integer.BYTES;
     
     /**
      * 
      * @param buffer
      *            représente la mémoire tampon contenant la valeur des attributs de la totalité des nœuds du graphe.
+     * @param version
+     *            représente la version du format de la mémoire tampon, 1 ou 2.
+     * @throws IllegalArgumentException
+     *            lève IllegalArgumentException si la version n'est ni 1 ni 2.
+     */
+    
+    public GraphNodes {
+        Preconditions.checkArgument(version == 1 || version == 2);
+    }
+    
+    /**
+     * 
+     * @param buffer
+     *            représente la mémoire tampon, au format de la version 1, contenant la valeur des attributs de la totalité
+     *            des nœuds du graphe.
+     */
+    
+    public GraphNodes(GraphMemory buffer) {
+        this(buffer, 1);
+    }
+    
+    /**
+     * 
+     * @param buffer
+     *            représente la mémoire tampon d'entiers, au format de la version 1, contenant la valeur des attributs
+     *            de la totalité des nœuds du graphe, comme le constructeur d'origine.
      */
     
-    public GraphNodes {}
+    public GraphNodes(IntBuffer buffer) {
+        this(GraphMemory.of(buffer));
+    }
     
     /**
      * 
@@ -36,7 +76,7 @@ public record GraphNodes(IntBuffer buffer) {
      */
     
     public int count() {
-        return buffer.capacity()/NODE_INTS;
+        return (int) (buffer.byteSize()/NODE_BYTES) - (version == 1 ? 0 : 1); // sans le nœud sentinelle
     }
     
     /**
@@ -48,7 +88,7 @@ public record GraphNodes(IntBuffer buffer) {
      */
     
     public double nodeE(int nodeId){
-        return Q28_4.asDouble(buffer.get(NODE_INTS * nodeId + OFFSET_E));
+        return Q28_4.asDouble(buffer.getInt(NODE_BYTES * nodeId + Integer.BYTES * OFFSET_E));
     }
     
     /**
@@ -60,7 +100,25 @@ public record GraphNodes(IntBuffer buffer) {
      */
     
     public double nodeN(int nodeId) {
-        return Q28_4.asDouble(buffer.get(NODE_INTS * nodeId + OFFSET_N));
+        return Q28_4.asDouble(buffer.getInt(NODE_BYTES * nodeId + Integer.BYTES * OFFSET_N));
+    }
+    
+    /**
+     * 
+     * @param nodeId
+     *       représente l'identité du nœud.
+     * @param e
+     *       représente la coordonnée E du point de référence.
+     * @param n
+     *       représente la coordonnée N du point de référence.
+     * @return
+     *       retourne le carré de la distance, en mètres, entre le nœud d'identité donnée et le point de référence.
+     *       Les coordonnées sont lues directement dans la mémoire tampon, sans créer de PointCh.
+     */
+    
+    public double squaredDistanceTo(int nodeId, double e, double n) {
+        double dE = nodeE(nodeId) - e, dN = nodeN(nodeId) - n;
+        return dE * dE + dN * dN;
     }
     
     /**
@@ -72,7 +130,8 @@ public record GraphNodes(IntBuffer buffer) {
      */
     
     public int outDegree(int nodeId) {
-        return Bits.extractUnsigned(buffer.get(NODE_INTS * nodeId + OFFSET_OUT_EDGES), 28, 4);
+        if (version == 2) return firstEdgeId(nodeId + 1) - firstEdgeId(nodeId);
+        return Bits.extractUnsigned(buffer.getInt(NODE_BYTES * nodeId + Integer.BYTES * OFFSET_OUT_EDGES), 28, 4);
     }
     
     /**
@@ -89,6 +148,11 @@ public record GraphNodes(IntBuffer buffer) {
         
         assert 0 <= edgeIndex && edgeIndex < outDegree(nodeId); 
         
-        return Bits.extractUnsigned(buffer.get(NODE_INTS * nodeId + OFFSET_OUT_EDGES), 0, 28) + edgeIndex;
+        if (version == 2) return firstEdgeId(nodeId) + edgeIndex;
+        return Bits.extractUnsigned(buffer.getInt(NODE_BYTES * nodeId + Integer.BYTES * OFFSET_OUT_EDGES), 0, 28) + edgeIndex;
+    }
+    
+    private int firstEdgeId(int nodeId) {
+        return buffer.getInt(NODE_BYTES * nodeId + Integer.BYTES * OFFSET_OUT_EDGES);
     }
 }
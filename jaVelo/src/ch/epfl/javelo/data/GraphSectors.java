@@ -4,6 +4,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import ch.epfl.javelo.Bits;
 import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.SwissBounds;
@@ -14,10 +15,10 @@ import ch.epfl.javelo.projection.SwissBounds;
  * @author Youssef Neji (346960)
  *
  * Cet enregistrement représente le tableau contenant les 16384 secteurs de JaVelo. 
- * Il possède l'attribut buffer de type ByteBuffer, qui représente la mémoire tampon contenant la valeur des attributs de la totalité des secteurs.
+ * Il possède l'attribut buffer de type GraphMemory, qui représente la mémoire tampon contenant la valeur des attributs de la totalité des secteurs.
  */
 
-public record GraphSectors(ByteBuffer buffer) {
+public record GraphSectors(GraphMemory buffer) {
     
     /**
      * 
@@ -30,13 +31,25 @@ public record GraphSectors(ByteBuffer buffer) {
     
     public record Sector (int startNodeId, int endNodeId) {}
 
+    /**
+     * 
+     * @param buffer
+     *        représente la mémoire tampon contenant la valeur des attributs de la totalité des secteurs, comme le constructeur d'origine.
+     */
+
+    public GraphSectors(ByteBuffer buffer) {
+        this(GraphMemory.of(buffer));
+    }
+
     private static final int OFFSET_FIRSTIDSTART = 0;
     private static final int OFFSET_FIRSTIDEND = OFFSET_FIRSTIDSTART + Integer.BYTES-1;
     private static final int OFFSET_SIZESTART = OFFSET_FIRSTIDEND+1;
     private static final int SECTOR_INTS = OFFSET_SIZESTART+Short.BYTES;
-    private final static double SECTOR_HEIGHT = SwissBounds.HEIGHT/128;
-    private final static double SECTOR_WIDTH = SwissBounds.WIDTH/128;
+    final static double SECTOR_HEIGHT = SwissBounds.HEIGHT/128; // utilisées par les recherches par anneaux de Graph
+    final static double SECTOR_WIDTH = SwissBounds.WIDTH/128;
+    private static final int COORDINATE_BITS = 7; // 128 secteurs par côté
     
+
     /**
      * 
      * @param center
@@ -51,28 +64,124 @@ public record GraphSectors(ByteBuffer buffer) {
     public List<Sector> sectorsInArea(PointCh center, double distance) {
         
         List<Sector> list = new ArrayList<>();
-        
-        int sectorID;
-        int firstNodeID;
-        short sectorSize;
-        int unsignedSectorSize;
-        
-        int xMin = Math2.clamp(0,(int)((Math2.clamp(SwissBounds.MIN_E,center.e() - distance,SwissBounds.MAX_E)-SwissBounds.MIN_E)/SECTOR_WIDTH), 127);
-        int xMax = Math2.clamp(0,(int)((Math2.clamp(SwissBounds.MIN_E,center.e() + distance,SwissBounds.MAX_E)-SwissBounds.MIN_E)/SECTOR_WIDTH),127);
-        int yMin = Math2.clamp(0,(int)((Math2.clamp(SwissBounds.MIN_N,center.n() - distance,SwissBounds.MAX_N)-SwissBounds.MIN_N)/SECTOR_HEIGHT),127);
-        int yMax = Math2.clamp(0,(int)((Math2.clamp(SwissBounds.MIN_N,center.n() + distance,SwissBounds.MAX_N)-SwissBounds.MIN_N)/SECTOR_HEIGHT),127);
+        int area = area(center.e(), center.n(), distance);
  
-        for(int y=yMin; y<=yMax; y++) {
-            for(int x=xMin; x<=xMax; x++) {
-                
-                sectorID = y*128 + x;
-                firstNodeID= buffer.getInt(SECTOR_INTS*sectorID + OFFSET_FIRSTIDSTART);
-                sectorSize = buffer.getShort(SECTOR_INTS*sectorID + OFFSET_SIZESTART);
-                unsignedSectorSize = Short.toUnsignedInt(sectorSize);
-             
-                    list.add(new Sector(firstNodeID, firstNodeID+unsignedSectorSize));
-                } 
-            }    
+        for(int y=areaYMin(area); y<=areaYMax(area); y++) {
+            for(int x=areaXMin(area); x<=areaXMax(area); x++) {
+                int sectorId = sectorId(x, y);
+                list.add(new Sector(startNodeId(sectorId), endNodeId(sectorId)));
+            }
+        }
         return list;
     }
+    
+    /**
+     * 
+     * @param e
+     *        représente la coordonnée E du centre du carré utilisé.
+     * @param n
+     *        représente la coordonnée N du centre du carré utilisé.
+     * @param distance
+     *        représente la moitié de la longeur du coté du carré utilisé.
+     * @return
+     *        retourne, empaquetés dans un entier, les index minimaux et maximaux (inclus) des colonnes et des lignes de secteurs
+     *        ayant une intersection avec le carré, à extraire avec areaXMin, areaXMax, areaYMin et areaYMax.
+     *        
+     * Contrairement à sectorsInArea, cette méthode et les suivantes ne créent aucun objet : elles permettent de parcourir
+     * les nœuds proches d'un point à chaque clic ou déplacement de la souris sans solliciter le ramasse-miettes.
+     */
+    
+    public static int area(double e, double n, double distance) {
+        int xMin = Math2.clamp(0,(int)((Math2.clamp(SwissBounds.MIN_E,e - distance,SwissBounds.MAX_E)-SwissBounds.MIN_E)/SECTOR_WIDTH), 127);
+        int xMax = Math2.clamp(0,(int)((Math2.clamp(SwissBounds.MIN_E,e + distance,SwissBounds.MAX_E)-SwissBounds.MIN_E)/SECTOR_WIDTH),127);
+        int yMin = Math2.clamp(0,(int)((Math2.clamp(SwissBounds.MIN_N,n - distance,SwissBounds.MAX_N)-SwissBounds.MIN_N)/SECTOR_HEIGHT),127);
+        int yMax = Math2.clamp(0,(int)((Math2.clamp(SwissBounds.MIN_N,n + distance,SwissBounds.MAX_N)-SwissBounds.MIN_N)/SECTOR_HEIGHT),127);
+        return xMin | xMax << COORDINATE_BITS | yMin << 2 * COORDINATE_BITS | yMax << 3 * COORDINATE_BITS;
+    }
+    
+    /**
+     * 
+     * @param area
+     *        représente une zone retournée par area.
+     * @return
+     *        retourne l'index de la première colonne de secteurs de la zone.
+     */
+    
+    public static int areaXMin(int area) {
+        return Bits.extractUnsigned(area, 0, COORDINATE_BITS);
+    }
+    
+    /**
+     * 
+     * @param area
+     *        représente une zone retournée par area.
+     * @return
+     *        retourne l'index de la dernière colonne de secteurs de la zone.
+     */
+    
+    public static int areaXMax(int area) {
+        return Bits.extractUnsigned(area, COORDINATE_BITS, COORDINATE_BITS);
+    }
+    
+    /**
+     * 
+     * @param area
+     *        représente une zone retournée par area.
+     * @return
+     *        retourne l'index de la première ligne de secteurs de la zone.
+     */
+    
+    public static int areaYMin(int area) {
+        return Bits.extractUnsigned(area, 2 * COORDINATE_BITS, COORDINATE_BITS);
+    }
+    
+    /**
+     * 
+     * @param area
+     *        représente une zone retournée par area.
+     * @return
+     *        retourne l'index de la dernière ligne de secteurs de la zone.
+     */
+    
+    public static int areaYMax(int area) {
+        return Bits.extractUnsigned(area, 3 * COORDINATE_BITS, COORDINATE_BITS);
+    }
+    
+    /**
+     * 
+     * @param x
+     *        représente l'index de la colonne du secteur.
+     * @param y
+     *        représente l'index de la ligne du secteur.
+     * @return
+     *        retourne l'identité du secteur se trouvant à la colonne et à la ligne données.
+     */
+    
+    public static int sectorId(int x, int y) {
+        return y*128 + x;
+    }
+    
+    /**
+     * 
+     * @param sectorId
+     *        représente l'identité du secteur.
+     * @return
+     *        retourne l'identité du premier nœud du secteur.
+     */
+    
+    public int startNodeId(int sectorId) {
+        return buffer.getInt((long) SECTOR_INTS*sectorId + OFFSET_FIRSTIDSTART);
+    }
+    
+    /**
+     * 
+     * @param sectorId
+     *        représente l'identité du secteur.
+     * @return
+     *        retourne l'identité du nœud situé juste après le dernier nœud du secteur.
+     */
+    
+    public int endNodeId(int sectorId) {
+        return startNodeId(sectorId) + Short.toUnsignedInt(buffer.getShort((long) SECTOR_INTS*sectorId + OFFSET_SIZESTART));
+    }
 }
\ No newline at end of file
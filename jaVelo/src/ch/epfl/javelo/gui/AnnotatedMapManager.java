@@ -10,6 +10,7 @@ import javafx.geometry.Point2D;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * @author Ahmed Abdelmalek (344471)
@@ -42,13 +43,32 @@ public final class AnnotatedMapManager {
      */
 
     public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean routeBean, Consumer<String> consumer) {
+        this(graph, tileManager, routeBean, consumer, nodeId -> true);
+    }
+
+    /**
+     *
+     * @param graph
+     *             représente le graphe du réseau routier.
+     * @param tileManager
+     *             représente le gestionnaire de tuiles OpenStreetMap.
+     * @param routeBean
+     *             représente le bean de l'itinéraire.
+     * @param consumer
+     *             représente un consommateur d'erreurs permettant de signaler une erreur.
+     * @param snappable
+     *             représente le prédicat que doivent satisfaire les nœuds auxquels les points de passage sont rattachés.
+     */
+
+    public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean routeBean, Consumer<String> consumer, IntPredicate snappable) {
 
         this.routeBean = routeBean;
 
         mapViewParameters.set(new MapViewParameters(12, 543200, 370650)); // On construit la carte initiale avec les valeurs demandées.
-        WaypointsManager waypointsManager = new WaypointsManager(graph, mapViewParameters, routeBean.getWaypoints(), consumer);
+        WaypointsManager waypointsManager = new WaypointsManager(graph, mapViewParameters, routeBean.getWaypoints(), consumer, snappable);
         BaseMapManager baseMapManager = new BaseMapManager(tileManager, waypointsManager, mapViewParameters);
         RouteManager routeManager = new RouteManager(routeBean, mapViewParameters);
+        routeBean.draggingProperty().bind(waypointsManager.draggingProperty()); // L'itinéraire est calculé en mode rapide pendant un déplacement.
         pane = new StackPane(baseMapManager.pane(), routeManager.pane(), waypointsManager.pane());
         pane.getStylesheets().add("map.css");
 
@@ -107,4 +127,4 @@ public final class AnnotatedMapManager {
     public DoubleProperty mousePositionOnRouteProperty() {
         return highlightPosition;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
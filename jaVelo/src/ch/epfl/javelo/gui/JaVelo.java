@@ -1,7 +1,7 @@
 package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.data.Graph;
-import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.Components;
 import ch.epfl.javelo.routing.GpxGenerator;
 import ch.epfl.javelo.routing.RouteComputer;
 import javafx.application.Application;
@@ -44,12 +44,20 @@ public final class JaVelo extends Application {
 
     @Override
     public void start(Stage primaryStage) throws IOException {
-        Graph graph = Graph.loadFrom(Path.of("javelo-data"));
+        Path graphPath = Path.of("javelo-data");
+        Graph graph = Graph.loadFrom(graphPath);
+        // L'index spatial des arêtes, utilisé pour placer les points de passage, est calculé en arrière-plan s'il n'a pas été pré-calculé.
+        Thread edgeIndexThread = new Thread(graph::prepareEdgeIndex, "javelo-edge-index");
+        edgeIndexThread.setDaemon(true);
+        edgeIndexThread.start();
         TileManager tileManager = new TileManager(Path.of("osm-cache"), "tile.openstreetmap.org");
-        RouteBean routeBean = new RouteBean(new RouteComputer(graph, new CityBikeCF(graph)));
+        RouteComputer routeComputer = RouteComputer.loadFrom(graph, graphPath); // Les données pré-calculées sont utilisées si elles existent.
+        // Les composantes permettent de rejeter immédiatement les requêtes sans itinéraire et de placer les points sur la composante principale.
+        Components components = routeComputer.components();
+        RouteBean routeBean = new RouteBean(routeComputer, routeComputer.withSuboptimality(0.05)); // Pendant un déplacement, des itinéraires au plus 5% plus coûteux suffisent.
         ErrorManager errorManager = new ErrorManager();
         Consumer<String> errorConsumer = errorManager::displayError; // Toutes les erreurs doivent être gérées par la classe ErrorManager plus précisément par la méthode displayError.
-        AnnotatedMapManager mapManager = new AnnotatedMapManager(graph, tileManager, routeBean, errorConsumer);
+        AnnotatedMapManager mapManager = new AnnotatedMapManager(graph, tileManager, routeBean, errorConsumer, components::isInMainComponent);
         SplitPane splitPane = new SplitPane(mapManager.pane());
         TimeManager timeManager = new TimeManager(routeBean, errorConsumer);
         PlacesManager placesManager = new PlacesManager(errorConsumer, routeBean);
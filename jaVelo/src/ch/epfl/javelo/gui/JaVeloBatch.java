@@ -0,0 +1,183 @@
+package ch.epfl.javelo.gui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+import ch.epfl.javelo.routing.Components;
+import ch.epfl.javelo.routing.ElevationProfile;
+import ch.epfl.javelo.routing.ElevationProfileComputer;
+import ch.epfl.javelo.routing.GpxGenerator;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente le point d'entrée en ligne de commande de JaVelo, qui calcule sans interface graphique les itinéraires
+ * d'un fichier CSV. Chaque ligne du fichier d'entrée contient les coordonnées WGS 84 (en degrés) du départ et de l'arrivée,
+ * sous la forme lon,lat,lon,lat ; une éventuelle ligne d'en-tête est ignorée. Chaque ligne du fichier de sortie contient,
+ * dans l'ordre des requêtes, leur numéro, leur état, la longueur, la montée et la descente totales, le coût de l'itinéraire
+ * et, si un répertoire GPX a été donné, le chemin du fichier GPX de l'itinéraire.
+ *
+ * Le graphe est chargé une seule fois, puis les requêtes sont lues par lots, calculées en parallèle par les fils du ForkJoinPool
+ * commun, et écrites au fur et à mesure : la mémoire utilisée ne dépend donc pas de la taille du fichier.
+ */
+
+public final class JaVeloBatch {
+
+    private static final int SEARCH_DISTANCE = 500; // comme WaypointsManager
+    private static final double PROFILE_STEP = 5; // comme RouteBean
+    private static final int BATCH_SIZE = 4096;
+    private static final String HEADER = "index,status,length,ascent,descent,cost,gpx";
+
+    private final Graph graph;
+    private final RouteComputer routeComputer;
+    private final Components components;
+    private final Path gpxDirectory;
+
+    private JaVeloBatch(Graph graph, RouteComputer routeComputer, Components components, Path gpxDirectory) {
+        this.graph = graph;
+        this.routeComputer = routeComputer;
+        this.components = components;
+        this.gpxDirectory = gpxDirectory;
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument est le fichier CSV des requêtes, le second le fichier CSV des résultats,
+     *         et le troisième (facultatif) le répertoire dans lequel les fichiers GPX des itinéraires sont écrits.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée charge le graphe et les données pré-calculées disponibles depuis javelo-data, comme JaVelo,
+     * puis calcule les itinéraires en affichant régulièrement la progression et le débit sur la sortie d'erreur.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            System.err.println("usage : JaVeloBatch requêtes.csv résultats.csv [répertoire GPX]");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        Path graphPath = Path.of("javelo-data");
+        Graph graph = Graph.loadFrom(graphPath);
+        RouteComputer routeComputer = RouteComputer.loadFrom(graph, graphPath);
+        Components components = routeComputer.components();
+
+        Path gpxDirectory = args.length > 2 ? Path.of(args[2]) : null;
+        if (gpxDirectory != null) Files.createDirectories(gpxDirectory);
+        System.err.printf("graphe chargé en %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+        new JaVeloBatch(graph, routeComputer, components, gpxDirectory).run(Path.of(args[0]), Path.of(args[1]));
+    }
+
+    private void run(Path input, Path output) throws IOException {
+
+        long start = System.nanoTime();
+        int count = 0, found = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(input); Writer writer = Files.newBufferedWriter(output)) {
+
+            writer.write(HEADER);
+            writer.write('\n');
+
+            List<String> lines = new ArrayList<>(BATCH_SIZE);
+            boolean first = true;
+            String line;
+            do {
+                line = reader.readLine();
+                if (line != null && !line.isBlank()) {
+                    if (first && !Character.isDigit(line.strip().charAt(0)) && line.strip().charAt(0) != '-') { // l'en-tête
+                        first = false;
+                        continue;
+                    }
+                    first = false;
+                    lines.add(line);
+                }
+                if (lines.size() == BATCH_SIZE || (line == null && !lines.isEmpty())) {
+                    int batchStart = count;
+                    String[] results = IntStream.range(0, lines.size()).parallel()
+                            .mapToObj(i -> process(batchStart + i, lines.get(i)))
+                            .toArray(String[]::new);
+                    for (String result : results) {
+                        writer.write(result);
+                        writer.write('\n');
+                        if (result.startsWith("OK", result.indexOf(',') + 1)) found++;
+                    }
+                    writer.flush();
+
+                    count += lines.size();
+                    lines.clear();
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    System.err.printf("%d requêtes, %d itinéraires, %.1f s, %.0f requêtes/s%n", count, found, seconds, count / seconds);
+                }
+            } while (line != null);
+        }
+    }
+
+    /**
+     * Cette méthode calcule l'itinéraire de la requête donnée, et retourne la ligne du fichier de sortie correspondante,
+     * dont l'état vaut OK, INVALID (ligne mal formée ou point hors de Suisse), NO_NODE (aucun nœud à moins de 500 m d'un point),
+     * SAME_NODE (les deux points sont placés sur le même nœud), NO_ROUTE ou GPX_ERROR (l'itinéraire a été calculé, mais son
+     * fichier GPX n'a pas pu être écrit) : une erreur ne concerne ainsi que sa ligne, et n'interrompt pas le calcul des autres.
+     */
+
+    private String process(int index, String line) {
+
+        String[] fields = line.split(",");
+        PointCh from, to;
+        try {
+            if (fields.length < 4) return index + ",INVALID,,,,,";
+            from = point(fields[0], fields[1]);
+            to = point(fields[2], fields[3]);
+        } catch (IllegalArgumentException e) { // les NumberFormatException en font partie
+            return index + ",INVALID,,,,,";
+        }
+
+        int fromNodeId = graph.nodeClosestTo(from, SEARCH_DISTANCE, components::isInMainComponent);
+        int toNodeId = graph.nodeClosestTo(to, SEARCH_DISTANCE, components::isInMainComponent);
+        if (fromNodeId == -1 || toNodeId == -1) return index + ",NO_NODE,,,,,";
+        if (fromNodeId == toNodeId) return index + ",SAME_NODE,0,0,0,0,";
+
+        Route route = routeComputer.bestRouteBetween(fromNodeId, toNodeId);
+        if (route == null) return index + ",NO_ROUTE,,,,,";
+
+        ElevationProfile profile = ElevationProfileComputer.elevationProfile(route, PROFILE_STEP);
+        String status = "OK", gpx = "";
+        if (gpxDirectory != null) {
+            Path gpxPath = gpxDirectory.resolve(index + ".gpx");
+            try {
+                GpxGenerator.writeGpx(gpxPath.toString(), route, profile);
+                gpx = gpxPath.toString();
+            } catch (IOException e) {
+                status = "GPX_ERROR";
+            }
+        }
+
+        return String.format(Locale.ROOT, "%d,%s,%.1f,%.1f,%.1f,%.1f,%s",
+                index, status, route.length(), profile.totalAscent(), profile.totalDescent(), routeComputer.costOf(route), gpx);
+    }
+
+    private static PointCh point(String lon, String lat) {
+        double lonRad = Math.toRadians(Double.parseDouble(lon.strip()));
+        double latRad = Math.toRadians(Double.parseDouble(lat.strip()));
+        double e = Ch1903.e(lonRad, latRad), n = Ch1903.n(lonRad, latRad);
+        if (!SwissBounds.containsEN(e, n)) throw new IllegalArgumentException();
+        return new PointCh(e, n);
+    }
+}
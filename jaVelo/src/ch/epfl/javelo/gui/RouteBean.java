@@ -1,12 +1,15 @@
 package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.routing.*;
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.util.Pair;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author Ahmed Abdelmalek (344471)
@@ -16,10 +19,21 @@ import java.util.*;
  */
 public final class RouteBean {
 
+    private static final long PREVIEW_DEADLINE = 1_000_000_000L; // Le délai accordé au calcul d'un aperçu, en nanosecondes.
+
     private final ObservableList<Waypoint> waypoints = FXCollections.observableArrayList();
     private final ObjectProperty<Route> route = new SimpleObjectProperty<>();
     private final DoubleProperty highlightedPosition = new SimpleDoubleProperty(Double.NaN);
     private final ObjectProperty<ElevationProfile> elevationProfile = new SimpleObjectProperty<>();
+    private final DoubleProperty routeBound = new SimpleDoubleProperty(1);
+    private List<Integer> routeNodeIds = List.of(); // Les nœuds des points de passage à partir desquels l'itinéraire affiché a été calculé.
+    private final BooleanProperty dragging = new SimpleBooleanProperty();
+    private final ExecutorService routeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "javelo-route");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CancellationToken routeToken = new CancellationToken();
     private final Map<Pair<Integer, Integer>, Route> cacheMemoire = new LinkedHashMap<>(120, 75);
 
     /**
@@ -31,56 +45,144 @@ public final class RouteBean {
      */
 
     public RouteBean (RouteComputer routeComputer) {
+        this(routeComputer, routeComputer);
+    }
+
+    /**
+     *
+     * @param routeComputer
+     *                    représente le planificateur d'itinéraire qui va permettre de calculer à chaque fois les meilleurs itinéraires.
+     * @param fastRouteComputer
+     *                    représente le planificateur utilisé pendant le déplacement d'un point de passage, par exemple un planificateur
+     *                    sous-optimal borné (voir RouteComputer.withSuboptimality), plus rapide.
+     *
+     * Le constructeur calcule le meilleur itinéraire entre les points de passages. Les itinéraires sont calculés en arrière-plan
+     * (voir computeRoute) ; pendant un déplacement, les itinéraires approchés ne sont pas mis en cache : ils sont recalculés
+     * exactement dès que le point est relâché.
+     */
+
+    public RouteBean (RouteComputer routeComputer, RouteComputer fastRouteComputer) {
 
         waypoints.addListener((ListChangeListener<? super Waypoint>) observable -> {
+            routeToken.cancel(); // Un calcul encore en cours concerne des points de passage périmés : il est abandonné.
             if (waypoints.size()<2) {
-                route.set(null);
-                elevationProfile.set(null);
+                clearRoute();
             } else {
-                List<Route> routeList = new ArrayList<>();
-
-                for (int i=0; i < waypoints.size()-1; i++) {
-                    Route newRoute;
-                    Pair<Integer,Integer> id = new Pair<>(waypoints.get(i).nodeId(), waypoints.get(i+1).nodeId());
-                    if (Objects.equals(id.getKey(), id.getValue())) continue;
-
-                    if (cacheMemoire.containsKey(id)) {
-                        newRoute = cacheMemoire.get(id);
-                    } else {
-                        newRoute = routeComputer.bestRouteBetween(id.getKey(), id.getValue());
-                        if (cacheMemoire.size()==80) cacheMemoire.remove(cacheMemoire.keySet().iterator().next());
-                        cacheMemoire.put(id, newRoute);
-                    }
-                    if (newRoute==null) {
-                        routeList.clear();
-                        route.set(null);
-                        elevationProfile.set(null);
-                        return;
-                    }
-                    routeList.add(newRoute);
-                }
+                computeRoute(dragging.get() ? fastRouteComputer : routeComputer, dragging.get());
+            }
+        });
+    }
+
+    /**
+     *
+     * @param routeComputer
+     *                    représente le planificateur utilisé.
+     * @param preview
+     *                    représente vrai ssi l'itinéraire est un aperçu, calculé pendant un déplacement.
+     *
+     * Cette méthode calcule l'itinéraire dans un fil d'arrière-plan, afin que l'interface reste fluide, même lorsqu'un long itinéraire
+     * est calculé exactement au relâchement d'un point de passage. Chaque calcul possède son propre jeton d'annulation, annulé dès que
+     * les points de passage changent à nouveau : la recherche périmée s'arrête alors d'elle-même et son résultat n'est jamais affiché.
+     * Un aperçu est de plus limité par un délai : s'il est dépassé, le meilleur itinéraire trouvé jusque là est affiché, et si aucun
+     * n'a été trouvé, l'aperçu est simplement abandonné. Seuls les itinéraires exacts sont mis en cache.
+     */
+
+    private void computeRoute(RouteComputer routeComputer, boolean preview) {
+
+        List<Integer> nodeIds = waypoints.stream().map(Waypoint::nodeId).toList();
+        List<Pair<Integer,Integer>> segments = new ArrayList<>();
+        List<Route> cachedRoutes = new ArrayList<>(); // Le cache n'est lu et modifié que dans le fil de l'interface.
+        for (int i=0; i < waypoints.size()-1; i++) {
+            Pair<Integer,Integer> id = new Pair<>(waypoints.get(i).nodeId(), waypoints.get(i+1).nodeId());
+            if (Objects.equals(id.getKey(), id.getValue())) continue;
+            if (cacheMemoire.containsKey(id) && cacheMemoire.get(id)==null) { // Ce segment n'a pas d'itinéraire.
+                if (!preview) clearRoute();
+                return;
+            }
+            segments.add(id);
+            cachedRoutes.add(cacheMemoire.get(id));
+        }
+        if (segments.isEmpty()) return;
+
+        CancellationToken token = new CancellationToken();
+        routeToken = token;
+        long deadline = preview ? System.nanoTime() + PREVIEW_DEADLINE : RouteComputer.NO_DEADLINE;
 
-                if (!routeList.isEmpty()) {
-                    route.set(new MultiRoute(routeList));
-                    elevationProfile.set(ElevationProfileComputer.elevationProfile(route.get(), 5));
+        routeExecutor.execute(() -> {
+            List<Route> routeList = new ArrayList<>();
+            Map<Pair<Integer,Integer>, Route> computed = new LinkedHashMap<>(); // Les itinéraires exacts à mettre en cache.
+            double bound = 1; // Les itinéraires en cache sont exacts.
+            for (int i=0; i < segments.size(); i++) {
+                Route newRoute = cachedRoutes.get(i);
+                if (newRoute==null) {
+                    Pair<Integer,Integer> id = segments.get(i);
+                    RouteResult result = routeComputer.bestRouteBetween(id.getKey(), id.getValue(), deadline, token);
+                    if (result.status()==RouteResult.Status.CANCELLED) return;
+                    newRoute = result.route();
+                    bound = Math.max(bound, result.bound());
+                    if (!preview) computed.put(id, newRoute);
                 }
+                if (newRoute==null) {
+                    if (!preview) Platform.runLater(() -> {
+                        cache(computed);
+                        if (!token.isCancelled()) clearRoute();
+                    });
+                    return;
+                }
+                routeList.add(newRoute);
             }
+            double routeBoundValue = bound;
+            Route newRoute = new MultiRoute(routeList);
+            ElevationProfile profile = ElevationProfileComputer.elevationProfile(newRoute, 5);
+            Platform.runLater(() -> {
+                cache(computed);
+                if (token.isCancelled()) return; // Les points de passage ont changé entre-temps.
+                routeBound.set(routeBoundValue);
+                routeNodeIds = nodeIds;
+                route.set(newRoute);
+                elevationProfile.set(profile);
+            });
         });
     }
 
+    /**
+     * Cette méthode ajoute au cache les itinéraires exacts donnés, dans le fil de l'interface, en retirant les plus anciens
+     * lorsque le cache est plein.
+     */
+
+    private void cache(Map<Pair<Integer,Integer>, Route> routes) {
+        for (Map.Entry<Pair<Integer,Integer>, Route> entry : routes.entrySet()) {
+            if (cacheMemoire.size()==80) cacheMemoire.remove(cacheMemoire.keySet().iterator().next());
+            cacheMemoire.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void clearRoute() {
+        routeNodeIds = List.of();
+        route.set(null);
+        elevationProfile.set(null);
+    }
+
     /**
      *
      * @param position
      *        représente la position mise en évidence.
      * @return
-     *        retourne un segment qui passe par le point représenté par la position.
+     *        retourne l'index du segment qui passe par le point représenté par la position, parmi les segments (vides compris)
+     *        des points de passage à partir desquels l'itinéraire affiché a été calculé, ou -1 si ces points de passage ne sont
+     *        plus les points de passage actuels, parce que l'itinéraire est en cours de recalcul.
+     *
+     * L'itinéraire étant calculé en arrière-plan, il peut appartenir à une liste de points de passage plus ancienne que
+     * la liste actuelle : l'index est donc calculé à partir des nœuds des points de passage publiés avec lui.
      */
 
     public int indexOfNonEmptySegmentAt(double position) {
+        List<Integer> nodeIds = routeNodeIds;
+        if (!nodeIds.equals(waypoints.stream().map(Waypoint::nodeId).toList())) return -1;
         int index = route.get().indexOfSegmentAt(position);
         for (int i = 0; i <= index; i += 1) {
-            int n1 = waypoints.get(i).nodeId();
-            int n2 = waypoints.get(i + 1).nodeId();
+            int n1 = nodeIds.get(i);
+            int n2 = nodeIds.get(i + 1);
             if (n1 == n2) index += 1;
         }
         return index;
@@ -116,6 +218,17 @@ public final class RouteBean {
         return route.get();
     }
 
+    /**
+     *
+     * @return
+     *        retourne la propriété contenant la borne de l'itinéraire affiché (voir RouteResult.bound) : 1 pour un itinéraire exact,
+     *        et pour un aperçu, la plus grande borne de ses segments, Double.POSITIVE_INFINITY si l'un d'eux a été interrompu par le délai.
+     */
+
+    public ReadOnlyDoubleProperty routeBoundProperty() {
+        return routeBound;
+    }
+
     /**
      *
      * @return
@@ -136,6 +249,16 @@ public final class RouteBean {
         return highlightedPosition.get();
     }
 
+    /**
+     *
+     * @return
+     *        retourne la propriété indiquant si un point de passage est en train d'être déplacé.
+     */
+
+    public BooleanProperty draggingProperty() {
+        return dragging;
+    }
+
     /**
      *
      * @return
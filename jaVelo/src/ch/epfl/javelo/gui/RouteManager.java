@@ -97,6 +97,7 @@ public final class RouteManager {
             PointWebMercator point = PointWebMercator.of(mapViewParameters.get().zoom(), positionInMap.getX(), positionInMap.getY());
             double position = routeBean.route().pointClosestTo(point.toPointCh()).position();
             int index = routeBean.indexOfNonEmptySegmentAt(position);
+            if (index == -1) return; // L'itinéraire affiché est en cours de recalcul.
             routeBean.getWaypoints().add(index+1, new Waypoint(point.toPointCh(), routeBean.route().nodeClosestTo(position)));
         });
     }
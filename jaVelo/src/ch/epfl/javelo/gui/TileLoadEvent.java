@@ -0,0 +1,50 @@
+package ch.epfl.javelo.gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente l'événement Java Flight Recorder émis par chaque appel à TileManager.imageForTileAt,
+ * qui indique le niveau de cache (mémoire, disque ou réseau) depuis lequel la tuile a été obtenue.
+ */
+
+@Name("ch.epfl.javelo.TileLoad")
+@Label("Obtention d'une tuile")
+@Category({"JaVelo", "Interface graphique"})
+@Description("Obtention de l'image d'une tuile OSM")
+final class TileLoadEvent extends jdk.jfr.Event {
+
+    @Label("Niveau de zoom")
+    int zoomLevel;
+
+    @Label("Index X")
+    int x;
+
+    @Label("Index Y")
+    int y;
+
+    @Label("Niveau de cache")
+    @Description("mémoire, disque ou réseau")
+    String tier;
+
+    /**
+     * Cette méthode termine l'événement et l'enregistre, avec les attributs donnés, s'il doit l'être.
+     */
+
+    void commit(TileManager.TileId tileId, String tier) {
+        end();
+        if (!shouldCommit()) return;
+
+        this.zoomLevel = tileId.zoomLevel();
+        this.x = tileId.x();
+        this.y = tileId.y();
+        this.tier = tier;
+        commit();
+    }
+}
@@ -49,6 +49,7 @@ public final class TileManager {
      * Cette méthode cherche tout d'abord l'image dans le cache mémoire et la retourne. (1)
      * Si l'image n'existe pas dans le cache mémoire, elle est cherchée dans le cache disque, placée dans le cache mémoire et retournée. (2)
      * Sinon, elle est obtenue depuis le serveur de tuiles, placée dans le cache disque et puis dans le cache mémoire et retournée. (3)
+     * Chaque tuile obtenue émet un événement Java Flight Recorder (TileLoadEvent) indiquant lequel de ces trois cas s'est produit.
      */
 
     public Image imageForTileAt (TileId tileId) throws IOException {
@@ -56,14 +57,19 @@ public final class TileManager {
         int MAX_CAPACITY = 100;
         Image image;
         Path path = basePath.resolve(tileId.zoomLevel() + "/" + tileId.x() + "/" + tileId.y() + ".png");
+        TileLoadEvent event = new TileLoadEvent();
+        event.begin();
 
         if (cacheMemoire.containsKey(tileId)) { // (1)
-            return cacheMemoire.get(tileId);
+            image = cacheMemoire.get(tileId);
+            event.commit(tileId, "mémoire");
+            return image;
         } else if (Files.exists(path)) { // (2)
             try (InputStream in = new FileInputStream(path.toString())) {
                 image = new Image(in);
                 if (cacheMemoire.size()==MAX_CAPACITY) cacheMemoire.remove(cacheMemoire.keySet().iterator().next()); //Si le cache mémoire est plein, il faut donc supprimer l'image utilisée le moins récemment.
                 cacheMemoire.put(tileId, image);
+                event.commit(tileId, "disque");
                 return image;
             }
         } else { // (3)
@@ -79,6 +85,7 @@ public final class TileManager {
                     image = new Image(inputStream);
                     if (cacheMemoire.size()==MAX_CAPACITY) cacheMemoire.remove(cacheMemoire.keySet().iterator().next()); //Si le cache mémoire est plein, il faut donc supprimer l'image utilisée le moins récemment.
                     cacheMemoire.put(tileId, image);
+                    event.commit(tileId, "réseau");
                     return image;
                 }
         }
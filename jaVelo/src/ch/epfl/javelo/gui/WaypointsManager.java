@@ -2,9 +2,14 @@ package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphEdgeIndex;
+import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
 import javafx.beans.Observable;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.ObservableList;
 import javafx.geometry.Point2D;
@@ -14,6 +19,7 @@ import javafx.scene.shape.SVGPath;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * @author Ahmed Abdelmalek (344471)
@@ -28,8 +34,10 @@ public final class WaypointsManager {
     private final ObservableList<Waypoint> wayPoints;
     private final ObjectProperty<MapViewParameters> mapViewParameters;
     private final Consumer<String> stringConsumer;
+    private final IntPredicate snappable;
     private final Pane pane = new Pane();
     private final List<Group> groups = new ArrayList<>();
+    private final BooleanProperty dragging = new SimpleBooleanProperty();
     private final int SEARCH_DISTANCE = 500;
 
     /**
@@ -45,11 +53,32 @@ public final class WaypointsManager {
      */
 
     public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> mapViewParameters, ObservableList<Waypoint> wayPoints, Consumer<String> stringConsumer) {
+        this(graph, mapViewParameters, wayPoints, stringConsumer, nodeId -> true);
+    }
+
+    /**
+     *
+     * @param graph
+     *              représente le graph du réseau routier.
+     * @param mapViewParameters
+     *              représente une propriété JavaFX (ObjectProperty) contenant les paramètres de la carte affichée.
+     * @param wayPoints
+     *              représente la liste de tous les points de passage.
+     * @param stringConsumer
+     *              représente un objet (consommateur de valeurs) permettant de signaler les erreurs.
+     * @param snappable
+     *              représente le prédicat que doivent satisfaire les nœuds auxquels un point de passage peut être rattaché,
+     *              par exemple l'appartenance à la composante principale du graphe.
+     */
+
+    public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> mapViewParameters, ObservableList<Waypoint> wayPoints, Consumer<String> stringConsumer,
+                            IntPredicate snappable) {
 
         this.graph = graph;
         this.wayPoints = wayPoints;
         this.mapViewParameters = mapViewParameters;
         this.stringConsumer = stringConsumer;
+        this.snappable = snappable;
         pane.setPickOnBounds(false);
 
         stableAllCursors();
@@ -66,6 +95,7 @@ public final class WaypointsManager {
      */
 
     private void updateGroups (Observable observable) {
+            if (dragging.get()) return; //Pendant un déplacement, le marqueur déplacé est conservé : il est recréé lorsqu'il est relâché.
             pane.getChildren().clear();
             groups.clear();
             for (int i = 0; i < wayPoints.size(); i++) {
@@ -96,9 +126,9 @@ public final class WaypointsManager {
 
     /**
      * Cette méthode représente un auditeur détectant les événements sur les points de passage.
-     * Si un point est appuyé (1), alors si la souris a changé de position (2), alors on appelle la méthode newWayPoint qui va
-     * gérer le déplacement du point ou son impossibilité (3), sinon, si la souris n'a pas changé de position et elle n'est plus appuyée,
-     * je supprime le point (4).
+     * Si un point est appuyé (1), alors si la souris a changé de position (2), alors le point de passage suit le marqueur (voir previewWayPoint)
+     * et, une fois relâché, on appelle la méthode checkWayPoint qui va gérer le déplacement du point ou son impossibilité (3), sinon,
+     * si la souris n'a pas changé de position et elle n'est plus appuyée, je supprime le point (4).
      */
 
     private void dragOrDeleteCursor () {
@@ -108,11 +138,17 @@ public final class WaypointsManager {
                 Group group = groups.get(i);
                 if (group.isPressed()) { // (1)
                     Point2D point2D = new Point2D(group.getLayoutX(), group.getLayoutY());
+                    Waypoint original = wayPoints.get(i);
                         pane.setOnMouseDragged(event2 -> { // (2)
                             group.setLayoutX(group.getLayoutX() + (event2.getX()) - point.get().getX());
                             group.setLayoutY(group.getLayoutY() + (event2.getY()) - point.get().getY());
                             point.set(new Point2D(event2.getX(), event2.getY()));
-                            pane.setOnMouseReleased(event3 -> checkWayPoint(groups.indexOf(group), point2D)); // (3)
+                            dragging.set(true);
+                            previewWayPoint(groups.indexOf(group));
+                            pane.setOnMouseReleased(event3 -> { // (3)
+                                dragging.set(false);
+                                checkWayPoint(groups.indexOf(group), point2D, original);
+                            });
                         });
                         pane.setOnMouseReleased(event4 -> wayPoints.remove(groups.indexOf(group))); // (4)
                         return; //Si on a appuyé sur un groupe pas la peine de voir si les autres groupes sont appuyés, car on ne peut pas appuyer sur plusieurs groupes à la fois.
@@ -127,22 +163,41 @@ public final class WaypointsManager {
      *              représente l'index du point qu'on est en train de déplacer.
      * @param startPoint
      *              représente le point d'origine du point déplacé.
+     * @param original
+     *              représente le point de passage tel qu'il était avant le déplacement.
      *
      * Cette méthode gère le déplacement d'un point. Si la nouvelle position est invalide, alors,
-     * le point revient à sa position initiale (startPoint), sinon le point de passage change de position.
+     * le point revient à sa position initiale (startPoint, original), sinon le point de passage change de position.
      */
 
-    private void checkWayPoint (int index, Point2D startPoint) {
+    private void checkWayPoint (int index, Point2D startPoint, Waypoint original) {
         Group group = groups.get(index);
         PointWebMercator point = mapViewParameters.get().pointAt(group.getLayoutX(), group.getLayoutY());
-        int nodeId = point.toPointCh()==null ? -1 : graph.nodeClosestTo(point.toPointCh(), SEARCH_DISTANCE);
+        int nodeId = nodeClosestTo(point);
         if (nodeId == -1) {
             group.setLayoutX(startPoint.getX());
             group.setLayoutY(startPoint.getY());
+            wayPoints.set(index, original); //le point a pu suivre le marqueur pendant le déplacement
             stringConsumer.accept("Aucune route à proximité !");
         } else wayPoints.set(index, new Waypoint(point.toPointCh(), nodeId));
     }
 
+    /**
+     *
+     * @param index
+     *              représente l'index du point qu'on est en train de déplacer.
+     *
+     * Cette méthode rattache le point de passage, pendant son déplacement, au nœud le plus proche du marqueur,
+     * afin que l'itinéraire suive la souris. Rien n'est fait si aucun nœud n'est à proximité ou si le nœud n'a pas changé.
+     */
+
+    private void previewWayPoint (int index) {
+        Group group = groups.get(index);
+        PointWebMercator point = mapViewParameters.get().pointAt(group.getLayoutX(), group.getLayoutY());
+        int nodeId = nodeClosestTo(point);
+        if (nodeId != -1 && nodeId != wayPoints.get(index).nodeId()) wayPoints.set(index, new Waypoint(point.toPointCh(), nodeId));
+    }
+
     /**
      *
      * @param index
@@ -183,6 +238,36 @@ public final class WaypointsManager {
     }
 
 
+    /**
+     *
+     * @param point
+     *              représente le point du marqueur.
+     * @return
+     *              retourne l'identité du nœud auquel rattacher le point de passage, ou -1 si aucune route n'est à proximité
+     *              ou si le point est hors de Suisse.
+     *
+     * Cette méthode cherche l'arête la plus proche du point (et non le nœud le plus proche, qui peut se trouver sur une autre route
+     * lorsque les arêtes sont longues), parmi celles dont les deux nœuds peuvent recevoir un point de passage, puis retourne
+     * celui de ses deux nœuds qui est le plus proche du point de l'arête trouvé. Comme le point de passage est rattaché à un nœud,
+     * ce nœud doit lui aussi se trouver à moins de SEARCH_DISTANCE du point : sinon l'autre nœud de l'arête est essayé, puis,
+     * si aucun ne convient (une arête très longue), le nœud le plus proche du point.
+     */
+
+    private int nodeClosestTo(PointWebMercator point) {
+        PointCh pointCh = point.toPointCh();
+        if (pointCh==null) return -1; // la méthode edgeClosestTo n'accepte que des points en Suisse
+        GraphEdgeIndex.EdgePoint edgePoint = graph.edgeClosestTo(pointCh, SEARCH_DISTANCE,
+                edgeId -> snappable.test(graph.edgeSourceNodeId(edgeId)) && snappable.test(graph.edgeTargetNodeId(edgeId)));
+        if (edgePoint.edgeId() == -1) return -1;
+        int edgeId = edgePoint.edgeId();
+        boolean sourceFirst = edgePoint.position() <= graph.edgeLength(edgeId) / 2;
+        int first = sourceFirst ? graph.edgeSourceNodeId(edgeId) : graph.edgeTargetNodeId(edgeId);
+        int second = sourceFirst ? graph.edgeTargetNodeId(edgeId) : graph.edgeSourceNodeId(edgeId);
+        if (graph.nodePoint(first).distanceTo(pointCh) <= SEARCH_DISTANCE) return first;
+        if (graph.nodePoint(second).distanceTo(pointCh) <= SEARCH_DISTANCE) return second;
+        return graph.nodeClosestTo(pointCh, SEARCH_DISTANCE, snappable);
+    }
+
     /**
      *
      * @return
@@ -193,6 +278,16 @@ public final class WaypointsManager {
         return pane;
     }
 
+    /**
+     *
+     * @return
+     *        retourne la propriété indiquant si un point de passage est en train d'être déplacé.
+     */
+
+    public ReadOnlyBooleanProperty draggingProperty() {
+        return dragging;
+    }
+
     /**
      *
      * @param x
@@ -203,8 +298,7 @@ public final class WaypointsManager {
      *         lève une exception si les coordonnées du point ne sont pas valides.
      *
      * Cette méthode ajoute un nouveau point de coordonnées x et y de passage au nœud du graphe qui en est le plus proche.
-     * Si mon point "point" est nul alors la méthode sectorsInArea de nodeClosestTo va lever une exception donc je mets l'identité
-     * du nœud manuellement en -1 (1) pour éviter cette exception et gérer l'erreur dans la prochaine ligne de code (2).
+     * Si mon point "point" est nul alors l'identité du nœud vaut -1 (1), et l'erreur est gérée dans la prochaine ligne de code (2).
      */
 
     public void addWaypoint(double x, double y) {
@@ -212,8 +306,8 @@ public final class WaypointsManager {
         Preconditions.checkArgument(x>=0 && y>=0);
 
         PointWebMercator point = mapViewParameters.get().pointAt(x,y);
-        int nodeId = point.toPointCh()==null ? -1 : graph.nodeClosestTo(point.toPointCh(), SEARCH_DISTANCE); // (1)
+        int nodeId = nodeClosestTo(point); // (1)
         if (nodeId == -1) stringConsumer.accept("Aucune route à proximité !"); // (2)
         else wayPoints.add(new Waypoint(point.toPointCh(), nodeId));
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
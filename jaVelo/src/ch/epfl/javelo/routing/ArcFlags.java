@@ -0,0 +1,202 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente les drapeaux d'arêtes (arc-flags) calculés par ArcFlagsBuilder pour une fonction de coût donnée.
+ * La Suisse est découpée en régions carrées regroupant chacune des blocs de secteurs de GraphSectors (128×128),
+ * et chaque arête possède un ensemble de bits contenant, pour chaque région, un bit valant 1 ssi l'arête se trouve sur
+ * un itinéraire de coût minimal menant à cette région. Une recherche vers un nœud peut donc ignorer toutes les arêtes
+ * dont le bit de la région de ce nœud vaut 0.
+ *
+ * Il possède les attributs suivants :
+ * @param regionsPerSide qui représente le nombre de régions par côté (une puissance de deux comprise entre 1 et 32).
+ * @param costHash qui représente l'empreinte (voir costHash) de la fonction de coût pour laquelle les drapeaux ont été calculés.
+ * @param flags qui contient les ensembles de bits des arêtes, chacun occupant wordsPerEdge() entiers de type long.
+ */
+
+public record ArcFlags(int regionsPerSide, long costHash, LongBuffer flags) {
+
+    private static final String FILE_NAME = "arc_flags.bin";
+    private static final int SECTORS_PER_SIDE = 128;
+    private static final int HEADER_LONGS = 2; // le nombre de régions par côté et l'empreinte de la fonction de coût
+
+    /**
+     * Le nombre maximal de régions par côté : 32×32 régions occupent 16 longs par arête, et les drapeaux de plusieurs millions
+     * d'arêtes tiennent encore dans une seule mémoire tampon (de moins de 2 Go), indexée par des entiers de type int.
+     */
+
+    public static final int MAX_REGIONS_PER_SIDE = 32;
+
+    /**
+     * Le constructeur compact valide le nombre de régions par côté.
+     *
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si le nombre de régions par côté n'est pas une puissance de deux comprise entre 1 et 32,
+     *         ou si la taille des drapeaux n'est pas un multiple de wordsPerEdge.
+     */
+
+    public ArcFlags {
+        Preconditions.checkArgument(regionsPerSide > 0 && regionsPerSide <= MAX_REGIONS_PER_SIDE && Integer.bitCount(regionsPerSide) == 1);
+        Preconditions.checkArgument(flags.capacity() % wordsPerEdge(regionsPerSide) == 0);
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe utilisé.
+     * @param costFunction
+     *         représente la fonction de coût.
+     * @return
+     *         retourne l'empreinte de la fonction de coût donnée sur le graphe donné, calculée à partir du facteur de coût
+     *         de chaque arête de longueur non nulle, arrondi au millième. Deux fonctions donnant les mêmes coûts, comme
+     *         CityBikeCF et sa table compilée EdgeCosts, ont donc la même empreinte.
+     */
+
+    public static long costHash(Graph graph, CostFunction costFunction) {
+        long hash = 0;
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId++) {
+            if (graph.edgeLength(edgeId) == 0) continue; // leur coût est nul ou infini, quel que soit le facteur
+            double factor = costFunction.costFactor(graph.edgeSourceNodeId(edgeId), edgeId);
+            hash = 31 * hash + (factor == Double.POSITIVE_INFINITY ? -1 : Math.round(factor * 1000));
+        }
+        return hash;
+    }
+
+    /**
+     *
+     * @param regionsPerSide
+     *         représente le nombre de régions par côté.
+     * @return
+     *         retourne le nombre d'entiers de type long occupés par l'ensemble de bits d'une arête.
+     */
+
+    public static int wordsPerEdge(int regionsPerSide) {
+        return Math2.ceilDiv(regionsPerSide * regionsPerSide, Long.SIZE);
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre total de régions.
+     */
+
+    public int regionCount() {
+        return regionsPerSide * regionsPerSide;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre d'arêtes couvertes par les drapeaux.
+     */
+
+    public int edgeCount() {
+        return flags.capacity() / wordsPerEdge(regionsPerSide);
+    }
+
+    /**
+     *
+     * @param point
+     *         représente un point en Suisse.
+     * @return
+     *         retourne l'index de la région contenant le secteur du point donné.
+     */
+
+    public int region(PointCh point) {
+        return region(point, regionsPerSide);
+    }
+
+    /**
+     *
+     * @param point
+     *         représente un point en Suisse.
+     * @param regionsPerSide
+     *         représente le nombre de régions par côté.
+     * @return
+     *         retourne l'index de la région contenant le secteur du point donné, pour le découpage donné.
+     */
+
+    public static int region(PointCh point, int regionsPerSide) {
+        int sectorsPerRegion = SECTORS_PER_SIDE / regionsPerSide;
+        int x = Math2.clamp(0, (int) ((point.e() - SwissBounds.MIN_E) / (SwissBounds.WIDTH / SECTORS_PER_SIDE)), SECTORS_PER_SIDE - 1);
+        int y = Math2.clamp(0, (int) ((point.n() - SwissBounds.MIN_N) / (SwissBounds.HEIGHT / SECTORS_PER_SIDE)), SECTORS_PER_SIDE - 1);
+        return (y / sectorsPerRegion) * regionsPerSide + x / sectorsPerRegion;
+    }
+
+    /**
+     *
+     * @param edgeId
+     *         représente l'identité de l'arête.
+     * @param region
+     *         représente l'index de la région.
+     * @return
+     *         retourne vrai ssi l'arête donnée se trouve sur un itinéraire de coût minimal menant à la région donnée.
+     *
+     * L'index calculé ne déborde pas : il est inférieur à la taille des drapeaux, qui est un int.
+     */
+
+    public boolean isSet(int edgeId, int region) {
+        long word = flags.get(edgeId * wordsPerEdge(regionsPerSide) + region / Long.SIZE);
+        return (word & (1L << region)) != 0; //le décalage d'un long ne considère que les 6 bits de poids faible de region
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @return
+     *         retourne les drapeaux stockés dans le fichier arc_flags.bin du répertoire donné, projeté en mémoire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     */
+
+    public static ArcFlags loadFrom(Path basePath) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        // L'en-tête n'est formé que de longs, afin que les drapeaux restent alignés.
+        int regionsPerSide = (int) buffer.getLong(0);
+        int headerBytes = HEADER_LONGS * Long.BYTES;
+        return new ArcFlags(regionsPerSide, buffer.getLong(Long.BYTES), buffer.slice(headerBytes, buffer.capacity() - headerBytes).asLongBuffer());
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit les drapeaux dans le fichier arc_flags.bin du répertoire donné.
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, ((long) HEADER_LONGS + flags.capacity()) * Long.BYTES);
+            buffer.putLong(regionsPerSide);
+            buffer.putLong(costHash);
+            for (int i = 0; i < flags.capacity(); i++) buffer.putLong(flags.get(i));
+        }
+    }
+}
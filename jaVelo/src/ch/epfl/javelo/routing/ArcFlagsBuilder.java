@@ -0,0 +1,162 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente le pré-calcul (hors ligne) des drapeaux d'arêtes (ArcFlags).
+ * Les arêtes internes à une région reçoivent le drapeau de celle-ci. Ensuite, pour chaque nœud frontière d'une région
+ * (un nœud de la région atteint par une arête venant d'une autre région), une recherche de Dijkstra en arrière
+ * calcule un arbre des itinéraires de coût minimal menant à ce nœud, dont toutes les arêtes reçoivent le drapeau de la région.
+ * Les recherches d'une même région sont exécutées en parallèle.
+ */
+
+public final class ArcFlagsBuilder {
+
+    private static final int DEFAULT_REGIONS_PER_SIDE = 8;
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final int regionsPerSide;
+    private final int[] nodeRegions;
+    private final ThreadLocal<SearchWorkspace> workspaces; // un espace de travail par fil, réutilisé par tous les arbres qu'il calcule
+
+    private ArcFlagsBuilder(Graph graph, CostFunction costFunction, int regionsPerSide) {
+
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.regionsPerSide = regionsPerSide;
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount()));
+
+        nodeRegions = new int[graph.nodeCount()];
+        for (int nodeId = 0; nodeId < nodeRegions.length; nodeId++) nodeRegions[nodeId] = ArcFlags.region(graph.nodePoint(nodeId), regionsPerSide);
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe utilisé.
+     * @param costFunction
+     *         représente la fonction de coût pour laquelle les drapeaux sont calculés.
+     * @param regionsPerSide
+     *         représente le nombre de régions par côté (une puissance de deux comprise entre 1 et ArcFlags.MAX_REGIONS_PER_SIDE).
+     * @return
+     *         retourne les drapeaux des arêtes du graphe.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si le nombre de régions par côté n'est pas valide, ou si les drapeaux
+     *         du graphe ne tiendraient pas dans une seule mémoire tampon.
+     */
+
+    public static ArcFlags build(Graph graph, CostFunction costFunction, int regionsPerSide) {
+        Preconditions.checkArgument(regionsPerSide > 0 && regionsPerSide <= ArcFlags.MAX_REGIONS_PER_SIDE && Integer.bitCount(regionsPerSide) == 1);
+        // Les drapeaux et leur en-tête doivent pouvoir être écrits dans un fichier projeté en mémoire, soit moins de 2 Go.
+        Preconditions.checkArgument((long) graph.edgeCount() * ArcFlags.wordsPerEdge(regionsPerSide) < Integer.MAX_VALUE / Long.BYTES - 2);
+        return new ArcFlagsBuilder(graph, costFunction, regionsPerSide).flagAll();
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut,
+     *         et le second (facultatif) est le nombre de régions par côté, 8 par défaut (64 régions, soit un long par arête).
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée calcule les drapeaux pour la fonction de coût CityBikeCF et les écrit à côté des fichiers du graphe.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        int regionsPerSide = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REGIONS_PER_SIDE;
+        Graph graph = Graph.loadFrom(basePath);
+
+        long start = System.nanoTime();
+        ArcFlags arcFlags = build(graph, new CityBikeCF(graph), regionsPerSide);
+        arcFlags.writeTo(basePath);
+
+        System.out.printf("drapeaux de %d régions calculés en %.1f s%n", arcFlags.regionCount(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private ArcFlags flagAll() {
+
+        int words = ArcFlags.wordsPerEdge(regionsPerSide);
+        long[] flags = new long[graph.edgeCount() * words];
+
+        for (int region = 0; region < regionsPerSide * regionsPerSide; region++) {
+
+            // Les arêtes d'un arbre sont marquées par plusieurs fils à la fois, mais seulement de faux à vrai.
+            boolean[] onShortestPath = new boolean[graph.edgeCount()];
+            Arrays.stream(boundaryNodes(region)).parallel().forEach(nodeId -> markTree(nodeId, onShortestPath));
+
+            for (int edgeId = 0; edgeId < onShortestPath.length; edgeId++) {
+                boolean internal = nodeRegions[graph.edgeTargetNodeId(edgeId)] == region && nodeRegions[graph.edgeSourceNodeId(edgeId)] == region;
+                if (onShortestPath[edgeId] || internal) flags[edgeId * words + region / Long.SIZE] |= 1L << region;
+            }
+        }
+        return new ArcFlags(regionsPerSide, ArcFlags.costHash(graph, costFunction), LongBuffer.wrap(flags));
+    }
+
+    /**
+     * Cette méthode retourne les nœuds de la région donnée atteints par au moins une arête venant d'une autre région.
+     */
+
+    private int[] boundaryNodes(int region) {
+        int[] nodes = new int[16];
+        int count = 0;
+        for (int nodeId = 0; nodeId < nodeRegions.length; nodeId++) {
+            if (nodeRegions[nodeId] != region) continue;
+            for (int i = 0; i < graph.nodeInDegree(nodeId); i++) {
+                if (nodeRegions[graph.edgeSourceNodeId(graph.nodeInEdgeId(nodeId, i))] != region) {
+                    if (count == nodes.length) nodes = Arrays.copyOf(nodes, 2 * count);
+                    nodes[count++] = nodeId;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(nodes, count);
+    }
+
+    /**
+     * Cette méthode effectue une recherche de Dijkstra en arrière depuis le nœud donné et marque l'arête prédécesseur
+     * de chaque nœud atteint, c'est-à-dire les arêtes de l'arbre des itinéraires de coût minimal menant au nœud donné.
+     * La recherche utilise la direction arrière de l'espace de travail du fil courant, réinitialisé en temps constant.
+     */
+
+    private void markTree(int rootNodeId, boolean[] onShortestPath) {
+
+        SearchWorkspace ws = workspaces.get();
+        ws.reset();
+        ws.setDistance(1, rootNodeId, 0);
+
+        NodeHeap enExploration = ws.heap(1);
+        enExploration.push(rootNodeId, 0);
+
+        while (!enExploration.isEmpty()) {
+
+            int nodeId = enExploration.remove();
+            if (nodeId != rootNodeId) onShortestPath[ws.predArc(1, nodeId)] = true;
+
+            for (int i = 0; i < graph.nodeInDegree(nodeId); i++) {
+
+                int edgeId = graph.nodeInEdgeId(nodeId, i);
+                int source = graph.edgeSourceNodeId(edgeId);
+                float d = ws.distance(1, nodeId) + (float) (graph.edgeLength(edgeId) * costFunction.costFactor(source, edgeId));
+
+                if (d < ws.distance(1, source)) {
+                    ws.setDistance(1, source, d);
+                    ws.setPred(1, source, nodeId, edgeId);
+                    enExploration.push(source, d);
+                }
+            }
+        }
+    }
+}
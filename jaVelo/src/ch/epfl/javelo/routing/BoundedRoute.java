@@ -0,0 +1,15 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * 
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente le résultat d'une recherche d'itinéraire sous-optimale bornée.
+ * Il possède les attributs suivants :
+ * @param route, qui représente l'itinéraire trouvé, ou null si aucun itinéraire n'existe.
+ * @param bound, qui représente la borne atteinte : le coût de l'itinéraire est au plus bound fois le coût minimal.
+ */
+
+public record BoundedRoute(Route route, double bound) {
+}
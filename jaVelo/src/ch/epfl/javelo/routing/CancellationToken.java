@@ -0,0 +1,33 @@
+package ch.epfl.javelo.routing;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente un jeton d'annulation, passé à une recherche d'itinéraire et annulé depuis un autre fil
+ * (par exemple lorsque la requête est devenue inutile). La recherche consulte le jeton périodiquement et s'arrête dès qu'il est annulé.
+ */
+
+public final class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    /**
+     * Cette méthode annule le jeton. Une fois annulé, il le reste.
+     */
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne vrai ssi le jeton a été annulé.
+     */
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
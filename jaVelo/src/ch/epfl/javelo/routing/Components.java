@@ -0,0 +1,279 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente les composantes du graphe selon une fonction de coût, les arêtes de coût infini étant ignorées.
+ * Deux nœuds de la même composante fortement connexe sont accessibles l'un depuis l'autre, et deux nœuds de composantes
+ * faiblement connexes différentes ne le sont pas. Ces étiquettes permettent de rejeter immédiatement la plupart des requêtes
+ * sans itinéraire, sans explorer toute la partie du graphe accessible depuis le départ.
+ * Comme leur calcul parcourt tout le graphe, elles peuvent être pré-calculées et stockées dans le fichier components.bin.
+ *
+ * Il possède les attributs suivants :
+ * @param strongLabels qui contient l'étiquette de la composante fortement connexe de chaque nœud. Les composantes sont numérotées
+ *                     dans l'ordre où l'algorithme de Tarjan les termine : une composante ne peut donc atteindre que des composantes
+ *                     d'étiquette inférieure.
+ * @param weakLabels qui contient l'étiquette de la composante faiblement connexe de chaque nœud.
+ * @param mainComponent qui représente l'étiquette de la plus grande composante fortement connexe.
+ */
+
+public record Components(IntBuffer strongLabels, IntBuffer weakLabels, int mainComponent) {
+
+    private static final String FILE_NAME = "components.bin";
+    private static final int HEADER_INTS = 2; // le nombre de nœuds et l'étiquette de la composante principale
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe utilisé.
+     * @param costFunction
+     *         représente la fonction de coût, dont les arêtes de facteur infini sont ignorées.
+     * @return
+     *         retourne les composantes du graphe selon la fonction de coût donnée.
+     */
+
+    public static Components of(Graph graph, CostFunction costFunction) {
+
+        int nodeCount = graph.nodeCount();
+        boolean[] usable = new boolean[graph.edgeCount()];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                usable[edgeId] = costFunction.costFactor(nodeId, edgeId) != Double.POSITIVE_INFINITY;
+            }
+        }
+
+        int[] strong = strongLabels(graph, usable);
+        int[] sizes = new int[nodeCount];
+        int main = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            if (++sizes[strong[nodeId]] > sizes[main]) main = strong[nodeId];
+        }
+
+        return new Components(IntBuffer.wrap(strong), IntBuffer.wrap(weakLabels(graph, usable)), main);
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne l'étiquette de la composante fortement connexe du nœud.
+     */
+
+    public int strongComponent(int nodeId) {
+        return strongLabels.get(nodeId);
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne vrai ssi le nœud appartient à la plus grande composante fortement connexe.
+     */
+
+    public boolean isInMainComponent(int nodeId) {
+        return strongComponent(nodeId) == mainComponent;
+    }
+
+    /**
+     *
+     * @param fromNodeId
+     *         représente l'identité du nœud de départ.
+     * @param toNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @return
+     *         retourne faux si le nœud d'arrivée est certainement inaccessible depuis le nœud de départ,
+     *         et vrai s'il est peut-être accessible (et certainement s'ils sont dans la même composante fortement connexe).
+     */
+
+    public boolean mayReach(int fromNodeId, int toNodeId) {
+        return weakLabels.get(fromNodeId) == weakLabels.get(toNodeId) && strongComponent(fromNodeId) >= strongComponent(toNodeId);
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe dont les composantes sont décrites.
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @return
+     *         retourne les composantes stockées dans le fichier components.bin du répertoire donné, projeté en mémoire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si le fichier ne contient pas exactement deux étiquettes par nœud du graphe.
+     */
+
+    public static Components loadFrom(Graph graph, Path basePath) throws IOException {
+
+        IntBuffer buffer;
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+        }
+        int nodeCount = graph.nodeCount();
+        Preconditions.checkArgument(buffer.capacity() == HEADER_INTS + 2L * nodeCount && buffer.get(0) == nodeCount);
+
+        return new Components(buffer.slice(HEADER_INTS, nodeCount), buffer.slice(HEADER_INTS + nodeCount, nodeCount), buffer.get(1));
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit les composantes dans le fichier components.bin du répertoire donné : le nombre de nœuds,
+     * l'étiquette de la composante principale, puis les étiquettes fortes et faibles de chaque nœud.
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            int nodeCount = strongLabels.capacity();
+            IntBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (HEADER_INTS + 2L * nodeCount) * Integer.BYTES).asIntBuffer();
+            buffer.put(nodeCount).put(mainComponent);
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) buffer.put(strongLabels.get(nodeId));
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) buffer.put(weakLabels.get(nodeId));
+        }
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée calcule les composantes du graphe selon la fonction de coût CityBikeCF, ou selon la table
+     * edge_costs.bin si elle existe, et les écrit à côté des fichiers du graphe.
+     */
+
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        Graph graph = Graph.loadFrom(basePath);
+        CostFunction costFunction = Files.exists(basePath.resolve("edge_costs.bin"))
+                ? EdgeCosts.loadFrom(graph, basePath)
+                : new CityBikeCF(graph);
+
+        long start = System.nanoTime();
+        Components components = of(graph, costFunction);
+        components.writeTo(basePath);
+        System.out.printf("composantes calculées en %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Cette méthode retourne les étiquettes des composantes fortement connexes, calculées par l'algorithme de Tarjan.
+     * La récursion est remplacée par une pile explicite (nœud et index de la prochaine arête à suivre), afin de traiter de grands graphes.
+     */
+
+    private static int[] strongLabels(Graph graph, boolean[] usable) {
+
+        int nodeCount = graph.nodeCount();
+        int[] index = new int[nodeCount];
+        int[] low = new int[nodeCount];
+        int[] labels = new int[nodeCount];
+        Arrays.fill(index, -1);
+        Arrays.fill(labels, -1);
+
+        int[] stack = new int[nodeCount]; //les nœuds visités dont la composante n'est pas encore connue
+        int[] callNodes = new int[nodeCount];
+        int[] callEdges = new int[nodeCount];
+        int stackSize = 0, callSize = 0, counter = 0, componentCount = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] != -1) continue;
+
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            callNodes[callSize] = root;
+            callEdges[callSize++] = 0;
+
+            while (callSize > 0) {
+
+                int nodeId = callNodes[callSize - 1];
+                int i = callEdges[callSize - 1];
+
+                if (i < graph.nodeOutDegree(nodeId)) {
+                    callEdges[callSize - 1]++;
+                    int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                    if (!usable[edgeId]) continue;
+
+                    int target = graph.edgeTargetNodeId(edgeId);
+                    if (index[target] == -1) {
+                        index[target] = low[target] = counter++;
+                        stack[stackSize++] = target;
+                        callNodes[callSize] = target;
+                        callEdges[callSize++] = 0;
+                    } else if (labels[target] == -1) { //le nœud cible est encore sur la pile
+                        low[nodeId] = Math.min(low[nodeId], index[target]);
+                    }
+                } else {
+                    callSize--;
+                    if (low[nodeId] == index[nodeId]) { //le nœud est la racine d'une composante, qui est retirée de la pile
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            labels[member] = componentCount;
+                        } while (member != nodeId);
+                        componentCount++;
+                    }
+                    if (callSize > 0) {
+                        int parent = callNodes[callSize - 1];
+                        low[parent] = Math.min(low[parent], low[nodeId]);
+                    }
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Cette méthode retourne les étiquettes des composantes faiblement connexes, calculées par union-find.
+     * L'étiquette d'une composante est l'identité de son représentant.
+     */
+
+    private static int[] weakLabels(Graph graph, boolean[] usable) {
+
+        int nodeCount = graph.nodeCount();
+        int[] parent = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) parent[nodeId] = nodeId;
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (!usable[edgeId]) continue;
+
+                int a = find(parent, nodeId);
+                int b = find(parent, graph.edgeTargetNodeId(edgeId));
+                if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) parent[nodeId] = find(parent, nodeId);
+        return parent;
+    }
+
+    private static int find(int[] parent, int nodeId) {
+        while (parent[nodeId] != nodeId) {
+            parent[nodeId] = parent[parent[nodeId]]; //compression du chemin par division
+            nodeId = parent[nodeId];
+        }
+        return nodeId;
+    }
+}
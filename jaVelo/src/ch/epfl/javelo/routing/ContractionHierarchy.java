@@ -0,0 +1,218 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import ch.epfl.javelo.Preconditions;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente une hiérarchie de contraction (contraction hierarchy) du graphe JaVelo,
+ * calculée pour une fonction de coût donnée par ContractionHierarchyBuilder.
+ *
+ * Il possède les attributs suivants :
+ * @param ranks qui contient le rang (l'ordre de contraction) de chaque nœud.
+ * @param upward qui contient, pour chaque nœud, les arcs sortants menant à un nœud de rang supérieur (recherche avant).
+ * @param downward qui contient, pour chaque nœud, les arcs entrants provenant d'un nœud de rang supérieur (recherche arrière).
+ * @param shortcuts qui contient, pour chaque raccourci, les identités des deux arcs qu'il remplace.
+ *
+ * L'identité d'un arc est soit l'identité (positive) d'une arête du graphe,
+ * soit le complément à un (~s, donc négatif) de l'index s d'un raccourci.
+ */
+
+public record ContractionHierarchy(IntBuffer ranks, Adjacency upward, Adjacency downward, IntBuffer shortcuts) {
+
+    private static final String FILE_NAME = "ch.bin";
+    private static final int HEADER_INTS = 4;
+
+    /**
+     * L'enregistrement imbriqué Adjacency représente une liste d'adjacence compacte (CSR) des arcs de la hiérarchie.
+     * Les arcs du nœud d'identité nodeId ont les index allant de index.get(nodeId) (inclus) à index.get(nodeId+1) (exclus),
+     * et chacun possède un nœud voisin (neighbors), une identité d'arc (arcs) et un coût (weights).
+     */
+
+    public record Adjacency(IntBuffer index, IntBuffer neighbors, IntBuffer arcs, FloatBuffer weights) {
+
+        /**
+         *
+         * @param nodeId
+         *         représente l'identité du nœud.
+         * @return
+         *         retourne l'index du premier arc du nœud d'identité donnée.
+         */
+
+        public int firstArc(int nodeId) {
+            return index.get(nodeId);
+        }
+
+        /**
+         *
+         * @param nodeId
+         *         représente l'identité du nœud.
+         * @return
+         *         retourne l'index situé juste après le dernier arc du nœud d'identité donnée.
+         */
+
+        public int endArc(int nodeId) {
+            return index.get(nodeId + 1);
+        }
+
+        /**
+         *
+         * @return
+         *         retourne le nombre total d'arcs de cette liste d'adjacence.
+         */
+
+        public int count() {
+            return neighbors.capacity();
+        }
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre de nœuds de la hiérarchie.
+     */
+
+    public int nodeCount() {
+        return ranks.capacity();
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre de raccourcis de la hiérarchie.
+     */
+
+    public int shortcutCount() {
+        return shortcuts.capacity() / 2;
+    }
+
+    /**
+     *
+     * @param arcId
+     *         représente l'identité de l'arc.
+     * @return
+     *         retourne vrai ssi l'arc d'identité donnée est un raccourci.
+     */
+
+    public static boolean isShortcut(int arcId) {
+        return arcId < 0;
+    }
+
+    /**
+     *
+     * @param arcId
+     *         représente l'identité d'un raccourci.
+     * @return
+     *         retourne l'identité du premier des deux arcs remplacés par le raccourci.
+     */
+
+    public int firstSkippedArc(int arcId) {
+        return shortcuts.get(2 * ~arcId);
+    }
+
+    /**
+     *
+     * @param arcId
+     *         représente l'identité d'un raccourci.
+     * @return
+     *         retourne l'identité du second des deux arcs remplacés par le raccourci.
+     */
+
+    public int secondSkippedArc(int arcId) {
+        return shortcuts.get(2 * ~arcId + 1);
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @return
+     *         retourne la hiérarchie stockée dans le fichier ch.bin du répertoire donné, projetée en mémoire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     */
+
+    public static ContractionHierarchy loadFrom(Path basePath) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        IntBuffer header = buffer.asIntBuffer();
+        int nodeCount = header.get(0);
+        int upCount = header.get(1);
+        int downCount = header.get(2);
+        int shortcutCount = header.get(3);
+
+        int[] offset = {HEADER_INTS * Integer.BYTES};
+        IntBuffer ranks = intSection(buffer, offset, nodeCount);
+        Adjacency upward = new Adjacency(intSection(buffer, offset, nodeCount + 1), intSection(buffer, offset, upCount),
+                intSection(buffer, offset, upCount), floatSection(buffer, offset, upCount));
+        Adjacency downward = new Adjacency(intSection(buffer, offset, nodeCount + 1), intSection(buffer, offset, downCount),
+                intSection(buffer, offset, downCount), floatSection(buffer, offset, downCount));
+        IntBuffer shortcuts = intSection(buffer, offset, 2 * shortcutCount);
+
+        Preconditions.checkArgument(offset[0] == buffer.capacity());
+
+        return new ContractionHierarchy(ranks, upward, downward, shortcuts);
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit la hiérarchie dans le fichier ch.bin du répertoire donné, à côté de nodes.bin et edges.bin.
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+
+        int size = Integer.BYTES * (HEADER_INTS + nodeCount() + 2 * (nodeCount() + 1)
+                + 3 * (upward.count() + downward.count()) + shortcuts.capacity());
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.putInt(nodeCount()).putInt(upward.count()).putInt(downward.count()).putInt(shortcutCount());
+        putInts(buffer, ranks);
+        for (Adjacency adjacency : new Adjacency[] {upward, downward}) {
+            putInts(buffer, adjacency.index());
+            putInts(buffer, adjacency.neighbors());
+            putInts(buffer, adjacency.arcs());
+            for (int i = 0; i < adjacency.weights().capacity(); i++) buffer.putFloat(adjacency.weights().get(i));
+        }
+        putInts(buffer, shortcuts);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    private static void putInts(ByteBuffer buffer, IntBuffer values) {
+        for (int i = 0; i < values.capacity(); i++) buffer.putInt(values.get(i));
+    }
+
+    private static IntBuffer intSection(ByteBuffer buffer, int[] offset, int count) {
+        IntBuffer section = buffer.slice(offset[0], count * Integer.BYTES).asIntBuffer();
+        offset[0] += count * Integer.BYTES;
+        return section;
+    }
+
+    private static FloatBuffer floatSection(ByteBuffer buffer, int[] offset, int count) {
+        FloatBuffer section = buffer.slice(offset[0], count * Float.BYTES).asFloatBuffer();
+        offset[0] += count * Float.BYTES;
+        return section;
+    }
+}
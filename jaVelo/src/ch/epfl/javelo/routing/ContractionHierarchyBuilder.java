@@ -0,0 +1,436 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente le pré-calcul (hors ligne) d'une hiérarchie de contraction pour un graphe et une fonction de coût.
+ * Les nœuds sont contractés un à un, dans l'ordre donné par une file de priorité (différence d'arêtes et voisins déjà contractés),
+ * et un raccourci est ajouté chaque fois que la recherche de témoin ne trouve pas de chemin au moins aussi court.
+ */
+
+public final class ContractionHierarchyBuilder {
+
+    private static final int WITNESS_SETTLED_LIMIT = 500;
+    private static final int SIMULATION_SETTLED_LIMIT = 50;
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final int nodeCount;
+
+    // Les arcs du graphe en cours de contraction (arêtes d'origine et raccourcis).
+    private int arcCount;
+    private int[] arcFrom;
+    private int[] arcTo;
+    private float[] arcWeight;
+    private int[] arcId;
+
+    private final int[][] outArcs;
+    private final int[] outSize;
+    private final int[][] inArcs;
+    private final int[] inSize;
+
+    private int shortcutCount;
+    private int[] shortcuts = new int[1024];
+
+    private final boolean[] contracted;
+    private final int[] contractedNeighbors;
+    private final int[] levels;
+    private final int[] lastUpdate;
+    private final int[] ranks;
+
+    // Tableaux réutilisés par les recherches de témoin.
+    private final float[] witnessDistance;
+    private final int[] touched;
+    private int touchedCount;
+    private final NodeHeap witnessQueue;
+
+    /**
+     * Le constructeur privé construit le graphe de travail à partir des arêtes de coût fini du graphe donné.
+     */
+
+    private ContractionHierarchyBuilder(Graph graph, CostFunction costFunction) {
+
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.nodeCount = graph.nodeCount();
+
+        outArcs = new int[nodeCount][];
+        outSize = new int[nodeCount];
+        inArcs = new int[nodeCount][];
+        inSize = new int[nodeCount];
+        contracted = new boolean[nodeCount];
+        contractedNeighbors = new int[nodeCount];
+        levels = new int[nodeCount];
+        lastUpdate = new int[nodeCount];
+        Arrays.fill(lastUpdate, -1);
+        ranks = new int[nodeCount];
+        witnessDistance = new float[nodeCount];
+        touched = new int[nodeCount];
+        witnessQueue = new NodeHeap(nodeCount);
+        Arrays.fill(witnessDistance, Float.POSITIVE_INFINITY);
+
+        int capacity = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) capacity += graph.nodeOutDegree(nodeId);
+        arcFrom = new int[capacity];
+        arcTo = new int[capacity];
+        arcWeight = new float[capacity];
+        arcId = new int[capacity];
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            outArcs[nodeId] = new int[Math.max(1, graph.nodeOutDegree(nodeId))];
+            inArcs[nodeId] = new int[4];
+        }
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                int target = graph.edgeTargetNodeId(edgeId);
+                float weight = (float) (graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId));
+
+                // une arête de longueur nulle et de facteur infini a un poids NaN, que ce test écarte aussi
+                if (target != nodeId && weight < Float.POSITIVE_INFINITY) addArc(nodeId, target, weight, edgeId);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe à contracter.
+     * @param costFunction
+     *         représente la fonction de coût pour laquelle la hiérarchie est calculée.
+     * @return
+     *         retourne la hiérarchie de contraction du graphe pour la fonction de coût donnée.
+     */
+
+    public static ContractionHierarchy build(Graph graph, CostFunction costFunction) {
+        return new ContractionHierarchyBuilder(graph, costFunction).contractAll();
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée calcule la hiérarchie pour la fonction de coût CityBikeCF et l'écrit à côté des fichiers du graphe.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        Graph graph = Graph.loadFrom(basePath);
+
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = build(graph, new CityBikeCF(graph));
+        hierarchy.writeTo(basePath);
+
+        System.out.printf("%d nœuds contractés, %d raccourcis ajoutés en %.1f s%n",
+                hierarchy.nodeCount(), hierarchy.shortcutCount(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private ContractionHierarchy contractAll() {
+
+        int[] priorities = new int[nodeCount];
+        NodeHeap queue = new NodeHeap(nodeCount);
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            priorities[nodeId] = priority(nodeId);
+            queue.push(nodeId, priorities[nodeId]);
+        }
+
+        int[] upStart = new int[nodeCount];
+        int[] downStart = new int[nodeCount];
+        int[][] up = {new int[1024], new int[1024]};
+        int[][] down = {new int[1024], new int[1024]};
+        float[][] upWeights = {new float[1024]};
+        float[][] downWeights = {new float[1024]};
+        int[] counts = new int[2];
+
+        int rank = 0;
+        while (!queue.isEmpty()) {
+
+            int nodeId = queue.remove();
+
+            priorities[nodeId] = priority(nodeId);
+            if (priorities[nodeId] > queue.peekKey()) { // mise à jour paresseuse
+                queue.push(nodeId, priorities[nodeId]);
+                continue;
+            }
+
+            // Les arcs restants du nœud mènent tous à des nœuds non contractés, donc de rang supérieur.
+            upStart[nodeId] = counts[0];
+            counts[0] = appendBestArcs(nodeId, outArcs[nodeId], outSize[nodeId], true, up, upWeights, counts[0]);
+            downStart[nodeId] = counts[1];
+            counts[1] = appendBestArcs(nodeId, inArcs[nodeId], inSize[nodeId], false, down, downWeights, counts[1]);
+
+            contract(nodeId, WITNESS_SETTLED_LIMIT, true);
+            contracted[nodeId] = true;
+            ranks[nodeId] = rank++;
+            detach(nodeId);
+
+            for (int i = 0; i < outSize[nodeId]; i++) updateNeighbor(nodeId, arcTo[outArcs[nodeId][i]], priorities, queue);
+            for (int i = 0; i < inSize[nodeId]; i++) updateNeighbor(nodeId, arcFrom[inArcs[nodeId][i]], priorities, queue);
+        }
+
+        return new ContractionHierarchy(IntBuffer.wrap(ranks),
+                compact(upStart, up, upWeights[0], counts[0]),
+                compact(downStart, down, downWeights[0], counts[1]),
+                IntBuffer.wrap(Arrays.copyOf(shortcuts, 2 * shortcutCount)));
+    }
+
+    /**
+     * Cette méthode retire les arcs du nœud contracté des listes de ses voisins, afin que la suite de la contraction les ignore.
+     */
+
+    private void detach(int nodeId) {
+        for (int i = 0; i < outSize[nodeId]; i++) {
+            int target = arcTo[outArcs[nodeId][i]];
+            inSize[target] = remove(inArcs[target], inSize[target], outArcs[nodeId][i]);
+        }
+        for (int i = 0; i < inSize[nodeId]; i++) {
+            int source = arcFrom[inArcs[nodeId][i]];
+            outSize[source] = remove(outArcs[source], outSize[source], inArcs[nodeId][i]);
+        }
+    }
+
+    private static int remove(int[] arcs, int size, int arc) {
+        for (int i = 0; i < size; i++) {
+            if (arcs[i] == arc) {
+                arcs[i] = arcs[size - 1];
+                return size - 1;
+            }
+        }
+        return size;
+    }
+
+    private void updateNeighbor(int contractedNodeId, int nodeId, int[] priorities, NodeHeap queue) {
+        if (contracted[nodeId] || lastUpdate[nodeId] == contractedNodeId) return; //un voisin relié dans les deux sens n'est mis à jour qu'une fois
+        lastUpdate[nodeId] = contractedNodeId;
+        contractedNeighbors[nodeId]++;
+        levels[nodeId] = Math.max(levels[nodeId], levels[contractedNodeId] + 1);
+        priorities[nodeId] = priority(nodeId);
+        queue.push(nodeId, priorities[nodeId]); // la clé du voisin est modifiée sur place
+    }
+
+    /**
+     * Cette méthode retourne la priorité du nœud : le double de la différence entre le nombre de raccourcis que sa contraction
+     * ajouterait et le nombre d'arcs qu'elle supprimerait, plus le nombre de ses voisins déjà contractés et sa profondeur.
+     */
+
+    private int priority(int nodeId) {
+        int removed = 0;
+        for (int i = 0; i < outSize[nodeId]; i++) if (isBestArc(outArcs[nodeId][i], outArcs[nodeId], outSize[nodeId], true)) removed++;
+        for (int i = 0; i < inSize[nodeId]; i++) if (isBestArc(inArcs[nodeId][i], inArcs[nodeId], inSize[nodeId], false)) removed++;
+        return 2 * (contract(nodeId, SIMULATION_SETTLED_LIMIT, false) - removed) + contractedNeighbors[nodeId] + levels[nodeId];
+    }
+
+    /**
+     * Cette méthode simule (add faux) ou effectue (add vrai) la contraction du nœud donné,
+     * et retourne le nombre de raccourcis nécessaires.
+     */
+
+    private int contract(int nodeId, int settledLimit, boolean add) {
+
+        int count = 0;
+        int[] out = outArcs[nodeId];
+        int[] in = inArcs[nodeId];
+        float maxOut = 0;
+        for (int j = 0; j < outSize[nodeId]; j++) {
+            if (!contracted[arcTo[out[j]]]) maxOut = Math.max(maxOut, arcWeight[out[j]]);
+        }
+
+        for (int i = 0; i < inSize[nodeId]; i++) {
+
+            int inArc = in[i];
+            int source = arcFrom[inArc];
+            if (contracted[source] || !isBestArc(inArc, in, inSize[nodeId], false)) continue;
+
+            witnessSearch(source, nodeId, arcWeight[inArc] + maxOut, settledLimit);
+
+            for (int j = 0; j < outSize[nodeId]; j++) {
+
+                int outArc = out[j];
+                int target = arcTo[outArc];
+                if (contracted[target] || target == source || !isBestArc(outArc, out, outSize[nodeId], true)) continue;
+
+                float weight = arcWeight[inArc] + arcWeight[outArc];
+                if (witnessDistance[target] > weight) {
+                    count++;
+                    if (add) addShortcut(source, target, weight, arcId[inArc], arcId[outArc]);
+                }
+            }
+            resetWitnessSearch();
+        }
+        return count;
+    }
+
+    /**
+     * Cette méthode retourne vrai ssi l'arc donné est l'arc de coût minimal (le premier en cas d'égalité)
+     * parmi les arcs parallèles de la liste donnée.
+     */
+
+    private boolean isBestArc(int arc, int[] arcs, int size, boolean outgoing) {
+        int neighbor = outgoing ? arcTo[arc] : arcFrom[arc];
+        for (int k = 0; k < size; k++) {
+            int other = arcs[k];
+            if ((outgoing ? arcTo[other] : arcFrom[other]) != neighbor || other == arc) continue;
+            if (arcWeight[other] < arcWeight[arc] || (arcWeight[other] == arcWeight[arc] && other < arc)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cette méthode effectue une recherche de Dijkstra limitée depuis le nœud source, sans passer par le nœud ignoré
+     * ni par les nœuds contractés, et laisse les distances trouvées dans witnessDistance.
+     */
+
+    private void witnessSearch(int source, int ignoredNodeId, float maxDistance, int settledLimit) {
+
+        witnessDistance[source] = 0;
+        touched[touchedCount++] = source;
+        witnessQueue.push(source, 0);
+        int settled = 0;
+
+        while (!witnessQueue.isEmpty() && settled < settledLimit) {
+
+            if (witnessQueue.peekKey() > maxDistance) break;
+            int nodeId = witnessQueue.remove();
+            settled++;
+
+            for (int i = 0; i < outSize[nodeId]; i++) {
+
+                int arc = outArcs[nodeId][i];
+                int target = arcTo[arc];
+                if (target == ignoredNodeId || contracted[target]) continue;
+
+                float d = witnessDistance[nodeId] + arcWeight[arc];
+                if (d < witnessDistance[target]) {
+                    if (witnessDistance[target] == Float.POSITIVE_INFINITY) touched[touchedCount++] = target;
+                    witnessDistance[target] = d;
+                    witnessQueue.push(target, d);
+                }
+            }
+        }
+    }
+
+    private void resetWitnessSearch() {
+        for (int i = 0; i < touchedCount; i++) witnessDistance[touched[i]] = Float.POSITIVE_INFINITY;
+        touchedCount = 0;
+        witnessQueue.clear();
+    }
+
+    private void addShortcut(int from, int to, float weight, int firstArcId, int secondArcId) {
+
+        // Un arc plus coûteux reliant déjà les deux nœuds est remplacé par le raccourci, plutôt que de lui ajouter un arc parallèle.
+        int existing = -1;
+        for (int i = 0; i < outSize[from] && existing == -1; i++) if (arcTo[outArcs[from][i]] == to) existing = outArcs[from][i];
+        if (existing != -1 && weight >= arcWeight[existing]) return;
+
+        if (2 * shortcutCount + 2 > shortcuts.length) shortcuts = Arrays.copyOf(shortcuts, 2 * shortcuts.length);
+        shortcuts[2 * shortcutCount] = firstArcId;
+        shortcuts[2 * shortcutCount + 1] = secondArcId;
+
+        if (existing != -1) {
+            arcWeight[existing] = weight;
+            arcId[existing] = ~shortcutCount;
+        } else {
+            addArc(from, to, weight, ~shortcutCount);
+        }
+        shortcutCount++;
+    }
+
+    private void addArc(int from, int to, float weight, int id) {
+
+        if (arcCount == arcFrom.length) {
+            int capacity = Math.max(16, 2 * arcCount);
+            arcFrom = Arrays.copyOf(arcFrom, capacity);
+            arcTo = Arrays.copyOf(arcTo, capacity);
+            arcWeight = Arrays.copyOf(arcWeight, capacity);
+            arcId = Arrays.copyOf(arcId, capacity);
+        }
+        arcFrom[arcCount] = from;
+        arcTo[arcCount] = to;
+        arcWeight[arcCount] = weight;
+        arcId[arcCount] = id;
+
+        if (outSize[from] == outArcs[from].length) outArcs[from] = Arrays.copyOf(outArcs[from], 2 * outArcs[from].length);
+        outArcs[from][outSize[from]++] = arcCount;
+        if (inSize[to] == inArcs[to].length) inArcs[to] = Arrays.copyOf(inArcs[to], 2 * inArcs[to].length);
+        inArcs[to][inSize[to]++] = arcCount;
+
+        arcCount++;
+    }
+
+    /**
+     * Cette méthode ajoute aux tableaux donnés le meilleur arc vers chaque voisin non contracté du nœud,
+     * et retourne le nouveau nombre d'arcs qu'ils contiennent.
+     */
+
+    private int appendBestArcs(int nodeId, int[] arcs, int size, boolean outgoing, int[][] entries, float[][] weights, int count) {
+
+        for (int i = 0; i < size; i++) {
+
+            int arc = arcs[i];
+            int neighbor = outgoing ? arcTo[arc] : arcFrom[arc];
+            if (contracted[neighbor] || !isBestArc(arc, arcs, size, outgoing)) continue;
+
+            if (count == weights[0].length) {
+                entries[0] = Arrays.copyOf(entries[0], 2 * count);
+                entries[1] = Arrays.copyOf(entries[1], 2 * count);
+                weights[0] = Arrays.copyOf(weights[0], 2 * count);
+            }
+            entries[0][count] = neighbor;
+            entries[1][count] = arcId[arc];
+            weights[0][count] = arcWeight[arc];
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Cette méthode réordonne les arcs, ajoutés dans l'ordre de contraction, selon l'identité de leur nœud.
+     */
+
+    private ContractionHierarchy.Adjacency compact(int[] start, int[][] entries, float[] weights, int count) {
+
+        int[] index = new int[nodeCount + 1];
+        int[] neighbors = new int[count];
+        int[] arcs = new int[count];
+        float[] sortedWeights = new float[count];
+
+        // Le nombre d'arcs d'un nœud est la différence entre son début et le début du nœud contracté juste après lui.
+        int[] byRank = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) byRank[ranks[nodeId]] = nodeId;
+
+        int[] end = new int[nodeCount];
+        for (int rank = 0; rank < nodeCount; rank++) {
+            end[byRank[rank]] = rank + 1 < nodeCount ? start[byRank[rank + 1]] : count;
+        }
+
+        int position = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            index[nodeId] = position;
+            int length = end[nodeId] - start[nodeId];
+            System.arraycopy(entries[0], start[nodeId], neighbors, position, length);
+            System.arraycopy(entries[1], start[nodeId], arcs, position, length);
+            System.arraycopy(weights, start[nodeId], sortedWeights, position, length);
+            position += length;
+        }
+        index[nodeCount] = position;
+
+        return new ContractionHierarchy.Adjacency(IntBuffer.wrap(index), IntBuffer.wrap(neighbors),
+                IntBuffer.wrap(arcs), FloatBuffer.wrap(sortedWeights));
+    }
+}
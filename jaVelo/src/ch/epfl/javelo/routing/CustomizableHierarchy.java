@@ -0,0 +1,332 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente une hiérarchie de contraction personnalisable (customizable contraction hierarchy),
+ * calculée une seule fois par CustomizableHierarchyBuilder à partir de la seule topologie du graphe, indépendamment de toute
+ * fonction de coût. Elle contient un ordre de contraction et tous les arcs (non orientés) obtenus en contractant les nœuds
+ * dans cet ordre sans recherche de témoins. La méthode customize y applique ensuite, en quelques secondes, les coûts d'une
+ * fonction de coût quelconque et en déduit une ContractionHierarchy utilisable par RouteComputer.
+ *
+ * Il possède les attributs suivants :
+ * @param ranks qui contient le rang (l'ordre de contraction) de chaque nœud.
+ * @param upIndex qui contient, pour chaque nœud, l'index de son premier arc vers un nœud de rang supérieur.
+ *                Les arcs du nœud d'identité nodeId ont les index allant de upIndex.get(nodeId) (inclus) à upIndex.get(nodeId+1) (exclus),
+ *                chaque arc étant ainsi possédé par son extrémité de rang inférieur.
+ * @param upNeighbors qui contient l'extrémité de rang supérieur de chaque arc, les arcs d'un nœud étant triés par rang croissant.
+ * @param downIndex qui contient, pour chaque nœud, l'index de son premier voisin de rang inférieur dans downNeighbors.
+ * @param downNeighbors qui contient les voisins de rang inférieur de chaque nœud, triés par rang croissant.
+ * @param downArcs qui contient l'arc reliant chaque nœud à chacun de ses voisins de rang inférieur.
+ */
+
+public record CustomizableHierarchy(IntBuffer ranks, IntBuffer upIndex, IntBuffer upNeighbors,
+                                    IntBuffer downIndex, IntBuffer downNeighbors, IntBuffer downArcs) {
+
+    private static final String FILE_NAME = "cch.bin";
+    private static final int HEADER_INTS = 2;
+
+    // Chaque arc possède deux sens : vers le haut (du nœud de rang inférieur vers l'autre) et vers le bas.
+    private static final int UP = 0, DOWN = 1;
+
+    /**
+     *
+     * @return
+     *         retourne le nombre de nœuds de la hiérarchie.
+     */
+
+    public int nodeCount() {
+        return ranks.capacity();
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre d'arcs (non orientés) de la hiérarchie.
+     */
+
+    public int arcCount() {
+        return upNeighbors.capacity();
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe à partir duquel la hiérarchie a été calculée.
+     * @param costFunction
+     *         représente la fonction de coût à appliquer.
+     * @return
+     *         retourne la hiérarchie de contraction correspondant à la fonction de coût donnée. Les coûts des arcs sont d'abord
+     *         initialisés avec ceux des arêtes du graphe, puis chaque arc est amélioré grâce aux triangles qu'il forme avec
+     *         les nœuds de rang inférieur. Les nœuds sont traités par niveaux (un nœud a un niveau supérieur à tous ses voisins
+     *         de rang inférieur), et les nœuds d'un même niveau, qui ne modifient que leurs propres arcs, en parallèle.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la hiérarchie ne possède pas le même nombre de nœuds que le graphe.
+     */
+
+    public ContractionHierarchy customize(Graph graph, CostFunction costFunction) {
+
+        Preconditions.checkArgument(graph.nodeCount() == nodeCount());
+
+        // Pour chaque sens de chaque arc : le coût, et l'arête du graphe (positive) ou le complément à un du nœud intermédiaire.
+        float[] weights = new float[2 * arcCount()];
+        int[] vias = new int[2 * arcCount()];
+        Arrays.fill(weights, Float.POSITIVE_INFINITY);
+        Arrays.fill(vias, -1);
+
+        // Chaque sens d'un arc n'est écrit que par le nœud source des arêtes correspondantes, ce qui permet le parallélisme.
+        IntStream.range(0, nodeCount()).parallel().forEach(nodeId -> {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                int target = graph.edgeTargetNodeId(edgeId);
+                if (target == nodeId) continue;
+
+                boolean up = rank(nodeId) < rank(target);
+                int slot = 2 * arcBetween(up ? nodeId : target, up ? target : nodeId) + (up ? UP : DOWN);
+                float weight = (float) (graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId));
+                if (weight < weights[slot]) {
+                    weights[slot] = weight;
+                    vias[slot] = edgeId;
+                }
+            }
+        });
+
+        for (int[] level : levels()) {
+            Arrays.stream(level).parallel().forEach(nodeId -> customizeArcs(nodeId, weights, vias));
+        }
+
+        return toHierarchy(weights, vias);
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @return
+     *         retourne la hiérarchie stockée dans le fichier cch.bin du répertoire donné, projetée en mémoire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     */
+
+    public static CustomizableHierarchy loadFrom(Path basePath) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        IntBuffer header = buffer.asIntBuffer();
+        int nodeCount = header.get(0);
+        int arcCount = header.get(1);
+
+        int[] offset = {HEADER_INTS * Integer.BYTES};
+        IntBuffer ranks = intSection(buffer, offset, nodeCount);
+        IntBuffer upIndex = intSection(buffer, offset, nodeCount + 1);
+        IntBuffer upNeighbors = intSection(buffer, offset, arcCount);
+        IntBuffer downIndex = intSection(buffer, offset, nodeCount + 1);
+        IntBuffer downNeighbors = intSection(buffer, offset, arcCount);
+        IntBuffer downArcs = intSection(buffer, offset, arcCount);
+
+        Preconditions.checkArgument(offset[0] == buffer.capacity());
+
+        return new CustomizableHierarchy(ranks, upIndex, upNeighbors, downIndex, downNeighbors, downArcs);
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit la hiérarchie dans le fichier cch.bin du répertoire donné, à côté de nodes.bin et edges.bin.
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            long size = Integer.BYTES * (HEADER_INTS + 3L * nodeCount() + 2 + 3L * arcCount());
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            buffer.putInt(nodeCount()).putInt(arcCount());
+            for (IntBuffer values : new IntBuffer[] {ranks, upIndex, upNeighbors, downIndex, downNeighbors, downArcs}) {
+                for (int i = 0; i < values.capacity(); i++) buffer.putInt(values.get(i));
+            }
+        }
+    }
+
+    private int rank(int nodeId) {
+        return ranks.get(nodeId);
+    }
+
+    /**
+     * Cette méthode retourne l'arc reliant le nœud donné à son voisin de rang supérieur donné, par recherche dichotomique.
+     */
+
+    private int arcBetween(int lowerNodeId, int upperNodeId) {
+        int low = upIndex.get(lowerNodeId), high = upIndex.get(lowerNodeId + 1) - 1;
+        int upperRank = rank(upperNodeId);
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int r = rank(upNeighbors.get(middle));
+            if (r < upperRank) low = middle + 1;
+            else if (r > upperRank) high = middle - 1;
+            else return middle;
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Cette méthode retourne les nœuds regroupés par niveau croissant, le niveau d'un nœud étant supérieur
+     * à celui de tous ses voisins de rang inférieur.
+     */
+
+    private int[][] levels() {
+
+        int[] byRank = new int[nodeCount()];
+        for (int nodeId = 0; nodeId < nodeCount(); nodeId++) byRank[rank(nodeId)] = nodeId;
+
+        int[] levels = new int[nodeCount()];
+        int levelCount = 0;
+        for (int nodeId : byRank) {
+            int level = 0;
+            for (int i = downIndex.get(nodeId); i < downIndex.get(nodeId + 1); i++) level = Math.max(level, levels[downNeighbors.get(i)] + 1);
+            levels[nodeId] = level;
+            levelCount = Math.max(levelCount, level + 1);
+        }
+
+        int[] sizes = new int[levelCount];
+        for (int level : levels) sizes[level]++;
+        int[][] nodes = new int[levelCount][];
+        for (int level = 0; level < levelCount; level++) nodes[level] = new int[sizes[level]];
+        Arrays.fill(sizes, 0);
+        for (int nodeId = 0; nodeId < nodeCount(); nodeId++) nodes[levels[nodeId]][sizes[levels[nodeId]]++] = nodeId;
+        return nodes;
+    }
+
+    /**
+     * Cette méthode améliore les coûts des arcs possédés par le nœud donné, grâce aux triangles qu'ils forment avec
+     * les voisins de rang inférieur communs à leurs deux extrémités, dont les arcs ont déjà été traités.
+     */
+
+    private void customizeArcs(int nodeId, float[] weights, int[] vias) {
+
+        for (int arc = upIndex.get(nodeId); arc < upIndex.get(nodeId + 1); arc++) {
+
+            int upperNodeId = upNeighbors.get(arc);
+            int i = downIndex.get(nodeId), iEnd = downIndex.get(nodeId + 1);
+            int j = downIndex.get(upperNodeId), jEnd = downIndex.get(upperNodeId + 1);
+
+            while (i < iEnd && j < jEnd) {
+                int ri = rank(downNeighbors.get(i)), rj = rank(downNeighbors.get(j));
+                if (ri < rj) i++;
+                else if (ri > rj) j++;
+                else {
+                    int lowerArc = downArcs.get(i); //l'arc reliant le nœud intermédiaire au nœud donné
+                    int upperArc = downArcs.get(j); //l'arc reliant le nœud intermédiaire au voisin de rang supérieur
+                    int via = ~downNeighbors.get(i);
+
+                    float up = weights[2 * lowerArc + DOWN] + weights[2 * upperArc + UP];
+                    if (up < weights[2 * arc + UP]) {
+                        weights[2 * arc + UP] = up;
+                        vias[2 * arc + UP] = via;
+                    }
+                    float down = weights[2 * upperArc + DOWN] + weights[2 * lowerArc + UP];
+                    if (down < weights[2 * arc + DOWN]) {
+                        weights[2 * arc + DOWN] = down;
+                        vias[2 * arc + DOWN] = via;
+                    }
+                    i++;
+                    j++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cette méthode construit la hiérarchie de contraction correspondant aux coûts donnés. Les sens de coût infini sont omis,
+     * les sens passant par un nœud intermédiaire deviennent des raccourcis, et les autres gardent l'identité de leur arête.
+     */
+
+    private ContractionHierarchy toHierarchy(float[] weights, int[] vias) {
+
+        int[] arcIds = new int[weights.length];
+        int shortcutCount = 0;
+        for (int slot = 0; slot < weights.length; slot++) {
+            if (weights[slot] == Float.POSITIVE_INFINITY) continue;
+            arcIds[slot] = vias[slot] >= 0 ? vias[slot] : ~shortcutCount++;
+        }
+
+        int[] shortcuts = new int[2 * shortcutCount];
+        for (int nodeId = 0; nodeId < nodeCount(); nodeId++) {
+            for (int arc = upIndex.get(nodeId); arc < upIndex.get(nodeId + 1); arc++) {
+                int upperNodeId = upNeighbors.get(arc);
+                for (int dir = UP; dir <= DOWN; dir++) {
+                    int slot = 2 * arc + dir;
+                    if (weights[slot] == Float.POSITIVE_INFINITY || vias[slot] >= 0) continue;
+
+                    int via = ~vias[slot];
+                    int lowerArc = arcBetween(via, nodeId);
+                    int upperArc = arcBetween(via, upperNodeId);
+                    int s = ~arcIds[slot];
+                    shortcuts[2 * s] = dir == UP ? arcIds[2 * lowerArc + DOWN] : arcIds[2 * upperArc + DOWN];
+                    shortcuts[2 * s + 1] = dir == UP ? arcIds[2 * upperArc + UP] : arcIds[2 * lowerArc + UP];
+                }
+            }
+        }
+
+        return new ContractionHierarchy(ranks, adjacency(weights, arcIds, UP), adjacency(weights, arcIds, DOWN), IntBuffer.wrap(shortcuts));
+    }
+
+    /**
+     * Cette méthode retourne la liste d'adjacence des sens donnés (UP pour la recherche avant, DOWN pour la recherche arrière)
+     * des arcs de coût fini, indexée par l'extrémité de rang inférieur comme celles de ContractionHierarchy.
+     */
+
+    private ContractionHierarchy.Adjacency adjacency(float[] weights, int[] arcIds, int dir) {
+
+        int[] index = new int[nodeCount() + 1];
+        for (int nodeId = 0; nodeId < nodeCount(); nodeId++) {
+            index[nodeId + 1] = index[nodeId];
+            for (int arc = upIndex.get(nodeId); arc < upIndex.get(nodeId + 1); arc++) {
+                if (weights[2 * arc + dir] != Float.POSITIVE_INFINITY) index[nodeId + 1]++;
+            }
+        }
+
+        int count = index[nodeCount()];
+        int[] neighbors = new int[count];
+        int[] arcs = new int[count];
+        float[] arcWeights = new float[count];
+        int next = 0;
+        for (int arc = 0; arc < arcCount(); arc++) {
+            if (weights[2 * arc + dir] == Float.POSITIVE_INFINITY) continue;
+            neighbors[next] = upNeighbors.get(arc);
+            arcs[next] = arcIds[2 * arc + dir];
+            arcWeights[next++] = weights[2 * arc + dir];
+        }
+
+        return new ContractionHierarchy.Adjacency(IntBuffer.wrap(index), IntBuffer.wrap(neighbors), IntBuffer.wrap(arcs), FloatBuffer.wrap(arcWeights));
+    }
+
+    private static IntBuffer intSection(ByteBuffer buffer, int[] offset, int count) {
+        IntBuffer section = buffer.slice(offset[0], count * Integer.BYTES).asIntBuffer();
+        offset[0] += count * Integer.BYTES;
+        return section;
+    }
+}
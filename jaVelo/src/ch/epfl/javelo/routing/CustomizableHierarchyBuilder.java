@@ -0,0 +1,239 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente le pré-calcul (hors ligne) d'une hiérarchie de contraction personnalisable (CustomizableHierarchy),
+ * qui ne dépend que de la topologie du graphe. L'ordre de contraction est obtenu par dissection emboîtée géométrique :
+ * les nœuds sont coupés en deux moitiés selon la médiane de leur coordonnée la plus étendue, les nœuds de la première moitié
+ * voisins de la seconde forment un séparateur, contracté après les deux moitiés, elles-mêmes ordonnées récursivement.
+ * Les nœuds sont ensuite contractés dans cet ordre, les voisins de rang supérieur de chaque nœud étant reliés deux à deux.
+ */
+
+public final class CustomizableHierarchyBuilder {
+
+    private static final int LEAF_SIZE = 32;
+
+    private final Graph graph;
+    private final int nodeCount;
+
+    private final int[] order;
+    private int orderSize;
+    private final int[] marks; //marques temporaires, identifiées par un compteur pour ne jamais devoir les effacer
+    private int mark;
+
+    private CustomizableHierarchyBuilder(Graph graph) {
+        this.graph = graph;
+        this.nodeCount = graph.nodeCount();
+        this.order = new int[nodeCount];
+        this.marks = new int[nodeCount];
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe à contracter.
+     * @return
+     *         retourne la hiérarchie de contraction personnalisable du graphe.
+     */
+
+    public static CustomizableHierarchy build(Graph graph) {
+        CustomizableHierarchyBuilder builder = new CustomizableHierarchyBuilder(graph);
+        int[] nodes = new int[graph.nodeCount()];
+        for (int nodeId = 0; nodeId < nodes.length; nodeId++) nodes[nodeId] = nodeId;
+        builder.dissect(nodes, 0, nodes.length);
+        return builder.contractAll();
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée calcule la hiérarchie personnalisable, l'écrit à côté des fichiers du graphe,
+     * puis mesure le temps de personnalisation pour la fonction de coût CityBikeCF.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        Graph graph = Graph.loadFrom(basePath);
+
+        long start = System.nanoTime();
+        CustomizableHierarchy hierarchy = build(graph);
+        hierarchy.writeTo(basePath);
+        System.out.printf("%d nœuds contractés, %d arcs en %.1f s%n", hierarchy.nodeCount(), hierarchy.arcCount(), (System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        ContractionHierarchy customized = hierarchy.customize(graph, new CityBikeCF(graph));
+        System.out.printf("personnalisation en %.1f s, %d raccourcis%n", (System.nanoTime() - start) / 1e9, customized.shortcutCount());
+    }
+
+    /**
+     * Cette méthode ajoute à l'ordre de contraction les nœuds nodes[from..to[, par dissection emboîtée.
+     */
+
+    private void dissect(int[] nodes, int from, int to) {
+
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) order[orderSize++] = nodes[i];
+            return;
+        }
+
+        double minE = Double.POSITIVE_INFINITY, maxE = Double.NEGATIVE_INFINITY;
+        double minN = Double.POSITIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            PointCh point = graph.nodePoint(nodes[i]);
+            minE = Math.min(minE, point.e());
+            maxE = Math.max(maxE, point.e());
+            minN = Math.min(minN, point.n());
+            maxN = Math.max(maxN, point.n());
+        }
+        boolean byE = maxE - minE >= maxN - minN;
+
+        // Les nœuds sont triés selon la coordonnée choisie, placée dans les 32 bits de poids fort d'un long.
+        long[] keys = new long[to - from];
+        for (int i = from; i < to; i++) {
+            PointCh point = graph.nodePoint(nodes[i]);
+            keys[i - from] = (long) (byE ? point.e() : point.n()) << Integer.SIZE | nodes[i];
+        }
+        Arrays.sort(keys);
+        int middle = from + keys.length / 2;
+
+        mark++;
+        for (int i = 0; i < keys.length; i++) {
+            nodes[from + i] = (int) keys[i];
+            if (from + i >= middle) marks[nodes[from + i]] = mark; //les nœuds de la seconde moitié
+        }
+
+        // Les nœuds de la première moitié voisins de la seconde sont déplacés à la fin de celle-ci.
+        int end = middle;
+        for (int i = from; i < end; ) {
+            if (hasMarkedNeighbor(nodes[i])) {
+                int nodeId = nodes[i];
+                nodes[i] = nodes[--end];
+                nodes[end] = nodeId;
+            } else i++;
+        }
+
+        dissect(nodes, from, end);
+        dissect(nodes, middle, to);
+        for (int i = end; i < middle; i++) order[orderSize++] = nodes[i]; //le séparateur, rangé entre les deux moitiés
+    }
+
+    private boolean hasMarkedNeighbor(int nodeId) {
+        for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+            if (marks[graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, i))] == mark) return true;
+        }
+        for (int i = 0; i < graph.nodeInDegree(nodeId); i++) {
+            if (marks[graph.edgeSourceNodeId(graph.nodeInEdgeId(nodeId, i))] == mark) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cette méthode contracte les nœuds dans l'ordre calculé : les voisins de rang supérieur de chaque nœud deviennent
+     * ses arcs, et sont reliés deux à deux. Les voisins en attente de chaque nœud sont stockés dans des tableaux extensibles,
+     * dont les doublons sont supprimés lorsqu'ils sont pleins.
+     */
+
+    private CustomizableHierarchy contractAll() {
+
+        int[] ranks = new int[nodeCount];
+        for (int rank = 0; rank < nodeCount; rank++) ranks[order[rank]] = rank;
+
+        int[][] pending = new int[nodeCount][];
+        int[] pendingSizes = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) pending[nodeId] = new int[4];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int target = graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, i));
+                int lower = ranks[nodeId] < ranks[target] ? nodeId : target;
+                if (target != nodeId) addPending(pending, pendingSizes, lower, lower == nodeId ? target : nodeId);
+            }
+        }
+
+        int[] upIndex = new int[nodeCount + 1];
+        int[] upNeighbors = new int[16];
+        int arcCount = 0;
+
+        for (int rank = 0; rank < nodeCount; rank++) {
+            int nodeId = order[rank];
+
+            // Les voisins de rang supérieur, sans doublons et triés par rang.
+            int size = unique(pending[nodeId], pendingSizes[nodeId]);
+            int[] neighbors = pending[nodeId];
+            long[] byRank = new long[size];
+            for (int i = 0; i < size; i++) byRank[i] = (long) ranks[neighbors[i]] << Integer.SIZE | neighbors[i];
+            Arrays.sort(byRank);
+
+            while (arcCount + size > upNeighbors.length) upNeighbors = Arrays.copyOf(upNeighbors, 2 * upNeighbors.length);
+            for (int i = 0; i < size; i++) {
+                int neighbor = (int) byRank[i];
+                upNeighbors[arcCount + i] = neighbor;
+                for (int j = i + 1; j < size; j++) addPending(pending, pendingSizes, neighbor, (int) byRank[j]);
+            }
+            arcCount += size;
+            upIndex[nodeId + 1] = size;
+            pending[nodeId] = null;
+        }
+
+        // upIndex est indexé par nœud, alors que les arcs ont été ajoutés par rang : ils sont donc replacés par nœud.
+        int[] byNode = new int[arcCount];
+        int[] rankStart = new int[nodeCount + 1];
+        for (int rank = 0; rank < nodeCount; rank++) rankStart[rank + 1] = rankStart[rank] + upIndex[order[rank] + 1];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) upIndex[nodeId + 1] += upIndex[nodeId];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            int count = upIndex[nodeId + 1] - upIndex[nodeId];
+            System.arraycopy(upNeighbors, rankStart[ranks[nodeId]], byNode, upIndex[nodeId], count);
+        }
+
+        // Les voisins de rang inférieur, triés par rang puisque les arcs sont parcourus dans l'ordre des rangs de leur possesseur.
+        int[] downIndex = new int[nodeCount + 1];
+        for (int arc = 0; arc < arcCount; arc++) downIndex[byNode[arc] + 1]++;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) downIndex[nodeId + 1] += downIndex[nodeId];
+        int[] downNeighbors = new int[arcCount];
+        int[] downArcs = new int[arcCount];
+        int[] next = Arrays.copyOf(downIndex, nodeCount);
+        for (int nodeId : order) {
+            for (int arc = upIndex[nodeId]; arc < upIndex[nodeId + 1]; arc++) {
+                int slot = next[byNode[arc]]++;
+                downNeighbors[slot] = nodeId;
+                downArcs[slot] = arc;
+            }
+        }
+
+        return new CustomizableHierarchy(IntBuffer.wrap(ranks), IntBuffer.wrap(upIndex), IntBuffer.wrap(byNode),
+                IntBuffer.wrap(downIndex), IntBuffer.wrap(downNeighbors), IntBuffer.wrap(downArcs));
+    }
+
+    private void addPending(int[][] pending, int[] pendingSizes, int nodeId, int neighbor) {
+        if (pendingSizes[nodeId] == pending[nodeId].length) {
+            pendingSizes[nodeId] = unique(pending[nodeId], pendingSizes[nodeId]);
+            if (2 * pendingSizes[nodeId] > pending[nodeId].length) pending[nodeId] = Arrays.copyOf(pending[nodeId], 2 * pending[nodeId].length);
+        }
+        pending[nodeId][pendingSizes[nodeId]++] = neighbor;
+    }
+
+    /**
+     * Cette méthode supprime les doublons des size premiers éléments du tableau donné, et retourne leur nouveau nombre.
+     */
+
+    private static int unique(int[] values, int size) {
+        Arrays.sort(values, 0, size);
+        int count = 0;
+        for (int i = 0; i < size; i++) if (count == 0 || values[i] != values[count - 1]) values[count++] = values[i];
+        return count;
+    }
+}
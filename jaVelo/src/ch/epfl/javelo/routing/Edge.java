@@ -1,5 +1,6 @@
 package ch.epfl.javelo.routing;
 
+import java.util.List;
 import java.util.function.DoubleUnaryOperator;
 
 import ch.epfl.javelo.Math2;
@@ -46,6 +47,25 @@ public record Edge(int fromNodeId, int toNodeId, PointCh fromPoint, PointCh toPo
         return new Edge(fromNodeId, toNodeId, graph.nodePoint(fromNodeId), graph.nodePoint(toNodeId), graph.edgeLength(edgeId), graph.edgeProfile(edgeId));
     }
     
+    /**
+     * 
+     * @param graph
+     *            représente le graph utilisé.
+     * @param edgeIds
+     *            représente les identités des arêtes successives d'un chemin du graphe.
+     * @return
+     *         retourne la liste des instances de Edge correspondant aux arêtes données, dans le même ordre,
+     *         les nœuds de départ et d'arrivée de chacune étant ceux de l'arête dans le graphe.
+     */
+    
+    public static List<Edge> listOf(Graph graph, int[] edgeIds) {
+        Edge[] edges = new Edge[edgeIds.length];
+        for (int i = 0; i < edgeIds.length; i++) {
+            edges[i] = of(graph, edgeIds[i], graph.edgeSourceNodeId(edgeIds[i]), graph.edgeTargetNodeId(edgeIds[i]));
+        }
+        return List.of(edges);
+    }
+    
     /**
      * 
      * @param point
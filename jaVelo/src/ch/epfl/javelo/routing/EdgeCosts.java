@@ -0,0 +1,135 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente une fonction de coût compilée : le coût (longueur multipliée par le facteur de coût)
+ * de chaque arête du graphe, calculé une fois pour toutes à partir d'une autre fonction de coût.
+ * RouteComputer lit alors directement le coût d'une arête dans la table, au lieu d'évaluer la fonction de coût d'origine.
+ *
+ * Il possède les attributs suivants :
+ * @param graph qui représente le graphe dont les arêtes sont décrites.
+ * @param costs qui contient le coût de chaque arête, indexé par son identité (Float.POSITIVE_INFINITY si elle ne peut pas être empruntée).
+ */
+
+public record EdgeCosts(Graph graph, FloatBuffer costs) implements CostFunction {
+
+    private static final String FILE_NAME = "edge_costs.bin";
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe utilisé.
+     * @param costFunction
+     *         représente la fonction de coût à compiler.
+     * @return
+     *         retourne la table des coûts des arêtes du graphe selon la fonction de coût donnée, calculée en parallèle.
+     */
+
+    public static EdgeCosts of(Graph graph, CostFunction costFunction) {
+        float[] costs = new float[graph.edgeCount()];
+        IntStream.range(0, costs.length).parallel().forEach(edgeId -> {
+            double factor = costFunction.costFactor(graph.edgeSourceNodeId(edgeId), edgeId);
+            // le facteur est testé avant le produit, qui vaudrait NaN pour une arête de longueur nulle et de facteur infini
+            costs[edgeId] = factor == Double.POSITIVE_INFINITY ? Float.POSITIVE_INFINITY : (float) (graph.edgeLength(edgeId) * factor);
+        });
+        return new EdgeCosts(graph, FloatBuffer.wrap(costs));
+    }
+
+    /**
+     *
+     * @param edgeId
+     *         représente l'identité de l'arête.
+     * @return
+     *         retourne le coût de l'arête d'identité donnée.
+     */
+
+    public float cost(int edgeId) {
+        return costs.get(edgeId);
+    }
+
+    /**
+     * Le facteur est retrouvé en divisant le coût par la longueur de l'arête. Une arête de longueur nulle a un coût nul
+     * si elle peut être empruntée (facteur 1), et un coût infini sinon (facteur infini).
+     */
+
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        double length = graph.edgeLength(edgeId);
+        if (length == 0) return cost(edgeId) == Float.POSITIVE_INFINITY ? Double.POSITIVE_INFINITY : 1;
+        return cost(edgeId) / length;
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe dont les arêtes sont décrites.
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @return
+     *         retourne la table stockée dans le fichier edge_costs.bin du répertoire donné, projeté en mémoire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la table ne contient pas exactement un coût par arête du graphe.
+     */
+
+    public static EdgeCosts loadFrom(Graph graph, Path basePath) throws IOException {
+
+        FloatBuffer costs;
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            costs = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asFloatBuffer();
+        }
+        Preconditions.checkArgument(costs.capacity() == graph.edgeCount());
+
+        return new EdgeCosts(graph, costs);
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit la table dans le fichier edge_costs.bin du répertoire donné.
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, costs.capacity() * (long) Float.BYTES);
+            for (int i = 0; i < costs.capacity(); i++) buffer.putFloat(costs.get(i));
+        }
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée compile la fonction de coût CityBikeCF et écrit la table à côté des fichiers du graphe.
+     */
+
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        Graph graph = Graph.loadFrom(basePath);
+        of(graph, new CityBikeCF(graph)).writeTo(basePath);
+    }
+}
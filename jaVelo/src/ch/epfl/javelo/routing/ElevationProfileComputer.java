@@ -31,12 +31,34 @@ public final class ElevationProfileComputer {
      *
      * @throws IllegalArgumentException
      *       Lève IllegalArgumentException si cet espacement n'est pas strictement positif.
+     *
+     * Chaque calcul émet un événement Java Flight Recorder (ElevationProfileEvent).
      */
     
     public static ElevationProfile elevationProfile(Route route, double maxStepLength) {
         
         Preconditions.checkArgument(maxStepLength>0);
-        
+
+        ElevationProfileEvent event = new ElevationProfileEvent();
+        event.begin();
+        float[] echProfile = samples(route, maxStepLength);
+        event.end();
+        if (event.shouldCommit()) {
+            event.routeLength = route.length();
+            event.maxStepLength = maxStepLength;
+            event.sampleCount = echProfile.length;
+            event.commit();
+        }
+        return new ElevationProfile(route.length(), echProfile);
+    }
+
+    /**
+     * Cette méthode retourne les échantillons du profil en long de l'itinéraire donné, dont les valeurs manquantes (NaN)
+     * ont été remplacées.
+     */
+
+    private static float[] samples(Route route, double maxStepLength) {
+
         int echNumber = (int) Math.ceil(route.length() / maxStepLength) +1;
         double echSpace = route.length()/(echNumber-1);
         float[] echProfile = new float [echNumber];
@@ -50,7 +72,7 @@ public final class ElevationProfileComputer {
 
         if (j==echProfile.length-1) {
             Arrays.fill(echProfile, Float.isNaN(echProfile[j]) ? 0 : echProfile[j]);
-            return new ElevationProfile(route.length(), echProfile);
+            return echProfile;
         }
         else {
             if(j>0) Arrays.fill(echProfile, 0, j, echProfile[j]);
@@ -87,6 +109,6 @@ public final class ElevationProfileComputer {
                 start=end;
             } while(end<k);
         }
-        return new ElevationProfile(route.length(),echProfile);
+        return echProfile;
     }
 }
\ No newline at end of file
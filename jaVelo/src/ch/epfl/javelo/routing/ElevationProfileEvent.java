@@ -0,0 +1,30 @@
+package ch.epfl.javelo.routing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente l'événement Java Flight Recorder émis par chaque calcul de ElevationProfileComputer.elevationProfile.
+ */
+
+@Name("ch.epfl.javelo.ElevationProfile")
+@Label("Calcul de profil en long")
+@Category({"JaVelo", "Routage"})
+@Description("Échantillonnage du profil en long d'un itinéraire")
+final class ElevationProfileEvent extends jdk.jfr.Event {
+
+    @Label("Longueur de l'itinéraire (m)")
+    double routeLength;
+
+    @Label("Espacement maximal des échantillons (m)")
+    double maxStepLength;
+
+    @Label("Nombre d'échantillons")
+    int sampleCount;
+}
@@ -116,12 +116,44 @@ public final class GpxGenerator {
      *           lève IOException en cas d'erreur d'entrée/sortie.
      *
      * Cette classe écrit le document GPX correspondant dans le fichier.
+     * Chaque écriture émet un événement Java Flight Recorder (GpxWriteEvent).
      */
 
     public static void writeGpx (String fileName, Route route, ElevationProfile profile) throws IOException {
 
+        GpxWriteEvent event = new GpxWriteEvent();
+        event.begin();
+
+        try (Writer w = Files.newBufferedWriter(Path.of(fileName))) {
+            writeGpx(w, route, profile);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.fileName = fileName;
+            event.pointCount = route.points().size();
+            event.routeLength = route.length();
+            event.commit();
+        }
+    }
+
+    /**
+     *
+     * @param w
+     *           représente le flot dans lequel le document est écrit, qui n'est pas fermé.
+     * @param route
+     *           représente l'itinéraire utilisé.
+     * @param profile
+     *           représente le profil de l'itinéraire utilisé.
+     * @throws IOException
+     *           lève IOException en cas d'erreur d'entrée/sortie.
+     *
+     * Cette méthode écrit le document GPX correspondant dans le flot donné, par exemple la réponse d'une requête HTTP.
+     */
+
+    public static void writeGpx (Writer w, Route route, ElevationProfile profile) throws IOException {
+
         Document doc = createGpx(route, profile);
-        Writer w = Files.newBufferedWriter(Path.of(fileName));
 
         try {
             Transformer transformer = TransformerFactory
@@ -131,7 +163,9 @@ public final class GpxGenerator {
             transformer.transform(new DOMSource(doc),
                     new StreamResult(w));
         } catch (TransformerException e) { // Cette exception est de type checked, il faut donc l'emballer dans une autre exception de type unchecked.
+            if (e.getCause() instanceof IOException io) throw io; // Une erreur d'écriture dans le flot est une erreur d'entrée/sortie.
             throw new Error(e); // Ne dois jamais se réaliser.
         }
+        w.flush();
     }
 }
\ No newline at end of file
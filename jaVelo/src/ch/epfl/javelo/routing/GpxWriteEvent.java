@@ -0,0 +1,30 @@
+package ch.epfl.javelo.routing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente l'événement Java Flight Recorder émis par chaque écriture de GpxGenerator.writeGpx.
+ */
+
+@Name("ch.epfl.javelo.GpxWrite")
+@Label("Écriture GPX")
+@Category({"JaVelo", "Entrées-sorties"})
+@Description("Écriture d'un itinéraire et de son profil dans un fichier GPX")
+final class GpxWriteEvent extends jdk.jfr.Event {
+
+    @Label("Nom du fichier")
+    String fileName;
+
+    @Label("Nombre de points")
+    int pointCount;
+
+    @Label("Longueur de l'itinéraire (m)")
+    double routeLength;
+}
@@ -0,0 +1,326 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente un index d'étiquettes de hubs (hub labeling) du graphe JaVelo,
+ * calculé pour une fonction de coût donnée par HubLabelsBuilder.
+ * Chaque nœud possède une étiquette sortante, contenant des hubs qu'il atteint, et une étiquette entrante, contenant des hubs
+ * qui l'atteignent, de telle manière que tout itinéraire de coût minimal de u à v passe par un hub commun à l'étiquette
+ * sortante de u et à l'étiquette entrante de v. Le coût minimal s'obtient donc par une simple fusion de deux listes triées,
+ * sans aucune recherche dans le graphe.
+ *
+ * Il possède les attributs suivants :
+ * @param outLabels qui contient les étiquettes sortantes des nœuds.
+ * @param inLabels qui contient les étiquettes entrantes des nœuds.
+ */
+
+public record HubLabels(Labels outLabels, Labels inLabels) {
+
+    private static final String FILE_NAME = "hub_labels.bin";
+    private static final int HEADER_INTS = 3;
+
+    /**
+     * L'enregistrement imbriqué Labels représente les étiquettes des nœuds, stockées de manière compacte (CSR).
+     * Les entrées du nœud d'identité nodeId ont les index allant de index.get(nodeId) (inclus) à index.get(nodeId+1) (exclus),
+     * triées par hub croissant. Chacune possède un hub (son rang dans l'ordre de calcul), le coût et la longueur de l'itinéraire
+     * de coût minimal entre le nœud et le hub, ainsi que la première arête de cet itinéraire partant du nœud (étiquette sortante)
+     * ou sa dernière arête arrivant au nœud (étiquette entrante), -1 si le nœud est le hub lui-même.
+     */
+
+    public record Labels(IntBuffer index, IntBuffer hubs, IntBuffer edges, FloatBuffer costs, FloatBuffer lengths) {
+
+        /**
+         *
+         * @param nodeId
+         *         représente l'identité du nœud.
+         * @return
+         *         retourne l'index de la première entrée de l'étiquette du nœud d'identité donnée.
+         */
+
+        public int firstEntry(int nodeId) {
+            return index.get(nodeId);
+        }
+
+        /**
+         *
+         * @param nodeId
+         *         représente l'identité du nœud.
+         * @return
+         *         retourne l'index situé juste après la dernière entrée de l'étiquette du nœud d'identité donnée.
+         */
+
+        public int endEntry(int nodeId) {
+            return index.get(nodeId + 1);
+        }
+
+        /**
+         *
+         * @return
+         *         retourne le nombre total d'entrées de ces étiquettes.
+         */
+
+        public int count() {
+            return hubs.capacity();
+        }
+
+        /**
+         * Cette méthode retourne l'index de l'entrée du hub donné dans l'étiquette du nœud donné, par recherche dichotomique,
+         * ou -1 si le hub n'en fait pas partie.
+         */
+
+        private int find(int nodeId, int hub) {
+            int low = firstEntry(nodeId), high = endEntry(nodeId) - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int h = hubs.get(middle);
+                if (h < hub) low = middle + 1;
+                else if (h > hub) high = middle - 1;
+                else return middle;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre de nœuds couverts par l'index.
+     */
+
+    public int nodeCount() {
+        return outLabels.index().capacity() - 1;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre moyen d'entrées par étiquette.
+     */
+
+    public double averageLabelSize() {
+        return (outLabels.count() + inLabels.count()) / (2.0 * nodeCount());
+    }
+
+    /**
+     *
+     * @return
+     *         retourne la taille, en octets, de l'index (égale à celle du fichier hub_labels.bin).
+     */
+
+    public long byteSize() {
+        return Integer.BYTES * (HEADER_INTS + 2L * (nodeCount() + 1) + 4L * (outLabels.count() + inLabels.count()));
+    }
+
+    /**
+     *
+     * @param fromNodeId
+     *         représente l'identité du nœud de départ.
+     * @param toNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @return
+     *         retourne le coût minimal d'un itinéraire allant du nœud de départ au nœud d'arrivée,
+     *         ou Float.POSITIVE_INFINITY si aucun itinéraire n'existe.
+     */
+
+    public float cost(int fromNodeId, int toNodeId) {
+        long entries = bestEntries(fromNodeId, toNodeId);
+        if (entries == -1) return Float.POSITIVE_INFINITY;
+        return outLabels.costs().get(outEntry(entries)) + inLabels.costs().get(inEntry(entries));
+    }
+
+    /**
+     *
+     * @param fromNodeId
+     *         représente l'identité du nœud de départ.
+     * @param toNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @return
+     *         retourne la longueur, en mètres, de l'itinéraire de coût minimal allant du nœud de départ au nœud d'arrivée,
+     *         ou Float.POSITIVE_INFINITY si aucun itinéraire n'existe.
+     */
+
+    public float length(int fromNodeId, int toNodeId) {
+        long entries = bestEntries(fromNodeId, toNodeId);
+        if (entries == -1) return Float.POSITIVE_INFINITY;
+        return outLabels.lengths().get(outEntry(entries)) + inLabels.lengths().get(inEntry(entries));
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe pour lequel l'index a été calculé.
+     * @param fromNodeId
+     *         représente l'identité du nœud de départ.
+     * @param toNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @return
+     *         retourne l'itinéraire de coût minimal allant du nœud de départ au nœud d'arrivée, ou null si aucun itinéraire n'existe.
+     *         Les arêtes sont retrouvées en suivant, de nœud en nœud, les entrées du hub commun.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si les nœuds de départ et d'arrivée sont identiques.
+     */
+
+    public Route route(Graph graph, int fromNodeId, int toNodeId) {
+
+        Preconditions.checkArgument(fromNodeId != toNodeId);
+
+        long entries = bestEntries(fromNodeId, toNodeId);
+        if (entries == -1) return null;
+        int hub = outLabels.hubs().get(outEntry(entries));
+
+        int[] path = new int[16];
+        int size = 0;
+
+        // De l'arrivée jusqu'au hub, en remontant les dernières arêtes des étiquettes entrantes.
+        for (int entry = inEntry(entries); inLabels.edges().get(entry) != -1; ) {
+            int edgeId = inLabels.edges().get(entry);
+            if (size == path.length) path = Arrays.copyOf(path, 2 * size);
+            path[size++] = edgeId;
+            entry = inLabels.find(graph.edgeSourceNodeId(edgeId), hub);
+        }
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int edgeId = path[i];
+            path[i] = path[j];
+            path[j] = edgeId;
+        }
+        int inSize = size;
+
+        // Du départ jusqu'au hub, en suivant les premières arêtes des étiquettes sortantes.
+        for (int entry = outEntry(entries); outLabels.edges().get(entry) != -1; ) {
+            int edgeId = outLabels.edges().get(entry);
+            if (size == path.length) path = Arrays.copyOf(path, 2 * size);
+            path[size++] = edgeId;
+            entry = outLabels.find(graph.edgeTargetNodeId(edgeId), hub);
+        }
+
+        int[] edgeIds = new int[size];
+        System.arraycopy(path, inSize, edgeIds, 0, size - inSize);
+        System.arraycopy(path, 0, edgeIds, size - inSize, inSize);
+        return new SingleRoute(Edge.listOf(graph, edgeIds));
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @return
+     *         retourne l'index stocké dans le fichier hub_labels.bin du répertoire donné, projeté en mémoire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     */
+
+    public static HubLabels loadFrom(Path basePath) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        IntBuffer header = buffer.asIntBuffer();
+        int nodeCount = header.get(0);
+        int outCount = header.get(1);
+        int inCount = header.get(2);
+
+        int[] offset = {HEADER_INTS * Integer.BYTES};
+        Labels outLabels = labelsSection(buffer, offset, nodeCount, outCount);
+        Labels inLabels = labelsSection(buffer, offset, nodeCount, inCount);
+
+        Preconditions.checkArgument(offset[0] == buffer.capacity());
+
+        return new HubLabels(outLabels, inLabels);
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit l'index dans le fichier hub_labels.bin du répertoire donné.
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, byteSize());
+
+            buffer.putInt(nodeCount()).putInt(outLabels.count()).putInt(inLabels.count());
+            for (Labels labels : new Labels[] {outLabels, inLabels}) {
+                for (int i = 0; i < labels.index().capacity(); i++) buffer.putInt(labels.index().get(i));
+                for (int i = 0; i < labels.count(); i++) buffer.putInt(labels.hubs().get(i));
+                for (int i = 0; i < labels.count(); i++) buffer.putInt(labels.edges().get(i));
+                for (int i = 0; i < labels.count(); i++) buffer.putFloat(labels.costs().get(i));
+                for (int i = 0; i < labels.count(); i++) buffer.putFloat(labels.lengths().get(i));
+            }
+        }
+    }
+
+    /**
+     * Cette méthode fusionne l'étiquette sortante du départ et l'étiquette entrante de l'arrivée, et retourne les index
+     * des deux entrées du hub commun de coût total minimal, regroupés dans un long, ou -1 s'il n'y a aucun hub commun.
+     */
+
+    private long bestEntries(int fromNodeId, int toNodeId) {
+
+        int i = outLabels.firstEntry(fromNodeId), iEnd = outLabels.endEntry(fromNodeId);
+        int j = inLabels.firstEntry(toNodeId), jEnd = inLabels.endEntry(toNodeId);
+        float best = Float.POSITIVE_INFINITY;
+        long bestEntries = -1;
+
+        while (i < iEnd && j < jEnd) {
+            int outHub = outLabels.hubs().get(i);
+            int inHub = inLabels.hubs().get(j);
+            if (outHub < inHub) i++;
+            else if (outHub > inHub) j++;
+            else {
+                float cost = outLabels.costs().get(i) + inLabels.costs().get(j);
+                if (cost < best) {
+                    best = cost;
+                    bestEntries = (long) i << Integer.SIZE | j;
+                }
+                i++;
+                j++;
+            }
+        }
+        return bestEntries;
+    }
+
+    private static int outEntry(long entries) {
+        return (int) (entries >>> Integer.SIZE);
+    }
+
+    private static int inEntry(long entries) {
+        return (int) entries;
+    }
+
+    private static Labels labelsSection(ByteBuffer buffer, int[] offset, int nodeCount, int count) {
+        IntBuffer index = buffer.slice(offset[0], (nodeCount + 1) * Integer.BYTES).asIntBuffer();
+        offset[0] += (nodeCount + 1) * Integer.BYTES;
+        IntBuffer hubs = buffer.slice(offset[0], count * Integer.BYTES).asIntBuffer();
+        offset[0] += count * Integer.BYTES;
+        IntBuffer edges = buffer.slice(offset[0], count * Integer.BYTES).asIntBuffer();
+        offset[0] += count * Integer.BYTES;
+        FloatBuffer costs = buffer.slice(offset[0], count * Float.BYTES).asFloatBuffer();
+        offset[0] += count * Float.BYTES;
+        FloatBuffer lengths = buffer.slice(offset[0], count * Float.BYTES).asFloatBuffer();
+        offset[0] += count * Float.BYTES;
+        return new Labels(index, hubs, edges, costs, lengths);
+    }
+}
@@ -0,0 +1,244 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente le pré-calcul (hors ligne) d'un index d'étiquettes de hubs (HubLabels), par étiquetage élagué
+ * (pruned landmark labeling). Les nœuds sont traités un à un, du plus important au moins important selon les rangs d'une
+ * hiérarchie de contraction. Pour chacun, une recherche de Dijkstra en avant et une en arrière l'ajoutent comme hub aux
+ * étiquettes des nœuds atteints, mais s'arrêtent aux nœuds dont la distance est déjà donnée par les étiquettes existantes.
+ */
+
+public final class HubLabelsBuilder {
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final int nodeCount;
+
+    private final LabelLists outLabels;
+    private final LabelLists inLabels;
+
+    // Espace de travail des recherches, réinitialisé grâce à la liste des nœuds touchés.
+    private final float[] distance;
+    private final float[] length;
+    private final int[] predEdge;
+    private final int[] touched;
+    private int touchedCount;
+    private final NodeHeap queue;
+    private final float[] hubCosts;
+
+    private HubLabelsBuilder(Graph graph, CostFunction costFunction) {
+
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.nodeCount = graph.nodeCount();
+
+        outLabels = new LabelLists(nodeCount);
+        inLabels = new LabelLists(nodeCount);
+
+        distance = new float[nodeCount];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        length = new float[nodeCount];
+        predEdge = new int[nodeCount];
+        touched = new int[nodeCount];
+        queue = new NodeHeap(nodeCount);
+        hubCosts = new float[nodeCount];
+        Arrays.fill(hubCosts, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe utilisé.
+     * @param costFunction
+     *         représente la fonction de coût pour laquelle l'index est calculé.
+     * @param hierarchy
+     *         représente une hiérarchie de contraction du graphe, dont les rangs déterminent l'ordre des hubs.
+     * @return
+     *         retourne l'index d'étiquettes de hubs du graphe pour la fonction de coût donnée.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la hiérarchie ne possède pas le même nombre de nœuds que le graphe.
+     */
+
+    public static HubLabels build(Graph graph, CostFunction costFunction, ContractionHierarchy hierarchy) {
+
+        Preconditions.checkArgument(hierarchy.nodeCount() == graph.nodeCount());
+
+        int[] order = new int[graph.nodeCount()];
+        for (int nodeId = 0; nodeId < order.length; nodeId++) order[order.length - 1 - hierarchy.ranks().get(nodeId)] = nodeId;
+
+        return new HubLabelsBuilder(graph, costFunction).labelAll(order);
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée calcule l'index pour la fonction de coût CityBikeCF et l'écrit à côté des fichiers du graphe.
+     * La hiérarchie de contraction est lue depuis ch.bin si elle y a été écrite, sinon elle est calculée.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        Graph graph = Graph.loadFrom(basePath);
+        CostFunction costFunction = new CityBikeCF(graph);
+
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = Files.exists(basePath.resolve("ch.bin"))
+                ? ContractionHierarchy.loadFrom(basePath)
+                : ContractionHierarchyBuilder.build(graph, costFunction);
+        HubLabels hubLabels = build(graph, costFunction, hierarchy);
+        hubLabels.writeTo(basePath);
+
+        System.out.printf("étiquettes de %d nœuds calculées en %.1f s : %.1f entrées par étiquette, %.1f Mo%n",
+                hubLabels.nodeCount(), (System.nanoTime() - start) / 1e9, hubLabels.averageLabelSize(), hubLabels.byteSize() / 1e6);
+    }
+
+    private HubLabels labelAll(int[] order) {
+        for (int hub = 0; hub < order.length; hub++) {
+            prunedSearch(order[hub], hub, true);
+            prunedSearch(order[hub], hub, false);
+        }
+        return new HubLabels(outLabels.toLabels(), inLabels.toLabels());
+    }
+
+    /**
+     * Cette méthode effectue une recherche de Dijkstra élaguée depuis le nœud donné, en avant (le hub est ajouté aux étiquettes
+     * entrantes des nœuds atteints) ou en arrière (il est ajouté à leurs étiquettes sortantes). Un nœud dont la distance
+     * au hub est déjà couverte par les étiquettes existantes n'est ni étiqueté ni exploré.
+     */
+
+    private void prunedSearch(int hubNodeId, int hub, boolean forward) {
+
+        LabelLists hubLabels = forward ? outLabels : inLabels;
+        LabelLists reachedLabels = forward ? inLabels : outLabels;
+
+        // Les coûts de l'étiquette du hub sont dispersés dans un tableau indexé par hub, pour tester chaque nœud en un seul parcours.
+        for (int i = 0; i < hubLabels.sizes[hubNodeId]; i++) hubCosts[hubLabels.hubs[hubNodeId][i]] = hubLabels.costs[hubNodeId][i];
+
+        touch(hubNodeId, 0, 0, -1);
+        queue.push(hubNodeId, 0);
+
+        while (!queue.isEmpty()) {
+
+            int nodeId = queue.remove();
+            float d = distance[nodeId];
+            if (reachedLabels.coveredCost(nodeId, hubCosts) <= d) continue;
+            reachedLabels.add(nodeId, hub, predEdge[nodeId], d, length[nodeId]);
+
+            int degree = forward ? graph.nodeOutDegree(nodeId) : graph.nodeInDegree(nodeId);
+            for (int i = 0; i < degree; i++) {
+
+                int edgeId = forward ? graph.nodeOutEdgeId(nodeId, i) : graph.nodeInEdgeId(nodeId, i);
+                int source = forward ? nodeId : graph.edgeSourceNodeId(edgeId);
+                int next = forward ? graph.edgeTargetNodeId(edgeId) : source;
+                float nextDistance = d + (float) (graph.edgeLength(edgeId) * costFunction.costFactor(source, edgeId));
+
+                if (nextDistance < distance[next]) {
+                    touch(next, nextDistance, length[nodeId] + (float) graph.edgeLength(edgeId), edgeId);
+                    queue.push(next, nextDistance);
+                }
+            }
+        }
+
+        for (int i = 0; i < touchedCount; i++) distance[touched[i]] = Float.POSITIVE_INFINITY;
+        touchedCount = 0;
+        for (int i = 0; i < hubLabels.sizes[hubNodeId]; i++) hubCosts[hubLabels.hubs[hubNodeId][i]] = Float.POSITIVE_INFINITY;
+    }
+
+    private void touch(int nodeId, float nodeDistance, float nodeLength, int edgeId) {
+        if (distance[nodeId] == Float.POSITIVE_INFINITY) touched[touchedCount++] = nodeId;
+        distance[nodeId] = nodeDistance;
+        length[nodeId] = nodeLength;
+        predEdge[nodeId] = edgeId;
+    }
+
+    /**
+     * Cette classe imbriquée représente les étiquettes en cours de construction, sous forme de tableaux extensibles par nœud.
+     * Les hubs étant ajoutés dans l'ordre de leur calcul, chaque étiquette est automatiquement triée par hub croissant.
+     */
+
+    private static final class LabelLists {
+
+        private final int[] sizes;
+        private final int[][] hubs;
+        private final int[][] edges;
+        private final float[][] costs;
+        private final float[][] lengths;
+
+        private LabelLists(int nodeCount) {
+            sizes = new int[nodeCount];
+            hubs = new int[nodeCount][];
+            edges = new int[nodeCount][];
+            costs = new float[nodeCount][];
+            lengths = new float[nodeCount][];
+        }
+
+        private void add(int nodeId, int hub, int edgeId, float cost, float length) {
+            int size = sizes[nodeId];
+            if (hubs[nodeId] == null) {
+                hubs[nodeId] = new int[4];
+                edges[nodeId] = new int[4];
+                costs[nodeId] = new float[4];
+                lengths[nodeId] = new float[4];
+            } else if (size == hubs[nodeId].length) {
+                hubs[nodeId] = Arrays.copyOf(hubs[nodeId], 2 * size);
+                edges[nodeId] = Arrays.copyOf(edges[nodeId], 2 * size);
+                costs[nodeId] = Arrays.copyOf(costs[nodeId], 2 * size);
+                lengths[nodeId] = Arrays.copyOf(lengths[nodeId], 2 * size);
+            }
+            hubs[nodeId][size] = hub;
+            edges[nodeId][size] = edgeId;
+            costs[nodeId][size] = cost;
+            lengths[nodeId][size] = length;
+            sizes[nodeId]++;
+        }
+
+        /**
+         * Cette méthode retourne le plus petit coût passant par un hub de l'étiquette du nœud donné,
+         * hubCosts contenant les coûts de l'étiquette opposée du hub en cours de traitement.
+         */
+
+        private float coveredCost(int nodeId, float[] hubCosts) {
+            float best = Float.POSITIVE_INFINITY;
+            for (int i = 0; i < sizes[nodeId]; i++) best = Math.min(best, costs[nodeId][i] + hubCosts[hubs[nodeId][i]]);
+            return best;
+        }
+
+        private HubLabels.Labels toLabels() {
+
+            int[] index = new int[sizes.length + 1];
+            for (int nodeId = 0; nodeId < sizes.length; nodeId++) index[nodeId + 1] = index[nodeId] + sizes[nodeId];
+
+            int count = index[sizes.length];
+            int[] allHubs = new int[count];
+            int[] allEdges = new int[count];
+            float[] allCosts = new float[count];
+            float[] allLengths = new float[count];
+            for (int nodeId = 0; nodeId < sizes.length; nodeId++) {
+                if (sizes[nodeId] == 0) continue;
+                System.arraycopy(hubs[nodeId], 0, allHubs, index[nodeId], sizes[nodeId]);
+                System.arraycopy(edges[nodeId], 0, allEdges, index[nodeId], sizes[nodeId]);
+                System.arraycopy(costs[nodeId], 0, allCosts, index[nodeId], sizes[nodeId]);
+                System.arraycopy(lengths[nodeId], 0, allLengths, index[nodeId], sizes[nodeId]);
+            }
+            return new HubLabels.Labels(IntBuffer.wrap(index), IntBuffer.wrap(allHubs), IntBuffer.wrap(allEdges),
+                    FloatBuffer.wrap(allCosts), FloatBuffer.wrap(allLengths));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import ch.epfl.javelo.Preconditions;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente les tables de distances de quelques nœuds repères (landmarks),
+ * calculées par LandmarksBuilder pour une fonction de coût donnée, et utilisées comme heuristique par A* (ALT).
+ *
+ * Il possède les attributs suivants :
+ * @param nodeIds qui contient l'identité du nœud de chaque repère.
+ * @param distances qui contient, pour chaque nœud puis pour chaque repère, le coût du repère vers le nœud
+ *                  suivi du coût du nœud vers le repère (Float.POSITIVE_INFINITY si aucun chemin n'existe).
+ */
+
+public record Landmarks(IntBuffer nodeIds, FloatBuffer distances) {
+
+    private static final String FILE_NAME = "landmarks.bin";
+    private static final int HEADER_INTS = 2;
+
+    /**
+     *
+     * @return
+     *         retourne le nombre de repères.
+     */
+
+    public int count() {
+        return nodeIds.capacity();
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre de nœuds couverts par les tables.
+     */
+
+    public int nodeCount() {
+        return distances.capacity() / (2 * count());
+    }
+
+    /**
+     *
+     * @param landmark
+     *         représente l'index du repère.
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne le coût minimal pour aller du repère au nœud donné.
+     */
+
+    public float distanceFrom(int landmark, int nodeId) {
+        return distances.get(2 * (nodeId * count() + landmark));
+    }
+
+    /**
+     *
+     * @param landmark
+     *         représente l'index du repère.
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne le coût minimal pour aller du nœud donné au repère.
+     */
+
+    public float distanceTo(int landmark, int nodeId) {
+        return distances.get(2 * (nodeId * count() + landmark) + 1);
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param targetNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @param landmarks
+     *         représente les index des repères à utiliser.
+     * @return
+     *         retourne une borne inférieure du coût allant du nœud au nœud d'arrivée, obtenue par l'inégalité triangulaire,
+     *         ou Float.POSITIVE_INFINITY si l'arrivée est certainement inaccessible depuis le nœud.
+     *
+     * Les comparaisons ignorent les valeurs NaN, qui apparaissent lorsque les deux nœuds sont inaccessibles depuis un repère.
+     */
+
+    public float lowerBound(int nodeId, int targetNodeId, int[] landmarks) {
+
+        float bound = 0;
+        for (int landmark : landmarks) {
+            float landmarkBound = lowerBound(nodeId, targetNodeId, landmark);
+            if (landmarkBound > bound) bound = landmarkBound;
+        }
+        return bound;
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param targetNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @param landmark
+     *         représente l'index du repère à utiliser.
+     * @return
+     *         retourne la borne inférieure du coût allant du nœud au nœud d'arrivée obtenue avec le seul repère donné,
+     *         comme lowerBound(nodeId, targetNodeId, new int[] {landmark}) mais sans créer de tableau.
+     */
+
+    public float lowerBound(int nodeId, int targetNodeId, int landmark) {
+
+        float forward = distanceFrom(landmark, targetNodeId) - distanceFrom(landmark, nodeId);
+        float backward = distanceTo(landmark, nodeId) - distanceTo(landmark, targetNodeId);
+
+        float bound = 0;
+        if (forward > bound) bound = forward;
+        if (backward > bound) bound = backward;
+        return bound;
+    }
+
+    /**
+     *
+     * @param startNodeId
+     *         représente l'identité du nœud de départ.
+     * @param endNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @param maxCount
+     *         représente le nombre maximal de repères à retourner.
+     * @return
+     *         retourne les index des repères donnant les meilleures bornes pour le couple de nœuds donné,
+     *         afin que la recherche n'évalue que ceux-ci à chaque nœud.
+     */
+
+    public int[] bestLandmarks(int startNodeId, int endNodeId, int maxCount) {
+
+        int count = Math.min(maxCount, count());
+        int[] best = new int[count];
+        float[] bounds = new float[count];
+
+        for (int landmark = 0; landmark < count(); landmark++) {
+
+            float bound = lowerBound(startNodeId, endNodeId, landmark);
+
+            // Insertion du repère dans le tableau trié par borne décroissante.
+            int i = Math.min(landmark, count);
+            while (i > 0 && bounds[i - 1] < bound) {
+                if (i < count) {
+                    best[i] = best[i - 1];
+                    bounds[i] = bounds[i - 1];
+                }
+                i--;
+            }
+            if (i < count) {
+                best[i] = landmark;
+                bounds[i] = bound;
+            }
+        }
+        return best;
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @return
+     *         retourne les repères stockés dans le fichier landmarks.bin du répertoire donné, projeté en mémoire.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie, par exemple si le fichier n'existe pas.
+     */
+
+    public static Landmarks loadFrom(Path basePath) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int count = buffer.getInt(0);
+        int nodeCount = buffer.getInt(Integer.BYTES);
+        int tableOffset = (HEADER_INTS + count) * Integer.BYTES;
+
+        Preconditions.checkArgument(count > 0 && buffer.capacity() == tableOffset + 2L * count * nodeCount * Float.BYTES);
+
+        return new Landmarks(buffer.slice(HEADER_INTS * Integer.BYTES, count * Integer.BYTES).asIntBuffer(),
+                buffer.slice(tableOffset, buffer.capacity() - tableOffset).asFloatBuffer());
+    }
+
+    /**
+     *
+     * @param basePath
+     *         représente le chemin d'accès au répertoire contenant les fichiers du graphe.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Cette méthode écrit les repères et leurs tables dans le fichier landmarks.bin du répertoire donné.
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            long size = (HEADER_INTS + count()) * (long) Integer.BYTES + distances.capacity() * (long) Float.BYTES;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            buffer.putInt(count()).putInt(nodeCount());
+            for (int i = 0; i < count(); i++) buffer.putInt(nodeIds.get(i));
+            for (int i = 0; i < distances.capacity(); i++) buffer.putFloat(distances.get(i));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ch.epfl.javelo.routing;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente le pré-calcul (hors ligne) des repères utilisés par l'heuristique ALT.
+ * Les repères sont choisis un à un comme le nœud accessible le plus éloigné (en coût) des repères déjà choisis,
+ * puis les coûts depuis et vers chaque repère sont calculés par des recherches de Dijkstra exécutées en parallèle.
+ */
+
+public final class LandmarksBuilder {
+
+    private static final int DEFAULT_COUNT = 16;
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+
+    private LandmarksBuilder(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe utilisé.
+     * @param costFunction
+     *         représente la fonction de coût pour laquelle les tables sont calculées.
+     * @param count
+     *         représente le nombre de repères à choisir.
+     * @return
+     *         retourne les repères choisis et leurs tables de distances.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si le nombre de repères n'est pas strictement positif.
+     */
+
+    public static Landmarks build(Graph graph, CostFunction costFunction, int count) {
+        Preconditions.checkArgument(count > 0);
+        return new LandmarksBuilder(graph, costFunction).select(count);
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut,
+     *         et le second (facultatif) est le nombre de repères, 16 par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée calcule les repères pour la fonction de coût CityBikeCF et les écrit à côté des fichiers du graphe.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COUNT;
+        Graph graph = Graph.loadFrom(basePath);
+
+        long start = System.nanoTime();
+        Landmarks landmarks = build(graph, new CityBikeCF(graph), count);
+        landmarks.writeTo(basePath);
+
+        System.out.printf("%d repères calculés en %.1f s%n", landmarks.count(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private Landmarks select(int count) {
+
+        int nodeCount = graph.nodeCount();
+        int[] nodeIds = new int[count];
+        float[][] forward = new float[count][];
+
+        // Le nœud le plus éloigné d'un nœud arbitraire sert de premier repère.
+        float[] minDistance = dijkstra(nodeCount / 2, false);
+        for (int landmark = 0; landmark < count; landmark++) {
+
+            nodeIds[landmark] = farthest(minDistance);
+            forward[landmark] = dijkstra(nodeIds[landmark], false);
+
+            if (landmark == 0) minDistance = forward[0].clone();
+            else for (int nodeId = 0; nodeId < nodeCount; nodeId++) minDistance[nodeId] = Math.min(minDistance[nodeId], forward[landmark][nodeId]);
+        }
+
+        float[] distances = new float[2 * count * nodeCount];
+        IntStream.range(0, count).parallel().forEach(landmark -> {
+            float[] backward = dijkstra(nodeIds[landmark], true);
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                distances[2 * (nodeId * count + landmark)] = forward[landmark][nodeId];
+                distances[2 * (nodeId * count + landmark) + 1] = backward[nodeId];
+            }
+        });
+
+        return new Landmarks(IntBuffer.wrap(nodeIds), FloatBuffer.wrap(distances));
+    }
+
+    /**
+     * Cette méthode retourne l'identité du nœud accessible (de distance finie) dont la distance est la plus grande.
+     */
+
+    private static int farthest(float[] distance) {
+        int farthest = 0;
+        for (int nodeId = 0; nodeId < distance.length; nodeId++) {
+            if (distance[nodeId] != Float.POSITIVE_INFINITY && distance[nodeId] > distance[farthest]) farthest = nodeId;
+        }
+        return farthest;
+    }
+
+    /**
+     * Cette méthode retourne le coût minimal depuis le nœud source vers chaque nœud (backward faux),
+     * ou depuis chaque nœud vers le nœud source (backward vrai).
+     */
+
+    private float[] dijkstra(int source, boolean backward) {
+
+        float[] distance = new float[graph.nodeCount()];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        distance[source] = 0;
+
+        NodeHeap enExploration = new NodeHeap(graph.nodeCount());
+        enExploration.push(source, 0);
+
+        while (!enExploration.isEmpty()) {
+
+            int nodeId = enExploration.remove();
+
+            int count = backward ? graph.nodeInDegree(nodeId) : graph.nodeOutDegree(nodeId);
+            for (int i = 0; i < count; i++) {
+
+                int edgeId = backward ? graph.nodeInEdgeId(nodeId, i) : graph.nodeOutEdgeId(nodeId, i);
+                int from = backward ? graph.edgeSourceNodeId(edgeId) : nodeId;
+                int n2 = backward ? from : graph.edgeTargetNodeId(edgeId);
+                float d = distance[nodeId] + (float) (graph.edgeLength(edgeId) * costFunction.costFactor(from, edgeId));
+
+                if (d < distance[n2]) {
+                    distance[n2] = d;
+                    enExploration.push(n2, d);
+                }
+            }
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,227 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente une file de priorité de nœuds (tas 4-aire indexé), utilisée par les algorithmes de recherche.
+ * Contrairement à PriorityQueue, elle ne crée aucun objet : les identités des nœuds et leurs clés sont stockées dans des tableaux
+ * de types primitifs, et la position de chaque nœud dans le tas est mémorisée, ce qui permet de modifier sa clé sur place
+ * au lieu d'ajouter une nouvelle entrée. Chaque nœud y figure donc au plus une fois.
+ */
+
+final class NodeHeap {
+
+    private static final int ARITY = 4;
+    private static final int ABSENT = -1;
+
+    private final int[] position;
+    private int[] nodeIds;
+    private float[] keys;
+    private int size;
+
+    // Les compteurs d'opérations, remis à zéro par clear (voir SearchStats).
+    private int pushCount;
+    private int popCount;
+    private int maxSize;
+
+    /**
+     * Le constructeur construit un tas vide pouvant contenir les nœuds d'identité comprise entre 0 (inclus) et nodeCount (exclus).
+     *
+     * @param nodeCount
+     *         représente le nombre de nœuds du graphe.
+     */
+
+    NodeHeap(int nodeCount) {
+        position = new int[nodeCount];
+        Arrays.fill(position, ABSENT);
+        nodeIds = new int[Math.min(nodeCount, 1024)];
+        keys = new float[nodeIds.length];
+    }
+
+    /**
+     *
+     * @return
+     *         retourne vrai ssi le tas est vide.
+     */
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre de nœuds contenus dans le tas.
+     */
+
+    int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @param index
+     *         représente une position dans le tas, comprise entre 0 (inclus) et size() (exclus).
+     * @return
+     *         retourne l'identité du nœud se trouvant à la position donnée, ce qui permet de parcourir le contenu du tas.
+     */
+
+    int nodeIdAt(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne vrai ssi le nœud donné se trouve dans le tas.
+     */
+
+    boolean contains(int nodeId) {
+        return position[nodeId] != ABSENT;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne l'identité du nœud de clé minimale, sans le retirer.
+     */
+
+    int peekNodeId() {
+        return nodeIds[0];
+    }
+
+    /**
+     *
+     * @return
+     *         retourne la clé minimale, ou Float.POSITIVE_INFINITY si le tas est vide.
+     */
+
+    float peekKey() {
+        return size == 0 ? Float.POSITIVE_INFINITY : keys[0];
+    }
+
+    /**
+     *
+     * @return
+     *         retire du tas le nœud de clé minimale et retourne son identité.
+     */
+
+    int remove() {
+
+        int nodeId = nodeIds[0];
+        position[nodeId] = ABSENT;
+        size--;
+        popCount++;
+
+        if (size > 0) siftDown(0, nodeIds[size], keys[size]);
+        return nodeId;
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param key
+     *         représente la clé (la priorité) du nœud.
+     *
+     * Cette méthode ajoute le nœud donné au tas, ou modifie sa clé s'il s'y trouve déjà (qu'elle augmente ou diminue).
+     */
+
+    void push(int nodeId, float key) {
+
+        pushCount++;
+        int i = position[nodeId];
+        if (i == ABSENT) {
+            if (size == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * size);
+                keys = Arrays.copyOf(keys, 2 * size);
+            }
+            siftUp(size++, nodeId, key);
+            if (size > maxSize) maxSize = size;
+        } else if (key < keys[i]) {
+            siftUp(i, nodeId, key);
+        } else {
+            siftDown(i, nodeId, key);
+        }
+    }
+
+    /**
+     * Cette méthode vide le tas, en un temps proportionnel au nombre de nœuds qu'il contient, et remet ses compteurs à zéro.
+     */
+
+    void clear() {
+        for (int i = 0; i < size; i++) position[nodeIds[i]] = ABSENT;
+        size = 0;
+        pushCount = popCount = maxSize = 0;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre d'appels à push (ajouts et modifications de clé) depuis le dernier appel à clear.
+     */
+
+    int pushCount() {
+        return pushCount;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre d'appels à remove depuis le dernier appel à clear.
+     */
+
+    int popCount() {
+        return popCount;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne la taille maximale atteinte par le tas depuis le dernier appel à clear.
+     */
+
+    int maxSize() {
+        return maxSize;
+    }
+
+    private void siftUp(int i, int nodeId, float key) {
+        while (i > 0) {
+            int parent = (i - 1) / ARITY;
+            if (keys[parent] <= key) break;
+            place(i, nodeIds[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, nodeId, key);
+    }
+
+    private void siftDown(int i, int nodeId, float key) {
+        while (true) {
+            int first = ARITY * i + 1;
+            if (first >= size) break;
+
+            // on cherche le plus petit des (au plus) ARITY enfants
+            int min = first;
+            for (int child = first + 1; child < Math.min(first + ARITY, size); child++) {
+                if (keys[child] < keys[min]) min = child;
+            }
+            if (keys[min] >= key) break;
+
+            place(i, nodeIds[min], keys[min]);
+            i = min;
+        }
+        place(i, nodeId, key);
+    }
+
+    private void place(int i, int nodeId, float key) {
+        nodeIds[i] = nodeId;
+        keys[i] = key;
+        position[nodeId] = i;
+    }
+}
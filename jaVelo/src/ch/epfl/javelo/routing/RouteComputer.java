@@ -1,10 +1,13 @@
 package ch.epfl.javelo.routing;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Objects;
+import java.util.stream.IntStream;
 import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.data.Graph;
 
@@ -14,15 +17,34 @@ import ch.epfl.javelo.data.Graph;
  * @author Youssef Neji (346960)
  *
  * Cette classe représente un planificateur d'itinéraire.
+ * Ses instances sont immuables et peuvent être utilisées simultanément par plusieurs fils, chacun disposant de son propre espace de travail.
  */
 
 public final class RouteComputer {
     
+    private static final int ACTIVE_LANDMARKS = 4;
+
+    /**
+     * L'échéance représentant l'absence d'échéance, pour les recherches limitées seulement par un jeton d'annulation.
+     */
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
     private final Graph graph;
     private final CostFunction costFunction;
+    private final EdgeCosts edgeCosts;
+    private final ContractionHierarchy hierarchy;
+    private final Landmarks landmarks;
+    private final boolean bidirectional;
+    private final Components components;
+    private final ArcFlags arcFlags;
+    private final float weight;
+    private final SearchMetrics metrics;
+    private final ThreadLocal<SearchWorkspace> workspaces;
     
     /**
      * Le constructeur construit un planificateur d'itinéraire pour le graphe et la fonction de coût donnés.
+     * Si la fonction de coût est compilée (EdgeCosts), le coût des arêtes est lu directement dans sa table.
      * 
      * @param graph
      *         représente le graph utilisé.
@@ -31,11 +53,192 @@ public final class RouteComputer {
      */
     
     public RouteComputer(Graph graph, CostFunction costFunction){
+        this(graph, costFunction, null, null, false, null, null, 1, null, newWorkspaces(graph));
+    }
+
+    /**
+     * Ce constructeur construit un planificateur d'itinéraire qui répond aux requêtes par une recherche bidirectionnelle
+     * ascendante dans la hiérarchie de contraction donnée, qui doit avoir été calculée pour la même fonction de coût.
+     *
+     * @param graph
+     *         représente le graph utilisé.
+     * @param costFunction
+     *         représente le facteur de cout.
+     * @param hierarchy
+     *         représente la hiérarchie de contraction du graphe pour cette fonction de coût.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la hiérarchie ne possède pas le même nombre de nœuds que le graphe.
+     */
+
+    public RouteComputer(Graph graph, CostFunction costFunction, ContractionHierarchy hierarchy){
+        this(graph, costFunction, hierarchy, null, false, null, null, 1, null, newWorkspaces(graph));
+        Preconditions.checkArgument(hierarchy.nodeCount() == graph.nodeCount());
+    }
+
+    /**
+     * Ce constructeur construit un planificateur d'itinéraire dont la recherche A* utilise comme heuristique
+     * les bornes inférieures données par les repères (ALT), qui doivent avoir été calculés pour la même fonction de coût.
+     *
+     * @param graph
+     *         représente le graph utilisé.
+     * @param costFunction
+     *         représente le facteur de cout.
+     * @param landmarks
+     *         représente les repères et leurs tables de distances pour cette fonction de coût.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si les tables ne couvrent pas le même nombre de nœuds que le graphe.
+     */
+
+    public RouteComputer(Graph graph, CostFunction costFunction, Landmarks landmarks){
+        this(graph, costFunction, null, landmarks, false, null, null, 1, null, newWorkspaces(graph));
+        Preconditions.checkArgument(landmarks.nodeCount() == graph.nodeCount());
+    }
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe, chargé depuis le répertoire donné.
+     * @param basePath
+     *         représente le répertoire contenant les données pré-calculées pour ce graphe.
+     * @return
+     *         retourne le planificateur utilisé par les points d'entrée de JaVelo (interface graphique, serveur et traitement par lots),
+     *         pour la fonction de coût CityBikeCF : sa table de coûts est lue depuis edge_costs.bin ou compilée, la hiérarchie de
+     *         contraction (ch.bin) ou à défaut les repères (landmarks.bin) sont utilisés s'ils existent, et les composantes, lues
+     *         depuis components.bin ou calculées, permettent de rejeter immédiatement les requêtes sans itinéraire (voir components).
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     */
+
+    public static RouteComputer loadFrom(Graph graph, Path basePath) throws IOException {
+
+        CostFunction costFunction = Files.exists(basePath.resolve("edge_costs.bin"))
+                ? EdgeCosts.loadFrom(graph, basePath)
+                : EdgeCosts.of(graph, new CityBikeCF(graph));
+        RouteComputer routeComputer;
+        if (Files.exists(basePath.resolve("ch.bin"))) routeComputer = new RouteComputer(graph, costFunction, ContractionHierarchy.loadFrom(basePath));
+        else if (Files.exists(basePath.resolve("landmarks.bin"))) routeComputer = new RouteComputer(graph, costFunction, Landmarks.loadFrom(basePath));
+        else routeComputer = new RouteComputer(graph, costFunction);
+        Components components = Files.exists(basePath.resolve("components.bin"))
+                ? Components.loadFrom(graph, basePath)
+                : Components.of(graph, costFunction);
+        return routeComputer.withComponents(components);
+    }
+
+    private RouteComputer(Graph graph, CostFunction costFunction, ContractionHierarchy hierarchy, Landmarks landmarks, boolean bidirectional,
+                          Components components, ArcFlags arcFlags, float weight, SearchMetrics metrics,
+                          ThreadLocal<SearchWorkspace> workspaces){
 
         this.graph = graph;
         this.costFunction = costFunction;
+        this.edgeCosts = costFunction instanceof EdgeCosts compiled ? compiled : null;
+        this.hierarchy = hierarchy;
+        this.landmarks = landmarks;
+        this.bidirectional = bidirectional;
+        this.components = components;
+        this.arcFlags = arcFlags;
+        this.weight = weight;
+        this.metrics = metrics;
+        this.workspaces = workspaces; //partagés par toutes les variantes (with...) de ce planificateur, qui utilisent le même graphe
+    }
+
+    // Un espace de travail par fil, réutilisé d'une recherche à l'autre : chaque recherche le réinitialise en temps constant.
+    private static ThreadLocal<SearchWorkspace> newWorkspaces(Graph graph) {
+        return ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount()));
+    }
+
+    /**
+     *
+     * @return
+     *         retourne un planificateur identique à celui-ci, mais dont la recherche A* progresse simultanément depuis le départ
+     *         et depuis l'arrivée (en suivant les arêtes entrantes du graphe), avec les repères éventuels comme heuristique.
+     *         Le mode par hiérarchie de contraction, déjà bidirectionnel, n'est pas affecté.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si ce planificateur utilise des drapeaux d'arêtes, que la recherche bidirectionnelle
+     *         ne sait pas utiliser.
+     */
+
+    public RouteComputer withBidirectionalSearch() {
+        Preconditions.checkArgument(arcFlags == null);
+        return new RouteComputer(graph, costFunction, hierarchy, landmarks, true, components, arcFlags, weight, metrics, workspaces);
+    }
+
+    /**
+     *
+     * @param components
+     *         représente les composantes du graphe, calculées pour la même fonction de coût.
+     * @return
+     *         retourne un planificateur identique à celui-ci, mais qui retourne immédiatement null lorsque les composantes
+     *         montrent que l'arrivée est inaccessible depuis le départ, au lieu d'explorer tout le graphe accessible.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si les composantes ne couvrent pas le même nombre de nœuds que le graphe.
+     */
+
+    public RouteComputer withComponents(Components components) {
+        Preconditions.checkArgument(components.strongLabels().capacity() == graph.nodeCount());
+        return new RouteComputer(graph, costFunction, hierarchy, landmarks, bidirectional, components, arcFlags, weight, metrics, workspaces);
+    }
+
+    /**
+     *
+     * @param arcFlags
+     *         représente les drapeaux des arêtes du graphe, calculés pour la même fonction de coût.
+     * @return
+     *         retourne un planificateur identique à celui-ci, mais dont la recherche A* (unidirectionnelle) ignore les arêtes
+     *         qui ne se trouvent sur aucun itinéraire de coût minimal menant à la région du nœud d'arrivée.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si les drapeaux ne couvrent pas le même nombre d'arêtes que le graphe, s'ils ont été
+     *         calculés pour une autre fonction de coût (voir ArcFlags.costHash, qui parcourt toutes les arêtes), ou si ce
+     *         planificateur utilise la recherche bidirectionnelle ou la hiérarchie de contraction, qui ne savent pas les utiliser.
+     */
+
+    public RouteComputer withArcFlags(ArcFlags arcFlags) {
+        Preconditions.checkArgument(hierarchy == null && !bidirectional);
+        Preconditions.checkArgument(arcFlags.edgeCount() == graph.edgeCount());
+        Preconditions.checkArgument(arcFlags.costHash() == ArcFlags.costHash(graph, costFunction));
+        return new RouteComputer(graph, costFunction, hierarchy, landmarks, bidirectional, components, arcFlags, weight, metrics, workspaces);
+    }
+
+    /**
+     *
+     * @param epsilon
+     *         représente la sous-optimalité tolérée, positive ou nulle (0.05 pour des itinéraires au plus 5% plus coûteux).
+     * @return
+     *         retourne un planificateur identique à celui-ci, mais dont la recherche A* (unidirectionnelle) multiplie l'estimation
+     *         du coût restant par 1 + epsilon. Elle visite beaucoup moins de nœuds, et le coût de l'itinéraire trouvé est au plus
+     *         1 + epsilon fois le coût minimal. La recherche bidirectionnelle et la hiérarchie de contraction restent exactes.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si epsilon est négatif.
+     */
+
+    public RouteComputer withSuboptimality(double epsilon) {
+        Preconditions.checkArgument(epsilon >= 0);
+        return new RouteComputer(graph, costFunction, hierarchy, landmarks, bidirectional, components, arcFlags, (float) (1 + epsilon), metrics, workspaces);
     }
     
+    /**
+     *
+     * @param metrics
+     *         représente le registre dans lequel les statistiques des recherches sont cumulées.
+     * @return
+     *         retourne un planificateur identique à celui-ci, mais qui enregistre dans le registre donné les statistiques
+     *         (SearchStats) de chaque recherche effectuée par bestRouteBetween. Sans registre, seuls les compteurs des files
+     *         de priorité et des arêtes relâchées sont tenus, et la durée des recherches n'est pas mesurée.
+     */
+
+    public RouteComputer withMetrics(SearchMetrics metrics) {
+        return new RouteComputer(graph, costFunction, hierarchy, landmarks, bidirectional, components, arcFlags, weight, metrics, workspaces);
+    }
+
+    /**
+     *
+     * @return
+     *         retourne les composantes du graphe utilisées par ce planificateur (voir withComponents), ou null s'il n'en utilise pas.
+     */
+
+    public Components components() {
+        return components;
+    }
+
     /**
      * 
      * @param startNodeId
@@ -52,72 +255,591 @@ public final class RouteComputer {
     
 
     public Route bestRouteBetween(int startNodeId, int endNodeId) {
-        
-        Preconditions.checkArgument(startNodeId!=endNodeId);
- 
-        record WeightedNode(int nodeId, float distance) implements Comparable<WeightedNode> { //attention à ne pas confondre distance de WeightedNode et les valeurs du tab distance, puisque dans WeightedNode il s'agit de la somme de la distance effectuée en plus du vol d'oiseau au point d'arrivée
-      
-            @Override
-            public int compareTo(WeightedNode that) {
-                return Float.compare(this.distance, that.distance);
-            }
+        return boundedRouteBetween(startNodeId, endNodeId).route();
+    }
+
+    /**
+     * 
+     * @param startNodeId
+     *         représente l'identité du nœud de départ.
+     * @param endNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @param deadline
+     *         représente l'échéance de la recherche, selon System.nanoTime, ou NO_DEADLINE.
+     * @param token
+     *         représente un jeton d'annulation, ou null.
+     * @return
+     *         retourne le résultat de la recherche de l'itinéraire de coût minimal, comme par bestRouteBetween. La recherche vérifie
+     *         périodiquement l'échéance et le jeton, et s'arrête dès que l'une est atteinte ou que l'autre est annulé : le résultat
+     *         contient alors le meilleur itinéraire trouvé jusque là (si l'arrivée a déjà été atteinte), et le motif de l'arrêt.
+     *         Il contient aussi les statistiques de la recherche, enregistrées dans le registre éventuel (voir withMetrics).
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si les nœuds de départ et d'arrivée sont identiques.
+     */
+
+    public RouteResult bestRouteBetween(int startNodeId, int endNodeId, long deadline, CancellationToken token) {
+
+        Preconditions.checkArgument(startNodeId != endNodeId);
+
+        if (components != null && !components.mayReach(startNodeId, endNodeId)) {
+            if (metrics != null) metrics.record(SearchStats.EMPTY);
+            return new RouteResult(null, RouteResult.Status.COMPLETED, SearchStats.EMPTY, 1);
         }
-        
-       List<Edge> edList= new ArrayList<>();
-       float [] distance =new float[graph.nodeCount()];
-       int [] pred = new int[graph.nodeCount()];
 
-       Arrays.fill(distance, Float.POSITIVE_INFINITY);
-       distance[startNodeId]=0;
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+
+        SearchWorkspace ws = workspaces.get();
+        ws.reset();
+        ws.limit(deadline, token);
+        long start = System.nanoTime();
+        BoundedRoute found = search(startNodeId, endNodeId, ws);
+        SearchStats stats = ws.stats(System.nanoTime() - start);
+        if (metrics != null) metrics.record(stats);
+
+        event.commit(startNodeId, endNodeId, found.route(), ws);
+        return new RouteResult(found.route(), ws.status(), stats, found.bound());
+    }
+
+    /**
+     * Cette méthode calcule l'itinéraire avec l'algorithme du mode choisi, dans l'espace de travail donné, déjà préparé
+     * pour cette recherche, et l'accompagne de la borne atteinte (voir boundedRouteBetween). Si la recherche est interrompue
+     * (voir SearchWorkspace.shouldStop), elle retourne le meilleur itinéraire trouvé jusque là, ou null ; dans les modes exacts,
+     * sa borne est alors inconnue, et vaut Double.POSITIVE_INFINITY.
+     */
+
+    private BoundedRoute search(int startNodeId, int endNodeId, SearchWorkspace ws) {
+
+        if (weight != 1 && hierarchy == null && !bidirectional) return bestRouteWeighted(startNodeId, endNodeId, ws);
+
+        Route route;
+        if (hierarchy != null) route = bestRouteInHierarchy(startNodeId, endNodeId, ws);
+        else if (bidirectional) route = bestRouteBidirectional(startNodeId, endNodeId, ws);
+        else route = bestRouteAStar(startNodeId, endNodeId, ws);
+        return new BoundedRoute(route, ws.status() == RouteResult.Status.COMPLETED ? 1 : Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Cette méthode calcule l'itinéraire de coût minimal par une recherche A*, guidée par les repères et les drapeaux d'arêtes éventuels.
+     */
+
+    private Route bestRouteAStar(int startNodeId, int endNodeId, SearchWorkspace ws) {
+
+       ws.setDistance(0, startNodeId, 0);
+
+       int[] activeLandmarks = landmarks == null ? null : landmarks.bestLandmarks(startNodeId, endNodeId, ACTIVE_LANDMARKS);
+       int endRegion = arcFlags == null ? -1 : arcFlags.region(graph.nodePoint(endNodeId));
       
-       PriorityQueue<WeightedNode> enExploration = new PriorityQueue<>();
+       NodeHeap enExploration = ws.heap(0);
        
-       enExploration.add(new WeightedNode(startNodeId,distance[startNodeId] + (float) graph.nodePoint(endNodeId).distanceTo(graph.nodePoint(startNodeId))));
+       enExploration.push(startNodeId,ws.distance(0, startNodeId) + estimate(startNodeId, endNodeId, activeLandmarks));
        
        while(!enExploration.isEmpty()) {
-         
-             WeightedNode n = enExploration.remove();
-             
-             if(distance[n.nodeId]==Float.NEGATIVE_INFINITY) continue; //ici le point n'est simplement retiré de la liste et ignoré puisqu'on l'a marqué par une valeur qui signale au programme qu'il ne peut rien faire de mieux pour ce point
 
-             if(n.nodeId==endNodeId) {  //on a fini d'explorer le nœud d'arrivée, on peut créer notre liste en partant de la fin
-                 
-                 int dest=endNodeId;  //dans cette boucle, dest représente le nœud auquel on souhaite voir notre arête arriver
-                 int deb=pred[dest]; //deb représente le prédécesseur de dest selon la logique de l'algorithme
-                 
-                 do {
-                     int i=-1;
-                     do {
-                         i++;   
-                     }while(graph.edgeTargetNodeId(graph.nodeOutEdgeId(pred[dest], i))!=dest); //on itère sur l'ensemble des arêtes sortantes de deb, on veut obtenir celle qui arrive a dest
-                     
-                     edList.add(Edge.of(graph, graph.nodeOutEdgeId(deb, i), deb, dest));
-                     
-                     dest=deb; //puisqu'on recule, dest va à présent être notre nœud duquel sort l'arête, pour voir l'arête qui le vise à son tour
-                     deb=pred[deb];
-                     
-                 }while(dest!=startNodeId); //l'étape n'est terminée que lorsque l'on parvient à atteindre le nœud de départ
-                 
-                 Collections.reverse(edList); //on doit inverser la liste qu'on a rempli en partant de la fin
-                 
-                 return new SingleRoute(edList);
+             if (ws.shouldStop()) { //l'arrivée a peut-être déjà été atteinte, par un itinéraire qui n'est pas forcément minimal
+                 return ws.distance(0, endNodeId) == Float.POSITIVE_INFINITY ? null : new SingleRoute(Edge.listOf(graph, pathTo(endNodeId, startNodeId, ws)));
              }
+         
+             int nodeId = enExploration.remove(); //chaque nœud ne figure qu'une fois dans le tas, avec sa meilleure clé : aucune entrée périmée n'est à ignorer
+
+             if(nodeId==endNodeId) return new SingleRoute(Edge.listOf(graph, pathTo(endNodeId, startNodeId, ws))); //on a fini d'explorer le nœud d'arrivée
                  
-             for(int i=0;i<graph.nodeOutDegree(n.nodeId);i++) {
+             for(int i=0;i<graph.nodeOutDegree(nodeId);i++) {
                  
-                 int n2 = graph.edgeTargetNodeId(graph.nodeOutEdgeId(n.nodeId, i));
-                 float d=  distance[n.nodeId] + (float)(graph.edgeLength(graph.nodeOutEdgeId(n.nodeId, i)) * costFunction.costFactor(n.nodeId, graph.nodeOutEdgeId(n.nodeId, i)));
+                 int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                 if (endRegion != -1 && !arcFlags.isSet(edgeId, endRegion)) continue; //l'arête ne mène pas à la région d'arrivée par un itinéraire optimal
+
+                 int n2 = graph.edgeTargetNodeId(edgeId);
+                 float d=  ws.distance(0, nodeId) + edgeCost(nodeId, edgeId);
+                 ws.countRelaxed();
                 
-                 if(d<distance[n2]) {
-                     
-                     distance[n2]=d;
-                     pred[n2]=n.nodeId;
+                 if(d<ws.distance(0, n2)) {
                      
-                     enExploration.add(new WeightedNode(n2,distance[n2]+(float) graph.nodePoint(endNodeId).distanceTo(graph.nodePoint(n2))));
+                     ws.setDistance(0, n2, d);
+                     ws.setPred(0, n2, nodeId, edgeId);
+
+                     float h = estimate(n2, endNodeId, activeLandmarks);
+                     if (h != Float.POSITIVE_INFINITY) enExploration.push(n2,d+h); //une estimation infinie signifie que l'arrivée est inaccessible depuis n2 ; sinon on ajoute n2 ou on diminue sa clé
                  }  
              }
-             distance[n.nodeId]= Float.NEGATIVE_INFINITY; //on marque le point n qui a deja été exploré
+             ws.setDistance(0, nodeId, Float.NEGATIVE_INFINITY); //on marque le point qui a deja été exploré, afin qu'il ne soit plus jamais ajouté au tas
        }
        return null; 
     }
+
+    /**
+     * 
+     * @param startNodeId
+     *         représente l'identité du nœud de départ.
+     * @param endNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @return
+     *         retourne l'itinéraire calculé comme par bestRouteBetween, accompagné de la borne atteinte : le rapport maximal
+     *         possible entre son coût et le coût minimal, au plus 1 + epsilon (voir withSuboptimality) et 1 pour les modes exacts.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si les nœuds de départ et d'arrivée sont identiques.
+     */
+
+    public BoundedRoute boundedRouteBetween(int startNodeId, int endNodeId) {
+
+        Preconditions.checkArgument(startNodeId != endNodeId);
+
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+
+        SearchWorkspace ws = workspaces.get();
+        ws.reset(); //les distances et prédécesseurs de la requête précédente sont invalidés en temps constant
+
+        BoundedRoute found = new BoundedRoute(null, 1);
+        if (components == null || components.mayReach(startNodeId, endNodeId)) {
+            if (metrics == null) found = search(startNodeId, endNodeId, ws);
+            else {
+                long start = System.nanoTime();
+                found = search(startNodeId, endNodeId, ws);
+                metrics.record(ws.stats(System.nanoTime() - start));
+            }
+        }
+
+        event.commit(startNodeId, endNodeId, found.route(), ws);
+        return found;
+    }
+
+    /**
+     *
+     * @param route
+     *         représente un itinéraire dans le graphe de ce planificateur.
+     * @return
+     *         retourne le coût total de l'itinéraire donné selon la fonction de coût de ce planificateur. Chaque arête
+     *         de l'itinéraire est identifiée par ses nœuds de départ et d'arrivée ; si plusieurs arêtes du graphe les relient,
+     *         la moins coûteuse est retenue, comme elle l'aurait été par la recherche.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si une arête de l'itinéraire n'existe pas dans le graphe.
+     */
+
+    public double costOf(Route route) {
+        double cost = 0;
+        for (Edge edge : route.edges()) {
+            float edgeCost = Float.POSITIVE_INFINITY;
+            for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); i++) {
+                int edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+                if (graph.edgeTargetNodeId(edgeId) == edge.toNodeId()) edgeCost = Math.min(edgeCost, edgeCost(edge.fromNodeId(), edgeId));
+            }
+            Preconditions.checkArgument(edgeCost != Float.POSITIVE_INFINITY);
+            cost += edgeCost;
+        }
+        return cost;
+    }
+
+    /**
+     * 
+     * @param pairs
+     *         représente les requêtes, chacune étant un tableau contenant l'identité du nœud de départ puis celle du nœud d'arrivée.
+     * @return
+     *         retourne, dans l'ordre des requêtes, l'itinéraire de coût minimal de chacune (ou null s'il n'existe pas)
+     *         et la durée de son calcul.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si une requête ne contient pas exactement deux nœuds, ou si ses deux nœuds sont identiques.
+     * 
+     * Les requêtes sont réparties entre les fils du ForkJoinPool commun, qui partagent le graphe (en lecture seule)
+     * et possèdent chacun leur propre espace de travail.
+     */
+
+    public List<TimedRoute> bestRoutesBetween(List<int[]> pairs) {
+
+        for (int[] pair : pairs) Preconditions.checkArgument(pair.length == 2 && pair[0] != pair[1]);
+
+        return IntStream.range(0, pairs.size()).parallel().mapToObj(i -> {
+            long start = System.nanoTime();
+            Route route = bestRouteBetween(pairs.get(i)[0], pairs.get(i)[1]);
+            return new TimedRoute(route, System.nanoTime() - start);
+        }).toList();
+    }
+
+    /**
+     * 
+     * @param sourceNodeIds
+     *         représente les identités des nœuds de départ (les lignes de la matrice).
+     * @param targetNodeIds
+     *         représente les identités des nœuds d'arrivée (les colonnes de la matrice).
+     * @return
+     *         retourne la matrice des coûts minimaux et des longueurs des itinéraires correspondants
+     *         entre chaque nœud de départ et chaque nœud d'arrivée, sans construire d'itinéraire.
+     * @throws IndexOutOfBoundsException
+     *         lève IndexOutOfBoundsException si l'une des identités n'est pas celle d'un nœud du graphe.
+     * @throws ArithmeticException
+     *         lève ArithmeticException si la matrice compte plus de Integer.MAX_VALUE cases.
+     * 
+     * Chaque ligne est calculée par une unique recherche de Dijkstra depuis son nœud de départ, qui s'arrête
+     * dès que tous les nœuds d'arrivée ont été visités. Les lignes sont réparties entre les fils du ForkJoinPool commun.
+     * La hiérarchie de contraction et les repères éventuels ne sont pas utilisés.
+     */
+
+    public RouteMatrix routeMatrix(int[] sourceNodeIds, int[] targetNodeIds) {
+
+        for (int sourceNodeId : sourceNodeIds) Objects.checkIndex(sourceNodeId, graph.nodeCount());
+        for (int targetNodeId : targetNodeIds) Objects.checkIndex(targetNodeId, graph.nodeCount());
+
+        BitSet isTarget = new BitSet(graph.nodeCount());
+        for (int targetNodeId : targetNodeIds) isTarget.set(targetNodeId);
+        int distinctTargets = isTarget.cardinality();
+
+        int columnCount = targetNodeIds.length;
+        int size = Math.multiplyExact(sourceNodeIds.length, columnCount); //les index des cases, inférieurs à size, ne peuvent donc pas déborder
+        float[] costs = new float[size];
+        float[] lengths = new float[size];
+
+        IntStream.range(0, sourceNodeIds.length).parallel().forEach(row -> {
+
+            int sourceNodeId = sourceNodeIds[row];
+            SearchWorkspace ws = workspaces.get();
+            ws.reset();
+            settleUntil(sourceNodeId, isTarget, distinctTargets, ws);
+
+            for (int column = 0; column < columnCount; column++) {
+                int targetNodeId = targetNodeIds[column];
+                float cost = ws.distance(0, targetNodeId);
+
+                float length = 0; //la longueur est celle du chemin des arêtes prédécesseurs, qui n'existe que si l'arrivée a été atteinte
+                if (cost == Float.POSITIVE_INFINITY) length = Float.POSITIVE_INFINITY;
+                else for (int n = targetNodeId; n != sourceNodeId; n = ws.predNode(0, n)) length += (float) graph.edgeLength(ws.predArc(0, n));
+
+                costs[row * columnCount + column] = cost;
+                lengths[row * columnCount + column] = length;
+            }
+        });
+
+        return new RouteMatrix(sourceNodeIds.length, columnCount, costs, lengths);
+    }
+
+    /**
+     * Cette méthode effectue une recherche de Dijkstra depuis le nœud de départ, qui s'arrête dès que les targetCount nœuds
+     * marqués dans isTarget ont été visités, et laisse les distances et prédécesseurs trouvés dans l'espace de travail.
+     */
+
+    private void settleUntil(int sourceNodeId, BitSet isTarget, int targetCount, SearchWorkspace ws) {
+
+        NodeHeap enExploration = ws.heap(0);
+        ws.setDistance(0, sourceNodeId, 0);
+        enExploration.push(sourceNodeId, 0);
+        int remaining = targetCount;
+
+        while (!enExploration.isEmpty() && remaining > 0) {
+
+            int nodeId = enExploration.remove();
+            ws.settle(0, nodeId);
+            if (isTarget.get(nodeId)) remaining--;
+
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                int n2 = graph.edgeTargetNodeId(edgeId);
+                float d = ws.distance(0, nodeId) + edgeCost(nodeId, edgeId);
+
+                if (d < ws.distance(0, n2)) {
+                    ws.setDistance(0, n2, d);
+                    ws.setPred(0, n2, nodeId, edgeId);
+                    enExploration.push(n2, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cette méthode retourne les identités des arêtes allant du nœud de départ au nœud donné, dans l'ordre,
+     * en remontant les arêtes prédécesseurs enregistrées par la recherche en avant.
+     * Le chemin est parcouru deux fois : une première pour connaître sa longueur, une seconde pour remplir le tableau depuis la fin.
+     */
+
+    private static int[] pathTo(int nodeId, int startNodeId, SearchWorkspace ws) {
+
+        int length = 0;
+        for (int n = nodeId; n != startNodeId; n = ws.predNode(0, n)) length++;
+
+        int[] edgeIds = new int[length];
+        for (int n = nodeId; n != startNodeId; n = ws.predNode(0, n)) edgeIds[--length] = ws.predArc(0, n);
+        return edgeIds;
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud de départ de l'arête.
+     * @param edgeId
+     *         représente l'identité de l'arête.
+     * @return
+     *         retourne le coût de l'arête : une simple lecture dans la table si la fonction de coût est compilée (EdgeCosts),
+     *         et sa longueur multipliée par son facteur de coût sinon.
+     */
+
+    private float edgeCost(int nodeId, int edgeId) {
+        return edgeCosts != null ? edgeCosts.cost(edgeId) : (float) (graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId));
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param endNodeId
+     *         représente l'identité du nœud d'arrivée.
+     * @param activeLandmarks
+     *         représente les index des repères utilisés pour cette requête, ou null s'il n'y en a pas.
+     * @return
+     *         retourne une estimation (borne inférieure) du coût restant depuis le nœud jusqu'à l'arrivée :
+     *         la distance à vol d'oiseau, ou la meilleure des bornes données par les repères si elle est plus grande.
+     */
+
+    private float estimate(int nodeId, int endNodeId, int[] activeLandmarks) {
+        float straight = (float) graph.nodePoint(endNodeId).distanceTo(graph.nodePoint(nodeId));
+        return activeLandmarks == null ? straight : Math.max(straight, landmarks.lowerBound(nodeId, endNodeId, activeLandmarks));
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param startNodeId
+     *         représente l'identité du nœud de départ.
+     * @param activeLandmarks
+     *         représente les index des repères utilisés pour cette requête, ou null s'il n'y en a pas.
+     * @return
+     *         retourne une estimation (borne inférieure) du coût allant du départ jusqu'au nœud, symétrique de estimate.
+     */
+
+    private float estimateFrom(int nodeId, int startNodeId, int[] activeLandmarks) {
+        float straight = (float) graph.nodePoint(startNodeId).distanceTo(graph.nodePoint(nodeId));
+        return activeLandmarks == null ? straight : Math.max(straight, landmarks.lowerBound(startNodeId, nodeId, activeLandmarks));
+    }
+
+    /**
+     * Cette méthode calcule un itinéraire par une recherche A* pondérée, dont la clé est g + weight·h. L'estimation h étant cohérente,
+     * le coût trouvé est au plus weight fois le coût minimal, même si aucun nœud n'est visité deux fois. Comme dans ARA*,
+     * un nœud déjà visité dont le coût diminue (incohérent) n'est pas revisité, mais sa valeur g + h est prise en compte, avec
+     * celles des nœuds en attente, dans la borne inférieure du coût minimal qui donne la borne atteinte.
+     */
+
+    private BoundedRoute bestRouteWeighted(int startNodeId, int endNodeId, SearchWorkspace ws) {
+
+        int[] activeLandmarks = landmarks == null ? null : landmarks.bestLandmarks(startNodeId, endNodeId, ACTIVE_LANDMARKS);
+        int endRegion = arcFlags == null ? -1 : arcFlags.region(graph.nodePoint(endNodeId));
+
+        NodeHeap enExploration = ws.heap(0);
+        ws.setDistance(0, startNodeId, 0);
+        enExploration.push(startNodeId, weight * estimate(startNodeId, endNodeId, activeLandmarks));
+        float inconsistentMin = Float.POSITIVE_INFINITY;
+
+        boolean completed = true;
+        while (!enExploration.isEmpty() && enExploration.peekNodeId() != endNodeId) {
+
+            if (ws.shouldStop()) {
+                completed = false;
+                break;
+            }
+
+            int nodeId = enExploration.remove();
+            ws.settle(0, nodeId);
+
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (endRegion != -1 && !arcFlags.isSet(edgeId, endRegion)) continue;
+
+                int n2 = graph.edgeTargetNodeId(edgeId);
+                float d = ws.distance(0, nodeId) + edgeCost(nodeId, edgeId);
+                ws.countRelaxed();
+
+                if (d < ws.distance(0, n2)) {
+                    float h = estimate(n2, endNodeId, activeLandmarks);
+                    if (h == Float.POSITIVE_INFINITY) continue;
+
+                    ws.setDistance(0, n2, d);
+                    ws.setPred(0, n2, nodeId, edgeId);
+                    if (ws.isSettled(0, n2)) inconsistentMin = Math.min(inconsistentMin, d + h);
+                    else enExploration.push(n2, d + weight * h);
+                }
+            }
+        }
+
+        float cost = ws.distance(0, endNodeId);
+        if (cost == Float.POSITIVE_INFINITY) return new BoundedRoute(null, 1);
+
+        float lowerBound = Math.min(cost, inconsistentMin);
+        for (int i = 0; i < enExploration.size(); i++) {
+            int n = enExploration.nodeIdAt(i);
+            lowerBound = Math.min(lowerBound, ws.distance(0, n) + estimate(n, endNodeId, activeLandmarks));
+        }
+        // Si la recherche a été interrompue avant d'atteindre l'arrivée, seule la borne inférieure garantit la qualité de l'itinéraire.
+        double bound = lowerBound > 0 ? cost / lowerBound : 1;
+        return new BoundedRoute(new SingleRoute(Edge.listOf(graph, pathTo(endNodeId, startNodeId, ws))), completed ? Math.min(weight, bound) : bound);
+    }
+
+    /**
+     * Cette méthode calcule l'itinéraire de coût minimal par deux recherches A* simultanées, l'une en avant depuis le départ
+     * et l'autre en arrière depuis l'arrivée. Les deux recherches utilisent le potentiel moyen p(n) = (h_arrivée(n) - h_départ(n)) / 2
+     * (et son opposé en arrière), qui reste cohérent : elles explorent alors le même graphe de coûts réduits,
+     * et le meilleur coût trouvé en un point de rencontre est optimal dès que la somme des deux plus petites clés l'atteint.
+     */
+
+    private Route bestRouteBidirectional(int startNodeId, int endNodeId, SearchWorkspace ws) {
+
+        int[] activeLandmarks = landmarks == null ? null : landmarks.bestLandmarks(startNodeId, endNodeId, ACTIVE_LANDMARKS);
+
+        NodeHeap[] enExploration = {ws.heap(0), ws.heap(1)};
+
+        ws.setDistance(0, startNodeId, 0);
+        ws.setDistance(1, endNodeId, 0);
+        enExploration[0].push(startNodeId, potential(startNodeId, startNodeId, endNodeId, activeLandmarks, ws));
+        enExploration[1].push(endNodeId, -potential(endNodeId, startNodeId, endNodeId, activeLandmarks, ws));
+
+        float best = Float.POSITIVE_INFINITY;
+        int meetingNodeId = -1;
+
+        while (true) {
+
+            float forwardMin = enExploration[0].peekKey();
+            float backwardMin = enExploration[1].peekKey();
+            if (forwardMin + backwardMin >= best || forwardMin == Float.POSITIVE_INFINITY || backwardMin == Float.POSITIVE_INFINITY) break;
+            if (ws.shouldStop()) break; //le meilleur point de rencontre trouvé jusque là est utilisé
+
+            int dir = forwardMin <= backwardMin ? 0 : 1; //on avance la direction dont la frontière est la plus proche
+            int nodeId = enExploration[dir].remove();
+            ws.settle(dir, nodeId);
+
+            int degree = dir == 0 ? graph.nodeOutDegree(nodeId) : graph.nodeInDegree(nodeId);
+            for (int i = 0; i < degree; i++) {
+
+                int edgeId = dir == 0 ? graph.nodeOutEdgeId(nodeId, i) : graph.nodeInEdgeId(nodeId, i);
+                int from = dir == 0 ? nodeId : graph.edgeSourceNodeId(edgeId);
+                int n2 = dir == 0 ? graph.edgeTargetNodeId(edgeId) : from;
+                if (ws.isSettled(dir, n2)) continue;
+
+                float d = ws.distance(dir, nodeId) + edgeCost(from, edgeId);
+                ws.countRelaxed();
+                if (d < ws.distance(dir, n2)) {
+
+                    float p = potential(n2, startNodeId, endNodeId, activeLandmarks, ws);
+                    if (Float.isNaN(p) || Float.isInfinite(p)) continue; //n2 ne peut pas se trouver sur un itinéraire entre le départ et l'arrivée
+
+                    ws.setDistance(dir, n2, d);
+                    ws.setPred(dir, n2, nodeId, edgeId);
+                    enExploration[dir].push(n2, dir == 0 ? d + p : d - p);
+
+                    float meeting = d + ws.distance(1 - dir, n2);
+                    if (meeting < best) {
+                        best = meeting;
+                        meetingNodeId = n2;
+                    }
+                }
+            }
+        }
+
+        if (meetingNodeId == -1) return null;
+
+        int[] forward = pathTo(meetingNodeId, startNodeId, ws);
+        int length = forward.length;
+        for (int nodeId = meetingNodeId; nodeId != endNodeId; nodeId = ws.predNode(1, nodeId)) length++;
+
+        int[] edgeIds = Arrays.copyOf(forward, length); //les arêtes de la recherche en arrière suivent, de la rencontre vers l'arrivée
+        int i = forward.length;
+        for (int nodeId = meetingNodeId; nodeId != endNodeId; nodeId = ws.predNode(1, nodeId)) edgeIds[i++] = ws.predArc(1, nodeId);
+
+        return new SingleRoute(Edge.listOf(graph, edgeIds));
+    }
+
+    /**
+     * Cette méthode retourne le potentiel moyen de la recherche en avant au nœud donné (celui de la recherche en arrière est son opposé),
+     * en le mémorisant dans l'espace de travail. Il est infini ou NaN si le nœud ne peut pas se trouver sur un itinéraire entre le départ et l'arrivée.
+     */
+
+    private float potential(int nodeId, int startNodeId, int endNodeId, int[] activeLandmarks, SearchWorkspace ws) {
+        float potential = ws.potential(nodeId);
+        if (Float.isNaN(potential)) {
+            potential = (estimate(nodeId, endNodeId, activeLandmarks) - estimateFrom(nodeId, startNodeId, activeLandmarks)) / 2;
+            ws.setPotential(nodeId, potential);
+        }
+        return potential;
+    }
+
+    /**
+     * Cette méthode calcule l'itinéraire de coût minimal par deux recherches de Dijkstra simultanées,
+     * l'une en avant depuis le départ et l'autre en arrière depuis l'arrivée, qui ne suivent que des arcs montant dans la hiérarchie.
+     * Une direction s'arrête dès que sa plus petite distance en exploration dépasse le meilleur coût trouvé au point de rencontre.
+     */
+
+    private Route bestRouteInHierarchy(int startNodeId, int endNodeId, SearchWorkspace ws) {
+
+        ContractionHierarchy.Adjacency[] adjacency = {hierarchy.upward(), hierarchy.downward()};
+        NodeHeap[] enExploration = {ws.heap(0), ws.heap(1)};
+
+        ws.setDistance(0, startNodeId, 0);
+        ws.setDistance(1, endNodeId, 0);
+        enExploration[0].push(startNodeId, 0);
+        enExploration[1].push(endNodeId, 0);
+
+        float best = Float.POSITIVE_INFINITY;
+        int meetingNodeId = -1;
+
+        while (true) {
+
+            float forwardMin = enExploration[0].peekKey();
+            float backwardMin = enExploration[1].peekKey();
+            if (Math.min(forwardMin, backwardMin) >= best) break; //aucune des deux directions ne peut encore améliorer le meilleur coût
+            if (ws.shouldStop()) break; //le meilleur point de rencontre trouvé jusque là est utilisé
+
+            int dir = forwardMin <= backwardMin ? 0 : 1; //on avance la direction dont la frontière est la plus proche
+            int nodeId = enExploration[dir].remove();
+
+            float meeting = ws.distance(dir, nodeId) + ws.distance(1 - dir, nodeId);
+            if (meeting < best) {
+                best = meeting;
+                meetingNodeId = nodeId;
+            }
+
+            ContractionHierarchy.Adjacency arcs = adjacency[dir];
+            for (int i = arcs.firstArc(nodeId); i < arcs.endArc(nodeId); i++) {
+
+                int n2 = arcs.neighbors().get(i);
+                float d = ws.distance(dir, nodeId) + arcs.weights().get(i);
+                ws.countRelaxed();
+
+                if (d < ws.distance(dir, n2)) {
+                    ws.setDistance(dir, n2, d);
+                    ws.setPred(dir, n2, nodeId, arcs.arcs().get(i));
+                    enExploration[dir].push(n2, d);
+                }
+            }
+        }
+
+        if (meetingNodeId == -1) return null;
+
+        int[] path = new int[16]; //une pile d'arcs, dont le sommet (path[size - 1]) est toujours le prochain arc à suivre
+        int size = 0;
+        for (int nodeId = meetingNodeId; nodeId != endNodeId; nodeId = ws.predNode(1, nodeId)) { //du point de rencontre à l'arrivée
+            if (size == path.length) path = Arrays.copyOf(path, 2 * size);
+            path[size++] = ws.predArc(1, nodeId);
+        }
+        for (int i = 0, j = size - 1; i < j; i++, j--) { //ces arcs sont retournés, afin que le premier soit au sommet
+            int arcId = path[i];
+            path[i] = path[j];
+            path[j] = arcId;
+        }
+        for (int nodeId = meetingNodeId; nodeId != startNodeId; nodeId = ws.predNode(0, nodeId)) {
+            if (size == path.length) path = Arrays.copyOf(path, 2 * size);
+            path[size++] = ws.predArc(0, nodeId);
+        }
+
+        int[] edgeIds = new int[size];
+        int count = 0;
+        while (size > 0) {
+            int arcId = path[--size];
+            if (ContractionHierarchy.isShortcut(arcId)) { //un raccourci est remplacé par les deux arcs qu'il représente
+                if (size + 2 > path.length) path = Arrays.copyOf(path, 2 * path.length);
+                path[size++] = hierarchy.secondSkippedArc(arcId);
+                path[size++] = hierarchy.firstSkippedArc(arcId);
+            } else {
+                if (count == edgeIds.length) edgeIds = Arrays.copyOf(edgeIds, 2 * count);
+                edgeIds[count++] = arcId;
+            }
+        }
+        return new SingleRoute(Edge.listOf(graph, Arrays.copyOf(edgeIds, count)));
+    }
 }
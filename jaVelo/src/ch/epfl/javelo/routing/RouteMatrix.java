@@ -0,0 +1,60 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * 
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente une matrice de coûts et de longueurs d'itinéraires entre des nœuds de départ (lignes)
+ * et des nœuds d'arrivée (colonnes), stockée ligne par ligne dans des tableaux de types primitifs.
+ * Il possède les attributs suivants :
+ * @param rowCount, qui représente le nombre de nœuds de départ.
+ * @param columnCount, qui représente le nombre de nœuds d'arrivée.
+ * @param costs, qui contient le coût minimal de chaque couple, ou Float.POSITIVE_INFINITY si aucun itinéraire n'existe.
+ * @param lengths, qui contient la longueur, en mètres, de l'itinéraire de coût minimal de chaque couple, ou Float.POSITIVE_INFINITY.
+ */
+
+public record RouteMatrix(int rowCount, int columnCount, float[] costs, float[] lengths) {
+
+    /**
+     * Le constructeur compact valide les dimensions de la matrice.
+     * 
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si la taille d'un des tableaux ne correspond pas aux dimensions données.
+     */
+
+    public RouteMatrix {
+        Preconditions.checkArgument(rowCount >= 0 && columnCount >= 0
+                && costs.length == (long) rowCount * columnCount && lengths.length == (long) rowCount * columnCount);
+    }
+
+    /**
+     * 
+     * @param row
+     *         représente l'index du nœud de départ.
+     * @param column
+     *         représente l'index du nœud d'arrivée.
+     * @return
+     *         retourne le coût minimal allant du nœud de départ au nœud d'arrivée donnés.
+     */
+
+    public float cost(int row, int column) {
+        return costs[row * columnCount + column];
+    }
+
+    /**
+     * 
+     * @param row
+     *         représente l'index du nœud de départ.
+     * @param column
+     *         représente l'index du nœud d'arrivée.
+     * @return
+     *         retourne la longueur, en mètres, de l'itinéraire de coût minimal allant du nœud de départ au nœud d'arrivée donnés.
+     */
+
+    public float length(int row, int column) {
+        return lengths[row * columnCount + column];
+    }
+}
@@ -0,0 +1,45 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * 
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente le résultat d'une recherche d'itinéraire limitée par une échéance et un jeton d'annulation,
+ * accompagné des statistiques de la recherche.
+ * Il possède les attributs suivants :
+ * @param route, qui représente l'itinéraire de coût minimal si la recherche s'est terminée, et sinon le meilleur itinéraire
+ *               trouvé jusque là (dont le coût n'est pas forcément minimal), ou null si aucun itinéraire n'existe ou n'a encore été trouvé.
+ * @param status, qui représente la manière dont la recherche s'est terminée.
+ * @param stats, qui représente les statistiques de la recherche.
+ * @param bound, qui représente la borne atteinte (voir BoundedRoute) : le coût de l'itinéraire est au plus bound fois le coût minimal.
+ *               Elle vaut 1 pour une recherche exacte terminée, au plus 1 + epsilon pour une recherche sous-optimale bornée
+ *               (voir RouteComputer.withSuboptimality), et Double.POSITIVE_INFINITY si elle est inconnue.
+ */
+
+public record RouteResult(Route route, Status status, SearchStats stats, double bound) {
+
+    /**
+     *
+     * @param route
+     *         représente l'itinéraire trouvé, ou null.
+     * @param status
+     *         représente la manière dont la recherche s'est terminée.
+     * @param stats
+     *         représente les statistiques de la recherche.
+     *
+     * Ce constructeur construit le résultat d'une recherche exacte : sa borne vaut 1 si la recherche s'est terminée normalement,
+     * et Double.POSITIVE_INFINITY sinon.
+     */
+
+    public RouteResult(Route route, Status status, SearchStats stats) {
+        this(route, status, stats, status == Status.COMPLETED ? 1 : Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Le type énuméré Status représente la manière dont une recherche s'est terminée : normalement (COMPLETED),
+     * parce que l'échéance a été atteinte (TIMED_OUT), ou parce que le jeton a été annulé (CANCELLED).
+     */
+
+    public enum Status {COMPLETED, TIMED_OUT, CANCELLED}
+}
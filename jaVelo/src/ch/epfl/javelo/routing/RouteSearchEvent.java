@@ -0,0 +1,62 @@
+package ch.epfl.javelo.routing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente l'événement Java Flight Recorder émis par chaque recherche de RouteComputer.bestRouteBetween.
+ * Ses attributs ne sont remplis que si l'événement est enregistré, afin que son coût soit négligeable sinon.
+ */
+
+@Name("ch.epfl.javelo.RouteSearch")
+@Label("Recherche d'itinéraire")
+@Category({"JaVelo", "Routage"})
+@Description("Recherche de l'itinéraire de coût minimal entre deux nœuds du graphe")
+final class RouteSearchEvent extends jdk.jfr.Event {
+
+    @Label("Nœud de départ")
+    int startNodeId;
+
+    @Label("Nœud d'arrivée")
+    int endNodeId;
+
+    @Label("Itinéraire trouvé")
+    boolean found;
+
+    @Label("Longueur de l'itinéraire (m)")
+    double routeLength;
+
+    @Label("Nœuds visités")
+    long settledNodes;
+
+    @Label("Arêtes relâchées")
+    long relaxedEdges;
+
+    @Label("Fin de la recherche")
+    String status;
+
+    /**
+     * Cette méthode termine l'événement et l'enregistre, avec les attributs donnés, s'il doit l'être.
+     */
+
+    void commit(int startNodeId, int endNodeId, Route route, SearchWorkspace ws) {
+        end();
+        if (!shouldCommit()) return;
+
+        this.startNodeId = startNodeId;
+        this.endNodeId = endNodeId;
+        this.found = route != null;
+        this.routeLength = route == null ? 0 : route.length();
+        SearchStats stats = ws.stats(0);
+        this.settledNodes = stats.settledNodes();
+        this.relaxedEdges = stats.relaxedEdges();
+        this.status = ws.status().name();
+        commit();
+    }
+}
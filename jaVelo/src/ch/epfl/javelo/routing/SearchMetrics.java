@@ -0,0 +1,95 @@
+package ch.epfl.javelo.routing;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente un registre de métriques, qui cumule les statistiques (SearchStats) des recherches effectuées
+ * par les planificateurs auxquels il a été attaché (voir RouteComputer.withMetrics). Ses instances peuvent être utilisées
+ * simultanément par plusieurs fils : les compteurs sont des LongAdder, qui évitent la contention entre les fils de calcul.
+ */
+
+public final class SearchMetrics {
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder settledNodes = new LongAdder();
+    private final LongAdder relaxedEdges = new LongAdder();
+    private final LongAdder heapPushes = new LongAdder();
+    private final LongAdder heapPops = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxHeapSize = new LongAccumulator(Math::max, 0);
+
+    /**
+     *
+     * @param stats
+     *         représente les statistiques d'une recherche.
+     *
+     * Cette méthode ajoute les statistiques de la recherche donnée au registre.
+     */
+
+    public void record(SearchStats stats) {
+        queries.increment();
+        settledNodes.add(stats.settledNodes());
+        relaxedEdges.add(stats.relaxedEdges());
+        heapPushes.add(stats.heapPushes());
+        heapPops.add(stats.heapPops());
+        nanos.add(stats.nanos());
+        maxHeapSize.accumulate(stats.maxHeapSize());
+    }
+
+    /**
+     *
+     * @return
+     *         retourne le nombre de recherches enregistrées.
+     */
+
+    public long queryCount() {
+        return queries.sum();
+    }
+
+    /**
+     *
+     * @return
+     *         retourne la somme des statistiques des recherches enregistrées, dont la taille maximale des files de priorité
+     *         est le maximum sur toutes les recherches. Les compteurs étant lus l'un après l'autre, la somme peut ne pas
+     *         correspondre exactement à un même ensemble de recherches si d'autres sont enregistrées simultanément.
+     */
+
+    public SearchStats total() {
+        return new SearchStats(settledNodes.sum(), relaxedEdges.sum(), heapPushes.sum(), heapPops.sum(), maxHeapSize.get(), nanos.sum());
+    }
+
+    /**
+     * Cette méthode remet toutes les métriques à zéro.
+     */
+
+    public void reset() {
+        queries.reset();
+        settledNodes.reset();
+        relaxedEdges.reset();
+        heapPushes.reset();
+        heapPops.reset();
+        nanos.reset();
+        maxHeapSize.reset();
+    }
+
+    /**
+     *
+     * @return
+     *         retourne un résumé des métriques : le nombre de recherches, et les moyennes par recherche.
+     */
+
+    @Override
+    public String toString() {
+        long count = Math.max(1, queryCount());
+        SearchStats total = total();
+        return String.format("%d recherches : %.0f nœuds visités, %.0f arêtes relâchées, %.0f ajouts et %.0f retraits par recherche, "
+                        + "file de taille maximale %d, %.3f ms par recherche",
+                queryCount(), (double) total.settledNodes() / count, (double) total.relaxedEdges() / count,
+                (double) total.heapPushes() / count, (double) total.heapPops() / count, total.maxHeapSize(), total.nanos() / 1e6 / count);
+    }
+}
@@ -0,0 +1,27 @@
+package ch.epfl.javelo.routing;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente les statistiques d'une recherche d'itinéraire, ou leur somme sur plusieurs recherches
+ * (voir SearchMetrics). Les opérations sur les files de priorité sont comptées par NodeHeap, toutes directions confondues.
+ * Il possède les attributs suivants :
+ * @param settledNodes, qui représente le nombre de nœuds visités (retirés d'une file de priorité).
+ * @param relaxedEdges, qui représente le nombre d'arêtes (ou d'arcs de la hiérarchie de contraction) relâchées.
+ * @param heapPushes, qui représente le nombre d'ajouts et de diminutions de clé dans les files de priorité.
+ * @param heapPops, qui représente le nombre de retraits des files de priorité.
+ * @param maxHeapSize, qui représente la taille maximale atteinte par une file de priorité.
+ * @param nanos, qui représente la durée de la recherche, en nanosecondes.
+ */
+
+public record SearchStats(long settledNodes, long relaxedEdges, long heapPushes, long heapPops, long maxHeapSize, long nanos) {
+
+    /**
+     * Les statistiques d'une recherche qui n'a rien exploré, par exemple parce que les composantes du graphe
+     * montrent que l'arrivée est inaccessible.
+     */
+
+    public static final SearchStats EMPTY = new SearchStats(0, 0, 0, 0, 0, 0);
+}
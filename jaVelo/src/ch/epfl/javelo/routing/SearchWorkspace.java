@@ -0,0 +1,307 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente l'espace de travail réutilisable d'une recherche d'itinéraire : les distances, prédécesseurs
+ * et files de priorité des deux directions de recherche (0 en avant, 1 en arrière), ainsi qu'un cache de potentiels.
+ *
+ * Plutôt que d'être remplis à chaque requête, les tableaux sont associés à un tableau d'estampilles : une valeur n'est valide
+ * que si son estampille est égale à la génération courante, et reset passe simplement à la génération suivante.
+ * Une requête coûte donc un temps proportionnel au nombre de nœuds qu'elle touche, et non à la taille du graphe.
+ * Les tableaux d'une direction ne sont alloués qu'à sa première utilisation. Une instance ne doit être utilisée que par un seul fil.
+ */
+
+final class SearchWorkspace {
+
+    private final int nodeCount;
+
+    // Une estampille égale à generation signifie que le nœud a été atteint, generation + 1 qu'il a aussi été visité.
+    private int generation;
+    private final int[][] stamps = new int[2][];
+    private final float[][] distances = new float[2][];
+    private final int[][] predNodes = new int[2][];
+    private final int[][] predArcs = new int[2][];
+    private final NodeHeap[] heaps = new NodeHeap[2];
+
+    private int[] potentialStamps;
+    private float[] potentials;
+
+    // Les limites de la recherche en cours, consultées tous les CHECK_INTERVAL appels à shouldStop.
+    private static final int CHECK_INTERVAL = 256;
+    private boolean limited;
+    private long deadline;
+    private CancellationToken token;
+    private int countdown;
+    private RouteResult.Status status = RouteResult.Status.COMPLETED;
+
+    private int relaxedCount;
+
+    /**
+     * Le constructeur construit un espace de travail pour un graphe possédant le nombre de nœuds donné.
+     *
+     * @param nodeCount
+     *         représente le nombre de nœuds du graphe.
+     */
+
+    SearchWorkspace(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Cette méthode prépare l'espace de travail pour une nouvelle recherche : toutes les distances redeviennent infinies,
+     * tous les nœuds non visités, les files de priorité vides, et la recherche n'est plus limitée.
+     */
+
+    void reset() {
+
+        limited = false;
+        status = RouteResult.Status.COMPLETED;
+        relaxedCount = 0;
+
+        if (generation >= Integer.MAX_VALUE - 2) { //les estampilles sont effacées une fois, avant que le compteur ne déborde
+            for (int[] s : stamps) if (s != null) Arrays.fill(s, 0);
+            if (potentialStamps != null) Arrays.fill(potentialStamps, 0);
+            generation = 0;
+        }
+        generation += 2;
+
+        for (NodeHeap heap : heaps) if (heap != null) heap.clear();
+    }
+
+    /**
+     *
+     * @param deadline
+     *         représente l'échéance de la recherche, selon System.nanoTime, ou RouteComputer.NO_DEADLINE.
+     * @param token
+     *         représente le jeton d'annulation de la recherche, ou null.
+     *
+     * Cette méthode limite la recherche qui suit (jusqu'au prochain appel à reset).
+     */
+
+    void limit(long deadline, CancellationToken token) {
+        this.limited = true;
+        this.deadline = deadline;
+        this.token = token;
+        this.countdown = 0;
+    }
+
+    /**
+     *
+     * @return
+     *         retourne vrai ssi la recherche doit s'arrêter, parce que son jeton a été annulé ou que son échéance est atteinte.
+     *         Pour que cette méthode puisse être appelée à chaque itération, les limites ne sont consultées qu'une fois sur CHECK_INTERVAL.
+     */
+
+    boolean shouldStop() {
+        if (!limited || --countdown > 0) return false;
+        countdown = CHECK_INTERVAL;
+
+        if (token != null && token.isCancelled()) status = RouteResult.Status.CANCELLED;
+        else if (deadline != RouteComputer.NO_DEADLINE && System.nanoTime() - deadline >= 0) status = RouteResult.Status.TIMED_OUT;
+        return status != RouteResult.Status.COMPLETED;
+    }
+
+    /**
+     * Cette méthode compte une arête (ou un arc) relâchée par la recherche en cours.
+     */
+
+    void countRelaxed() {
+        relaxedCount++;
+    }
+
+    /**
+     *
+     * @param nanos
+     *         représente la durée de la recherche, en nanosecondes.
+     * @return
+     *         retourne les statistiques de la recherche effectuée depuis le dernier appel à reset. Chaque nœud retiré d'une file
+     *         de priorité étant visité, le nombre de nœuds visités est celui des retraits, toutes directions confondues.
+     */
+
+    SearchStats stats(long nanos) {
+        int pushes = 0, pops = 0, maxSize = 0;
+        for (NodeHeap heap : heaps) {
+            if (heap == null) continue;
+            pushes += heap.pushCount();
+            pops += heap.popCount();
+            maxSize = Math.max(maxSize, heap.maxSize());
+        }
+        return new SearchStats(pops, relaxedCount, pushes, pops, maxSize, nanos);
+    }
+
+    /**
+     *
+     * @return
+     *         retourne la manière dont la dernière recherche s'est terminée.
+     */
+
+    RouteResult.Status status() {
+        return status;
+    }
+
+    /**
+     *
+     * @param dir
+     *         représente la direction de la recherche (0 en avant, 1 en arrière).
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne la distance du nœud dans la direction donnée, ou Float.POSITIVE_INFINITY s'il n'a pas encore été atteint.
+     */
+
+    float distance(int dir, int nodeId) {
+        return stamps(dir)[nodeId] >= generation ? distances[dir][nodeId] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     *
+     * @param dir
+     *         représente la direction de la recherche.
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param distance
+     *         représente la nouvelle distance du nœud.
+     */
+
+    void setDistance(int dir, int nodeId, float distance) {
+        int[] s = stamps(dir);
+        if (s[nodeId] < generation) s[nodeId] = generation;
+        distances[dir][nodeId] = distance;
+    }
+
+    /**
+     *
+     * @param dir
+     *         représente la direction de la recherche.
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne vrai ssi le nœud a été marqué comme visité dans la direction donnée.
+     */
+
+    boolean isSettled(int dir, int nodeId) {
+        return stamps(dir)[nodeId] == generation + 1;
+    }
+
+    /**
+     *
+     * @param dir
+     *         représente la direction de la recherche.
+     * @param nodeId
+     *         représente l'identité du nœud, qui doit avoir été atteint.
+     *
+     * Cette méthode marque le nœud comme visité dans la direction donnée.
+     */
+
+    void settle(int dir, int nodeId) {
+        stamps(dir)[nodeId] = generation + 1;
+    }
+
+    /**
+     *
+     * @param dir
+     *         représente la direction de la recherche.
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne le nœud prédécesseur enregistré pour le nœud donné (valide seulement si ce nœud a été atteint).
+     */
+
+    int predNode(int dir, int nodeId) {
+        return predNodes[dir][nodeId];
+    }
+
+    /**
+     *
+     * @param dir
+     *         représente la direction de la recherche.
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne l'arc (ou l'arête) prédécesseur enregistré pour le nœud donné (valide seulement si ce nœud a été atteint).
+     */
+
+    int predArc(int dir, int nodeId) {
+        return predArcs[dir][nodeId];
+    }
+
+    /**
+     *
+     * @param dir
+     *         représente la direction de la recherche.
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param predNodeId
+     *         représente l'identité du nœud prédécesseur.
+     * @param predArcId
+     *         représente l'identité de l'arc (ou de l'arête) prédécesseur.
+     */
+
+    void setPred(int dir, int nodeId, int predNodeId, int predArcId) {
+        predNodes[dir][nodeId] = predNodeId;
+        predArcs[dir][nodeId] = predArcId;
+    }
+
+    /**
+     *
+     * @param dir
+     *         représente la direction de la recherche.
+     * @return
+     *         retourne la file de priorité de la direction donnée, vide au début de chaque recherche.
+     */
+
+    NodeHeap heap(int dir) {
+        stamps(dir);
+        return heaps[dir];
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @return
+     *         retourne le potentiel mémorisé pour le nœud donné, ou Float.NaN s'il n'a pas été mémorisé pendant cette recherche.
+     */
+
+    float potential(int nodeId) {
+        if (potentials == null) {
+            potentialStamps = new int[nodeCount];
+            potentials = new float[nodeCount];
+        }
+        return potentialStamps[nodeId] == generation ? potentials[nodeId] : Float.NaN;
+    }
+
+    /**
+     *
+     * @param nodeId
+     *         représente l'identité du nœud.
+     * @param potential
+     *         représente le potentiel à mémoriser.
+     */
+
+    void setPotential(int nodeId, float potential) {
+        potentialStamps[nodeId] = generation;
+        potentials[nodeId] = potential;
+    }
+
+    /**
+     * Cette méthode retourne le tableau d'estampilles de la direction donnée, en allouant les tableaux de cette direction
+     * lors de sa première utilisation.
+     */
+
+    private int[] stamps(int dir) {
+        if (stamps[dir] == null) {
+            distances[dir] = new float[nodeCount];
+            predNodes[dir] = new int[nodeCount];
+            predArcs[dir] = new int[nodeCount];
+            heaps[dir] = new NodeHeap(nodeCount);
+            stamps[dir] = new int[nodeCount];
+        }
+        return stamps[dir];
+    }
+}
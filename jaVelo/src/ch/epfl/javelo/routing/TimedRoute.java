@@ -0,0 +1,15 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * 
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cet enregistrement représente le résultat d'une requête d'un calcul d'itinéraires par lot.
+ * Il possède les attributs suivants :
+ * @param route, qui représente l'itinéraire de coût minimal, ou null si aucun itinéraire n'existe.
+ * @param nanos, qui représente la durée du calcul de cet itinéraire, en nanosecondes.
+ */
+
+public record TimedRoute(Route route, long nanos) {
+}
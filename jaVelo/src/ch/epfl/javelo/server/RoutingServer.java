@@ -0,0 +1,356 @@
+package ch.epfl.javelo.server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+import ch.epfl.javelo.routing.ElevationProfile;
+import ch.epfl.javelo.routing.ElevationProfileComputer;
+import ch.epfl.javelo.routing.GpxGenerator;
+import ch.epfl.javelo.routing.MultiRoute;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.javelo.routing.RouteResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe représente un serveur HTTP local, qui répond aux requêtes d'itinéraire sans l'interface graphique de JaVelo.
+ * Tous les fils de requête partagent le même graphe et le même planificateur, dont chaque fil possède son propre espace
+ * de travail. Les fils sont donc réutilisés d'une requête à l'autre, et le nombre de requêtes traitées simultanément est
+ * borné : au-delà, le serveur répond immédiatement 503 (Service Unavailable) plutôt que de laisser les requêtes s'accumuler.
+ *
+ * Les requêtes sont de type GET, et les points sont donnés en degrés WGS 84, sous la forme lon,lat, séparés par des ; :
+ *   /snap?point=lon,lat                         le nœud le plus proche du point (JSON) ;
+ *   /route?points=lon,lat;lon,lat;...           l'itinéraire passant par les points (JSON) ;
+ *   /profile?points=...&step=5                  le profil en long de cet itinéraire, échantillonné tous les step mètres (JSON) ;
+ *   /gpx?points=...                             cet itinéraire au format GPX.
+ * Les réponses sont écrites au fur et à mesure, sans connaître leur taille à l'avance (encodage par blocs).
+ */
+
+public final class RoutingServer {
+
+    private static final int SEARCH_DISTANCE = 500; // comme WaypointsManager
+    private static final double PROFILE_STEP = 5; // comme RouteBean
+    private static final long SEARCH_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    private final Graph graph;
+    private final RouteComputer routeComputer;
+    private final IntPredicate snappable;
+    private final Semaphore admission;
+    private final ExecutorService executor;
+    private final HttpServer server;
+
+    /**
+     *
+     * @param graph
+     *         représente le graphe utilisé.
+     * @param routeComputer
+     *         représente le planificateur d'itinéraire, partagé par toutes les requêtes.
+     * @param snappable
+     *         représente le prédicat que doivent satisfaire les nœuds sur lesquels les points sont placés.
+     * @param address
+     *         représente l'adresse sur laquelle le serveur écoute.
+     * @param maxConcurrentRequests
+     *         représente le nombre maximal de requêtes traitées simultanément.
+     * @throws IOException
+     *         lève IOException si le serveur ne peut pas écouter sur l'adresse donnée.
+     * @throws IllegalArgumentException
+     *         lève IllegalArgumentException si le nombre maximal de requêtes n'est pas strictement positif.
+     */
+
+    public RoutingServer(Graph graph, RouteComputer routeComputer, IntPredicate snappable, InetSocketAddress address,
+                         int maxConcurrentRequests) throws IOException {
+
+        Preconditions.checkArgument(maxConcurrentRequests > 0);
+
+        this.graph = graph;
+        this.routeComputer = routeComputer;
+        this.snappable = snappable;
+        this.admission = new Semaphore(maxConcurrentRequests);
+
+        // Le nombre de fils est borné, car chacun garde son propre espace de travail du planificateur (plusieurs Mo) :
+        // un fil par requête admise, plus un fil qui, lorsque tous les autres sont occupés, vide la file d'attente
+        // en répondant 503 aux requêtes refusées.
+        this.executor = Executors.newFixedThreadPool(maxConcurrentRequests + 1, runnable -> {
+            Thread thread = new Thread(runnable, "javelo-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/snap", admitted(this::snap));
+        server.createContext("/route", admitted(this::route));
+        server.createContext("/profile", admitted(this::profile));
+        server.createContext("/gpx", admitted(this::gpx));
+    }
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut, le second le port (8080 par défaut)
+     *         et le troisième le nombre maximal de requêtes simultanées (par défaut, le nombre de processeurs).
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée charge le graphe et les données pré-calculées disponibles, comme JaVelo, puis démarre le serveur.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Path graphPath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int maxConcurrentRequests = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Graph graph = Graph.loadFrom(graphPath);
+        RouteComputer routeComputer = RouteComputer.loadFrom(graph, graphPath);
+
+        RoutingServer server = new RoutingServer(graph, routeComputer, routeComputer.components()::isInMainComponent,
+                new InetSocketAddress("localhost", port), maxConcurrentRequests);
+        server.start();
+        System.out.printf("serveur à l'écoute sur http://localhost:%d, %d requêtes simultanées au plus%n", port, maxConcurrentRequests);
+    }
+
+    /**
+     * Cette méthode démarre le serveur, dont les fils ne bloquent pas l'arrêt de la machine virtuelle.
+     */
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     *
+     * @param delay
+     *         représente le délai maximal, en secondes, laissé aux requêtes en cours pour se terminer.
+     *
+     * Cette méthode arrête le serveur.
+     */
+
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     *
+     * @return
+     *         retourne l'adresse sur laquelle le serveur écoute, dont le port effectif si le port 0 a été demandé.
+     */
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * L'interface fonctionnelle Endpoint représente le traitement d'une requête admise, qui écrit sa réponse.
+     * Une IllegalArgumentException (paramètre manquant ou invalide) est traduite en réponse 400.
+     */
+
+    @FunctionalInterface
+    private interface Endpoint {
+        void handle(Map<String, String> parameters, HttpExchange exchange) throws IOException;
+    }
+
+    private HttpHandler admitted(Endpoint endpoint) {
+        return exchange -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    sendError(exchange, 405, "seules les requêtes GET sont acceptées");
+                    return;
+                }
+                if (!admission.tryAcquire()) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    sendError(exchange, 503, "trop de requêtes simultanées");
+                    return;
+                }
+                try {
+                    endpoint.handle(parameters(exchange.getRequestURI()), exchange);
+                } catch (IllegalArgumentException e) { // les NumberFormatException en font partie
+                    sendError(exchange, 400, e.getMessage() == null ? "paramètre invalide" : e.getMessage());
+                } finally {
+                    admission.release();
+                }
+            }
+        };
+    }
+
+    private void snap(Map<String, String> parameters, HttpExchange exchange) throws IOException {
+
+        PointCh point = parsePoint(required(parameters, "point"));
+        int nodeId = graph.nodeClosestTo(point, SEARCH_DISTANCE, snappable);
+        if (nodeId == -1) {
+            sendError(exchange, 404, "aucun nœud à moins de " + SEARCH_DISTANCE + " m");
+            return;
+        }
+
+        PointCh nodePoint = graph.nodePoint(nodeId);
+        try (Writer w = startResponse(exchange, "application/json")) {
+            w.write(String.format(Locale.ROOT, "{\"nodeId\":%d,\"lon\":%.6f,\"lat\":%.6f,\"distance\":%.1f}",
+                    nodeId, Math.toDegrees(nodePoint.lon()), Math.toDegrees(nodePoint.lat()), nodePoint.distanceTo(point)));
+        }
+    }
+
+    private void route(Map<String, String> parameters, HttpExchange exchange) throws IOException {
+
+        Route route = computeRoute(parameters, exchange);
+        if (route == null) return;
+
+        try (Writer w = startResponse(exchange, "application/json")) {
+            w.write(String.format(Locale.ROOT, "{\"length\":%.1f,\"points\":[", route.length()));
+            List<PointCh> points = route.points();
+            for (int i = 0; i < points.size(); i++) {
+                if (i > 0) w.write(',');
+                w.write(String.format(Locale.ROOT, "[%.6f,%.6f]", Math.toDegrees(points.get(i).lon()), Math.toDegrees(points.get(i).lat())));
+            }
+            w.write("]}");
+        }
+    }
+
+    private void profile(Map<String, String> parameters, HttpExchange exchange) throws IOException {
+
+        double step = parameters.containsKey("step") ? Double.parseDouble(parameters.get("step")) : PROFILE_STEP;
+        Preconditions.checkArgument(step > 0);
+        Route route = computeRoute(parameters, exchange);
+        if (route == null) return;
+
+        ElevationProfile profile = ElevationProfileComputer.elevationProfile(route, step);
+        try (Writer w = startResponse(exchange, "application/json")) {
+            w.write(String.format(Locale.ROOT,
+                    "{\"length\":%.1f,\"minElevation\":%.1f,\"maxElevation\":%.1f,\"totalAscent\":%.1f,\"totalDescent\":%.1f,\"samples\":[",
+                    profile.length(), profile.minElevation(), profile.maxElevation(), profile.totalAscent(), profile.totalDescent()));
+            int sampleCount = (int) Math.ceil(profile.length() / step) + 1;
+            double sampleSpacing = profile.length() / (sampleCount - 1);
+            for (int i = 0; i < sampleCount; i++) {
+                if (i > 0) w.write(',');
+                w.write(String.format(Locale.ROOT, "%.2f", profile.elevationAt(i * sampleSpacing)));
+            }
+            w.write("]}");
+        }
+    }
+
+    private void gpx(Map<String, String> parameters, HttpExchange exchange) throws IOException {
+
+        Route route = computeRoute(parameters, exchange);
+        if (route == null) return;
+
+        ElevationProfile profile = ElevationProfileComputer.elevationProfile(route, PROFILE_STEP);
+        exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"javelo.gpx\"");
+        try (Writer w = startResponse(exchange, "application/gpx+xml")) {
+            GpxGenerator.writeGpx(w, route, profile);
+        }
+    }
+
+    /**
+     * Cette méthode calcule l'itinéraire passant par les points du paramètre points, placés sur leur nœud le plus proche,
+     * en ignorant les points consécutifs placés sur le même nœud, comme RouteBean. Si l'itinéraire ne peut pas être calculé,
+     * elle envoie la réponse d'erreur correspondante et retourne null.
+     */
+
+    private Route computeRoute(Map<String, String> parameters, HttpExchange exchange) throws IOException {
+
+        String[] coordinates = required(parameters, "points").split(";");
+        Preconditions.checkArgument(coordinates.length >= 2);
+
+        List<Integer> nodeIds = new ArrayList<>();
+        for (String coordinate : coordinates) {
+            int nodeId = graph.nodeClosestTo(parsePoint(coordinate), SEARCH_DISTANCE, snappable);
+            if (nodeId == -1) {
+                sendError(exchange, 404, "aucun nœud à moins de " + SEARCH_DISTANCE + " m de " + coordinate);
+                return null;
+            }
+            if (nodeIds.isEmpty() || nodeIds.get(nodeIds.size() - 1) != nodeId) nodeIds.add(nodeId);
+        }
+        if (nodeIds.size() < 2) {
+            sendError(exchange, 404, "tous les points sont placés sur le même nœud");
+            return null;
+        }
+
+        long deadline = System.nanoTime() + SEARCH_TIMEOUT;
+        List<Route> segments = new ArrayList<>();
+        for (int i = 0; i < nodeIds.size() - 1; i++) {
+            RouteResult result = routeComputer.bestRouteBetween(nodeIds.get(i), nodeIds.get(i + 1), deadline, null);
+            if (result.status() != RouteResult.Status.COMPLETED) {
+                sendError(exchange, 504, "le calcul de l'itinéraire a dépassé " + TimeUnit.NANOSECONDS.toSeconds(SEARCH_TIMEOUT) + " s");
+                return null;
+            }
+            if (result.route() == null) {
+                sendError(exchange, 404, "aucun itinéraire entre les points " + i + " et " + (i + 1));
+                return null;
+            }
+            segments.add(result.route());
+        }
+        return new MultiRoute(segments);
+    }
+
+    private static Writer startResponse(HttpExchange exchange, String contentType) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // 0 : taille inconnue, la réponse est envoyée par blocs
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+    }
+
+    private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Map<String, String> parameters(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        if (uri.getRawQuery() == null) return parameters;
+        for (String pair : uri.getRawQuery().split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals == -1) continue;
+            parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) throw new IllegalArgumentException("paramètre " + name + " manquant");
+        return value;
+    }
+
+    /**
+     * Cette méthode retourne le point en Suisse correspondant aux coordonnées lon,lat données en degrés.
+     */
+
+    private static PointCh parsePoint(String coordinates) {
+        String[] parts = coordinates.split(",");
+        if (parts.length != 2) throw new IllegalArgumentException("point invalide : " + coordinates);
+        double lon = Math.toRadians(Double.parseDouble(parts[0].trim()));
+        double lat = Math.toRadians(Double.parseDouble(parts[1].trim()));
+        double e = Ch1903.e(lon, lat), n = Ch1903.n(lon, lat);
+        if (!SwissBounds.containsEN(e, n)) throw new IllegalArgumentException("point hors de Suisse : " + coordinates);
+        return new PointCh(e, n);
+    }
+}
@@ -0,0 +1,95 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe non instanciable vérifie Graph.edgeClosestTo, qui utilise l'index spatial des arêtes (GraphEdgeIndex),
+ * en comparant ses résultats à ceux d'un parcours exhaustif de toutes les arêtes du graphe.
+ */
+
+final class GraphEdgeIndexCheck {
+
+    private GraphEdgeIndexCheck() {}
+
+    private static final double MARGIN = 300; // les points tirés peuvent sortir de la boîte englobante des nœuds, de cette distance en mètres
+    private static final double TOLERANCE = 1e-6;
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut,
+     *         et le second (facultatif) le nombre de points de référence tirés au hasard, 2000 par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée tire des points au hasard autour des nœuds du graphe et, pour chacun, compare la distance à l'arête
+     * la plus proche trouvée par edgeClosestTo à celle trouvée par le parcours exhaustif, avec deux distances de recherche
+     * et un prédicat écartant une arête sur trois. Il affiche les différences, puis termine avec le code 1 s'il en a trouvé.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Graph graph = Graph.loadFrom(Path.of(args.length > 0 ? args[0] : "javelo-data"));
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        IntPredicate accepted = edgeId -> edgeId % 3 != 0;
+
+        double minE = Double.POSITIVE_INFINITY, maxE = Double.NEGATIVE_INFINITY;
+        double minN = Double.POSITIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            PointCh point = graph.nodePoint(nodeId);
+            minE = Math.min(minE, point.e());
+            maxE = Math.max(maxE, point.e());
+            minN = Math.min(minN, point.n());
+            maxN = Math.max(maxN, point.n());
+        }
+
+        SplittableRandom random = new SplittableRandom(2022);
+        int mismatches = 0;
+        for (int i = 0; i < count; i++) {
+
+            double e = Math2.clamp(SwissBounds.MIN_E, random.nextDouble(minE - MARGIN, maxE + MARGIN), SwissBounds.MAX_E);
+            double n = Math2.clamp(SwissBounds.MIN_N, random.nextDouble(minN - MARGIN, maxN + MARGIN), SwissBounds.MAX_N);
+            PointCh point = new PointCh(e, n);
+            double searchDistance = i % 2 == 0 ? 500 : 100;
+
+            GraphEdgeIndex.EdgePoint found = graph.edgeClosestTo(point, searchDistance, accepted);
+            double expected = closestEdgeDistance(graph, point, accepted);
+            if (expected > searchDistance) expected = Double.POSITIVE_INFINITY;
+
+            boolean same = expected == found.distanceToReference() || Math.abs(expected - found.distanceToReference()) <= TOLERANCE;
+            if (same && found.edgeId() != -1) same = Math.abs(found.point().distanceTo(point) - found.distanceToReference()) <= TOLERANCE;
+            if (!same) {
+                mismatches++;
+                System.out.printf("%s, %.0f m : %s, attendu à %.6f m%n", point, searchDistance, found, expected);
+            }
+        }
+
+        System.out.printf("%d points vérifiés, %d différences%n", count, mismatches);
+        if (mismatches > 0) System.exit(1);
+    }
+
+    // La distance du point donné à l'arête acceptée la plus proche, calculée en parcourant toutes les arêtes.
+    private static double closestEdgeDistance(Graph graph, PointCh point, IntPredicate accepted) {
+
+        double best = Double.POSITIVE_INFINITY;
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId++) {
+            if (!accepted.test(edgeId)) continue;
+            PointCh from = graph.nodePoint(graph.edgeSourceNodeId(edgeId)), to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+            double dE = to.e() - from.e(), dN = to.n() - from.n();
+            double squaredLength = dE * dE + dN * dN;
+            double t = squaredLength == 0 ? 0 : Math2.clamp(0, ((point.e() - from.e()) * dE + (point.n() - from.n()) * dN) / squaredLength, 1);
+            best = Math.min(best, Math.hypot(from.e() + t * dE - point.e(), from.n() + t * dN - point.n()));
+        }
+        return best;
+    }
+}
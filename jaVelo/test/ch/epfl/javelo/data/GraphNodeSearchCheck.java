@@ -0,0 +1,105 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+/**
+ *
+ * @author Ahmed Abdelmalek (344471)
+ * @author Youssef Neji (346960)
+ *
+ * Cette classe non instanciable vérifie les recherches de nœuds par secteurs de Graph, nodesClosestTo (les k plus proches voisins)
+ * et nodesWithin (les nœuds dans un rayon), en comparant leurs résultats à ceux d'un parcours exhaustif de tous les nœuds du graphe.
+ */
+
+final class GraphNodeSearchCheck {
+
+    private GraphNodeSearchCheck() {}
+
+    private static final double OFFSET = 2000; // les points tirés se trouvent à au plus cette distance d'un nœud, en mètres
+    private static final double TOLERANCE = 1e-3; // nodesClosestTo compare les distances en float
+
+    /**
+     *
+     * @param args
+     *         le premier argument (facultatif) est le répertoire du graphe, javelo-data par défaut,
+     *         et le second (facultatif) le nombre de points de référence tirés au hasard, 300 par défaut.
+     * @throws IOException
+     *         lève IOException en cas d'erreur d'entrée ou de sortie.
+     *
+     * Ce point d'entrée tire des points au hasard près des nœuds du graphe et, pour chacun, compare les distances des nœuds
+     * retournés par nodesClosestTo et nodesWithin, et leur nombre, à celles des nœuds trouvés par le parcours exhaustif,
+     * avec des valeurs de k et des distances (parfois infinies) elles aussi tirées au hasard, et un prédicat écartant
+     * un nœud sur quatre une fois sur deux. Il affiche les différences, puis termine avec le code 1 s'il en a trouvé.
+     */
+
+    public static void main(String[] args) throws IOException {
+
+        Graph graph = Graph.loadFrom(Path.of(args.length > 0 ? args[0] : "javelo-data"));
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        SplittableRandom random = new SplittableRandom(2022);
+        int mismatches = 0;
+        for (int i = 0; i < count; i++) {
+
+            PointCh near = graph.nodePoint(random.nextInt(graph.nodeCount()));
+            double e = Math2.clamp(SwissBounds.MIN_E, near.e() + random.nextDouble(-OFFSET, OFFSET), SwissBounds.MAX_E);
+            double n = Math2.clamp(SwissBounds.MIN_N, near.n() + random.nextDouble(-OFFSET, OFFSET), SwissBounds.MAX_N);
+            PointCh point = new PointCh(e, n);
+
+            int k = 1 + random.nextInt(50);
+            double searchDistance = i % 3 == 0 ? Double.POSITIVE_INFINITY : random.nextDouble(100, 2100);
+            double radius = Double.isInfinite(searchDistance) ? 700 : searchDistance;
+            IntPredicate accepted = i % 2 == 0 ? nodeId -> true : nodeId -> nodeId % 4 != 1;
+
+            List<Integer> expected = nodesByDistance(graph, point, searchDistance, accepted);
+
+            int[] closest = graph.nodesClosestTo(point, k, searchDistance, accepted);
+            if (!sameDistances(graph, point, closest, expected.subList(0, Math.min(k, expected.size())))) {
+                mismatches++;
+                System.out.printf("nodesClosestTo(%s, %d, %.0f) : %d nœuds, %d attendus%n", point, k, searchDistance, closest.length, Math.min(k, expected.size()));
+            }
+
+            int[] within = graph.nodesWithin(point, radius, accepted);
+            List<Integer> expectedWithin = expected.stream().filter(nodeId -> graph.nodePoint(nodeId).distanceTo(point) <= radius).toList();
+            if (!sameDistances(graph, point, within, expectedWithin)) {
+                mismatches++;
+                System.out.printf("nodesWithin(%s, %.0f) : %d nœuds, %d attendus%n", point, radius, within.length, expectedWithin.size());
+            }
+        }
+
+        System.out.printf("%d points vérifiés, %d différences%n", count, mismatches);
+        if (mismatches > 0) System.exit(1);
+    }
+
+    // Les nœuds acceptés à la distance maximale donnée du point, triés par distance croissante, trouvés en parcourant tous les nœuds.
+    private static List<Integer> nodesByDistance(Graph graph, PointCh point, double searchDistance, IntPredicate accepted) {
+
+        List<Integer> nodeIds = new ArrayList<>();
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            if (accepted.test(nodeId) && graph.nodePoint(nodeId).distanceTo(point) <= searchDistance) nodeIds.add(nodeId);
+        }
+        nodeIds.sort(Comparator.comparingDouble((Integer nodeId) -> graph.nodePoint(nodeId).distanceTo(point)).thenComparingInt(nodeId -> nodeId));
+        return nodeIds;
+    }
+
+    // Deux listes de nœuds sont équivalentes si elles ont la même taille et que leurs nœuds de même rang sont à la même distance du point :
+    // à distance égale, l'ordre des nœuds dépend de l'arrondi des distances.
+    private static boolean sameDistances(Graph graph, PointCh point, int[] found, List<Integer> expected) {
+
+        if (found.length != expected.size()) return false;
+        for (int i = 0; i < found.length; i++) {
+            double distance = graph.nodePoint(found[i]).distanceTo(point);
+            if (Math.abs(distance - graph.nodePoint(expected.get(i)).distanceTo(point)) > TOLERANCE) return false;
+        }
+        return true;
+    }
+}